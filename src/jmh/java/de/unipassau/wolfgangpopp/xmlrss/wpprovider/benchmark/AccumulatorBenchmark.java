@@ -0,0 +1,114 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.benchmark;
+
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Accumulator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures digesting a set of elements, creating the witnesses for all elements and verifying all witnesses with
+ * each accumulator of the WPProvider.
+ *
+ * @author Wolfgang Popp
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AccumulatorBenchmark {
+
+    @Param({"PSA", "BPA"})
+    public String algorithm;
+
+    @Param({"16", "128"})
+    public int partCount;
+
+    @Param({"64", "1024"})
+    public int partSize;
+
+    @Param({"1024", "2048"})
+    public int keySize;
+
+    private byte[][] parts;
+    private byte[][] witnesses;
+    private Accumulator accumulator;
+    private Accumulator verifier;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        KeyPair keyPair = Benchmarks.keyPair(algorithm, keySize);
+        parts = Benchmarks.parts(partCount, partSize);
+
+        accumulator = Accumulator.getInstance(algorithm);
+        accumulator.initWitness(keyPair);
+        accumulator.digest(parts);
+        witnesses = accumulator.createWitnesses(parts);
+
+        verifier = Accumulator.getInstance(algorithm);
+        verifier.initVerify(keyPair.getPublic());
+        verifier.restoreVerify(accumulator.getAccumulatorValue());
+    }
+
+    @Benchmark
+    public byte[] digest() throws Exception {
+        accumulator.digest(parts);
+        return accumulator.getAccumulatorValue();
+    }
+
+    @Benchmark
+    public byte[][] createWitness() throws Exception {
+        byte[][] result = new byte[parts.length][];
+        for (int i = 0; i < parts.length; i++) {
+            result[i] = accumulator.createWitness(parts[i]);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public byte[][] createWitnesses() throws Exception {
+        return accumulator.createWitnesses(parts);
+    }
+
+    @Benchmark
+    public boolean verify() throws Exception {
+        boolean valid = true;
+        for (int i = 0; i < parts.length; i++) {
+            valid &= verifier.verify(witnesses[i], parts[i]);
+        }
+        return valid;
+    }
+}
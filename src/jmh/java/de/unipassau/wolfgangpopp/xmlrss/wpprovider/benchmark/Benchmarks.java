@@ -0,0 +1,104 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.benchmark;
+
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.WPProvider;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.Security;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The <code>Benchmarks</code> class contains helper functions shared by all benchmarks.
+ *
+ * @author Wolfgang Popp
+ */
+final class Benchmarks {
+
+    private static final Map<String, String> KEY_PAIR_GENERATORS = new HashMap<>();
+    private static final Map<String, KeyPair> KEY_PAIRS = new HashMap<>();
+
+    static {
+        KEY_PAIR_GENERATORS.put("RSSwithPSA", "PSRSS");
+        KEY_PAIR_GENERATORS.put("PSA", "PSRSS");
+        KEY_PAIR_GENERATORS.put("BPA", "BPA");
+        KEY_PAIR_GENERATORS.put("GSRSSwithRSAandBPA", "GSRSSwithRSAandBPA");
+        KEY_PAIR_GENERATORS.put("GLRSSwithRSAandBPA", "GLRSSwithRSAandBPA");
+    }
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Registers the WPProvider and returns a key pair for the given algorithm. Generating safe primes is very slow, so
+     * the key pairs are cached and shared by all benchmarks that run in the same JVM.
+     *
+     * @param algorithm the name of the redactable signature or accumulator
+     * @param keySize   the key size in bits
+     * @return a key pair for the given algorithm
+     * @throws NoSuchAlgorithmException if no key pair generator is known for the given algorithm
+     */
+    static synchronized KeyPair keyPair(String algorithm, int keySize) throws NoSuchAlgorithmException {
+        Security.insertProviderAt(new WPProvider(), 1);
+
+        String keyPairGenerator = KEY_PAIR_GENERATORS.get(algorithm);
+        if (keyPairGenerator == null) {
+            throw new NoSuchAlgorithmException("No key pair generator known for " + algorithm);
+        }
+
+        String key = keyPairGenerator + keySize;
+        KeyPair keyPair = KEY_PAIRS.get(key);
+        if (keyPair == null) {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance(keyPairGenerator);
+            generator.initialize(keySize);
+            keyPair = generator.generateKeyPair();
+            KEY_PAIRS.put(key, keyPair);
+        }
+        return keyPair;
+    }
+
+    /**
+     * Creates <code>count</code> distinct parts of <code>size</code> random bytes. The parts are deterministic, so
+     * that all runs measure the same input.
+     *
+     * @param count the number of parts
+     * @param size  the size of each part in bytes
+     * @return the parts
+     */
+    static byte[][] parts(int count, int size) {
+        Random random = new Random(count * 31L + size);
+        byte[][] parts = new byte[count][Math.max(size, 4)];
+        for (int i = 0; i < count; i++) {
+            random.nextBytes(parts[i]);
+
+            // the first four bytes are the index, which makes the parts distinct
+            parts[i][0] = (byte) (i >>> 24);
+            parts[i][1] = (byte) (i >>> 16);
+            parts[i][2] = (byte) (i >>> 8);
+            parts[i][3] = (byte) i;
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.benchmark;
+
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Identifier;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignature;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SignatureOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures merging and updating signatures, which only the PSRSS supports. The signed parts are split in two halves:
+ * the merged signatures each cover one half and the updated signature covers the first half and is updated with the
+ * second half.
+ *
+ * @author Wolfgang Popp
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MergeUpdateBenchmark {
+
+    @Param({"RSSwithPSA"})
+    public String algorithm;
+
+    @Param({"16", "128"})
+    public int partCount;
+
+    @Param({"64", "1024"})
+    public int partSize;
+
+    @Param({"1024", "2048"})
+    public int keySize;
+
+    private KeyPair keyPair;
+    private byte[][] updateParts;
+    private RedactableSignature rss;
+    private SignatureOutput first;
+    private SignatureOutput second;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        keyPair = Benchmarks.keyPair(algorithm, keySize);
+        rss = RedactableSignature.getInstance(algorithm);
+
+        byte[][] parts = Benchmarks.parts(partCount, partSize);
+        int half = parts.length / 2;
+        updateParts = Arrays.copyOfRange(parts, half, parts.length);
+
+        rss.initSign(keyPair);
+        for (byte[] part : parts) {
+            rss.addPart(part);
+        }
+        SignatureOutput full = rss.sign();
+
+        first = redact(full, Arrays.copyOfRange(parts, half, parts.length));
+        second = redact(full, Arrays.copyOfRange(parts, 0, half));
+    }
+
+    private SignatureOutput redact(SignatureOutput signature, byte[][] redactedParts) throws Exception {
+        rss.initRedact(keyPair.getPublic());
+        for (byte[] part : redactedParts) {
+            rss.addIdentifier(new Identifier(part));
+        }
+        return rss.redact(signature);
+    }
+
+    @Benchmark
+    public SignatureOutput merge() throws Exception {
+        rss.initMerge(keyPair.getPublic());
+        return rss.merge(first, second);
+    }
+
+    @Benchmark
+    public SignatureOutput update() throws Exception {
+        rss.initUpdate(keyPair);
+        for (byte[] part : updateParts) {
+            rss.addPart(part);
+        }
+        return rss.update(first);
+    }
+}
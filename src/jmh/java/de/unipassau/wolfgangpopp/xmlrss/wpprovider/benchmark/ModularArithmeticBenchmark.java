@@ -0,0 +1,89 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.benchmark;
+
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ModularArithmetic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the single operations of the reference and the Montgomery arithmetic. Run with <code>-prof gc</code> to
+ * also compare the allocation rates of the two engines.
+ *
+ * @author Wolfgang Popp
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ModularArithmeticBenchmark {
+
+    @Param({"reference", "montgomery"})
+    public String arithmetic;
+
+    @Param({"1024", "2048"})
+    public int keySize;
+
+    private ModularArithmetic modularArithmetic;
+    private BigInteger a;
+    private BigInteger b;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(keySize);
+        BigInteger modulus = new BigInteger(keySize, random).setBit(keySize - 1).setBit(0);
+        modularArithmetic = arithmetic.equals("montgomery") ? ModularArithmetic.getMontgomery(modulus)
+                : ModularArithmetic.getReference(modulus);
+        a = new BigInteger(keySize - 1, random);
+        b = new BigInteger(keySize - 1, random);
+    }
+
+    @Benchmark
+    public BigInteger modPow() {
+        return modularArithmetic.modPow(a, b);
+    }
+
+    @Benchmark
+    public BigInteger modMul() {
+        return modularArithmetic.modMul(a, b);
+    }
+
+    @Benchmark
+    public BigInteger modInverse() {
+        return modularArithmetic.modInverse(a);
+    }
+}
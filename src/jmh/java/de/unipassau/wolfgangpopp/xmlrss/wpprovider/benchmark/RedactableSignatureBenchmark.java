@@ -0,0 +1,105 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.benchmark;
+
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Identifier;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignature;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SignatureOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures signing, verifying and redacting with each redactable signature engine of the WPProvider.
+ *
+ * @author Wolfgang Popp
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RedactableSignatureBenchmark {
+
+    @Param({"RSSwithPSA", "GSRSSwithRSAandBPA", "GLRSSwithRSAandBPA"})
+    public String algorithm;
+
+    @Param({"16", "128"})
+    public int partCount;
+
+    @Param({"64", "1024"})
+    public int partSize;
+
+    @Param({"1024", "2048"})
+    public int keySize;
+
+    private KeyPair keyPair;
+    private byte[][] parts;
+    private RedactableSignature rss;
+    private SignatureOutput signature;
+    private Identifier redactedPart;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        keyPair = Benchmarks.keyPair(algorithm, keySize);
+        parts = Benchmarks.parts(partCount, partSize);
+        rss = RedactableSignature.getInstance(algorithm);
+        signature = sign();
+    }
+
+    @Benchmark
+    public SignatureOutput sign() throws Exception {
+        rss.initSign(keyPair);
+        for (int i = 0; i < parts.length; i++) {
+            Identifier identifier = rss.addPart(parts[i]);
+            if (i == 0) {
+                redactedPart = identifier;
+            }
+        }
+        return rss.sign();
+    }
+
+    @Benchmark
+    public boolean verify() throws Exception {
+        rss.initVerify(keyPair.getPublic());
+        return rss.verify(signature);
+    }
+
+    @Benchmark
+    public SignatureOutput redact() throws Exception {
+        rss.initRedact(keyPair.getPublic());
+        rss.addIdentifier(redactedPart);
+        return rss.redact(signature);
+    }
+}
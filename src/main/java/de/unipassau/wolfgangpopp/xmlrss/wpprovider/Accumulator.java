@@ -45,7 +45,7 @@ import java.util.List;
  * <ol>
  * <li> {@link #initWitness(KeyPair)}
  * <li> {@link #digest(byte[]...)}
- * <li> {@link #createWitness(byte[])}
+ * <li> {@link #createWitness(byte[])} or {@link #createWitnesses(byte[]...)}
  * </ol>
  *
  * Creating witnesses for existing accumulator value:
@@ -223,6 +223,37 @@ public abstract class Accumulator {
         engine.engineDigest(elements);
     }
 
+    /**
+     * Adds the given element to the already accumulated elements. The accumulator value changes, so all witnesses
+     * created before have to be updated via {@link #updateWitness(byte[], byte[])}. In some implementations the
+     * given element may not already be accumulated.
+     *
+     * @param element the element that is added to the accumulated elements
+     * @throws AccumulatorException if this Accumulator is not initialized properly or if the element cannot be added
+     */
+    public final void add(byte[] element) throws AccumulatorException {
+        if (state != STATE.CREATE_WITNESS) {
+            throw new AccumulatorException("not initialized for creating witnesses");
+        }
+        engine.engineAdd(element);
+    }
+
+    /**
+     * Updates the given witness, which was created before the last call of {@link #add(byte[])}, such that it
+     * certifies the membership of the given element in the current accumulator value.
+     *
+     * @param witness the outdated witness
+     * @param element the element certified by the given witness
+     * @return the updated witness
+     * @throws AccumulatorException if this Accumulator is not initialized properly or if the witness cannot be updated
+     */
+    public final byte[] updateWitness(byte[] witness, byte[] element) throws AccumulatorException {
+        if (state != STATE.CREATE_WITNESS) {
+            throw new AccumulatorException("not initialized for creating witnesses");
+        }
+        return engine.engineUpdateWitness(witness, element);
+    }
+
     /**
      * Restores this accumulator from the given accumulator state for creating witnesses. This method initializes the
      * Accumulator object from an already existing accumulator value, while {@link #digest(byte[]...)} generates a new
@@ -303,6 +334,25 @@ public abstract class Accumulator {
         throw new AccumulatorException("not initialized for creating witnesses");
     }
 
+    /**
+     * Creates witnesses for all of the given elements with regard to the private key and accumulator value.
+     * <p>
+     * The result is the same as calling {@link #createWitness(byte[])} for every element, but some implementations
+     * are able to create all witnesses at once much faster.
+     *
+     * @param elements the elements
+     * @return the witnesses, where the witness at index <code>i</code> certifies the membership of
+     * <code>elements[i]</code> in the accumulator
+     * @throws AccumulatorException if this Accumulator object is not initialized properly or if this accumulator
+     *                              algorithm is unable to process one of the given elements
+     */
+    public final byte[][] createWitnesses(byte[]... elements) throws AccumulatorException {
+        if (state == STATE.CREATE_WITNESS) {
+            return engine.engineCreateWitnesses(elements);
+        }
+        throw new AccumulatorException("not initialized for creating witnesses");
+    }
+
     /**
      * Verifies whether the given witness certifies the membership of the given element in the accumulated set.
      *
@@ -368,6 +418,24 @@ public abstract class Accumulator {
         throw new AccumulatorException("not initialized for creating witnesses");
     }
 
+    /**
+     * Returns an immutable snapshot of the key and the accumulator value of this accumulator.
+     * <p>
+     * The returned context is thread-safe and can be used concurrently by multiple threads to create witnesses (if
+     * this accumulator is initialized for creating witnesses) or to verify witnesses. Later changes of this accumulator
+     * object do not affect the returned context.
+     *
+     * @return the current accumulator context
+     * @throws AccumulatorException if this Accumulator object is not initialized properly or the accumulator
+     *                              implementation does not support contexts
+     */
+    public final AccumulatorContext getContext() throws AccumulatorException {
+        if (state != STATE.UNINITIALIZED) {
+            return engine.engineGetContext();
+        }
+        throw new AccumulatorException("not initialized");
+    }
+
     /**
      * Returns the name of the algorithm for this accumulator object.
      *
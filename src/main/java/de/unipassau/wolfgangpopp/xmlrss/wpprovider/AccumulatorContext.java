@@ -0,0 +1,82 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider;
+
+/**
+ * An <code>AccumulatorContext</code> is an immutable snapshot of an initialized {@link Accumulator}. It captures the
+ * key and the accumulator value at the time it was retrieved via {@link Accumulator#getContext()} and is not affected
+ * by later changes of the accumulator object. Accumulator contexts are thread-safe and can therefore be used to create
+ * and verify witnesses concurrently.
+ *
+ * @author Wolfgang Popp
+ */
+public interface AccumulatorContext {
+
+    /**
+     * Creates a witness for the given element.
+     *
+     * @param element the element
+     * @return the witness certifying the membership of the element in the accumulated set
+     * @throws AccumulatorException if this context was not retrieved from an accumulator that is initialized for
+     *                              creating witnesses or if the given element cannot be processed
+     */
+    byte[] createWitness(byte[] element) throws AccumulatorException;
+
+    /**
+     * Creates witnesses for all given elements. Implementations may create the witnesses together, which is faster
+     * than creating every witness on its own.
+     *
+     * @param elements the elements
+     * @return the witnesses, where the i-th witness certifies the membership of the i-th element
+     * @throws AccumulatorException if this context was not retrieved from an accumulator that is initialized for
+     *                              creating witnesses or if one of the given elements cannot be processed
+     */
+    byte[][] createWitnesses(byte[]... elements) throws AccumulatorException;
+
+    /**
+     * Verifies whether the given witness certifies the membership of the given element in the accumulated set.
+     *
+     * @param witness the witness for the given element
+     * @param element the element whose set-membership is verified
+     * @return true if the given <code>witness</code> is indeed a witness for <code>element</code>
+     * @throws AccumulatorException if the given element cannot be processed
+     */
+    boolean verify(byte[] witness, byte[] element) throws AccumulatorException;
+
+    /**
+     * Verifies whether all of the given witnesses certify the membership of the corresponding elements in the
+     * accumulated set. Implementations may check the witnesses together, which is faster than verifying every witness
+     * on its own, but may only tell whether all witnesses are valid and not which of them are invalid.
+     *
+     * @param witnesses the witnesses, where <code>witnesses[i]</code> is the witness for <code>elements[i]</code>
+     * @param elements  the elements whose set-membership is verified
+     * @return true if every witness is indeed a witness for the corresponding element
+     * @throws AccumulatorException if one of the given elements cannot be processed
+     */
+    boolean batchVerify(byte[][] witnesses, byte[][] elements) throws AccumulatorException;
+
+    /**
+     * Returns the accumulator value captured by this context.
+     *
+     * @return the accumulator value
+     */
+    byte[] getAccumulatorValue();
+}
@@ -67,6 +67,40 @@ public abstract class AccumulatorSpi {
      */
     protected abstract void engineDigest(byte[]... elements) throws AccumulatorException;
 
+    /**
+     * Adds the given element to the accumulated elements and updates the accumulator value accordingly.
+     * <p>
+     * Witnesses created before this call are not valid anymore and have to be updated with
+     * {@link #engineUpdateWitness(byte[], byte[])}. The default implementation digests all previously accumulated
+     * elements together with the given element again. Implementations that are able to extend an accumulator value
+     * more efficiently should override this method and {@link #engineUpdateWitness(byte[], byte[])}.
+     *
+     * @param element the element that is added to the accumulated elements
+     * @throws AccumulatorException if the given element cannot be added to the accumulated elements
+     */
+    protected void engineAdd(byte[] element) throws AccumulatorException {
+        byte[][] accumulated = engineGetAccumulatorState().elements;
+        byte[][] elements = new byte[accumulated.length + 1][];
+        System.arraycopy(accumulated, 0, elements, 0, accumulated.length);
+        elements[accumulated.length] = element;
+        engineDigest(elements);
+    }
+
+    /**
+     * Updates a witness that was created before the last call of {@link #engineAdd(byte[])}, such that it certifies
+     * the membership of the given element in the current accumulator value.
+     * <p>
+     * The default implementation discards the given witness and creates a new one.
+     *
+     * @param witness the witness created before the last element was added
+     * @param element the element certified by the given witness
+     * @return the updated witness
+     * @throws AccumulatorException if the given witness cannot be updated
+     */
+    protected byte[] engineUpdateWitness(byte[] witness, byte[] element) throws AccumulatorException {
+        return engineCreateWitness(element);
+    }
+
     /**
      * Restores the state of this accumulator engine for creating witnesses.
      * <p>
@@ -122,6 +156,25 @@ public abstract class AccumulatorSpi {
      */
     protected abstract byte[] engineCreateWitness(byte[] element) throws AccumulatorException;
 
+    /**
+     * Creates witnesses for all of the given elements.
+     * <p>
+     * The returned array contains the witness of <code>elements[i]</code> at index <code>i</code>. The default
+     * implementation calls {@link #engineCreateWitness(byte[])} for every element. Implementations, whose witnesses
+     * share common computations, should override this method to create all witnesses at once.
+     *
+     * @param elements the elements
+     * @return the witnesses certifying the membership of the given elements in the accumulated set
+     * @throws AccumulatorException if this accumulator algorithm is unable to process one of the given elements
+     */
+    protected byte[][] engineCreateWitnesses(byte[]... elements) throws AccumulatorException {
+        byte[][] witnesses = new byte[elements.length][];
+        for (int i = 0; i < elements.length; i++) {
+            witnesses[i] = engineCreateWitness(elements[i]);
+        }
+        return witnesses;
+    }
+
     /**
      * Checks whether the given witness certifies the membership of the given element in the accumulated set.
      *
@@ -133,6 +186,18 @@ public abstract class AccumulatorSpi {
      */
     protected abstract boolean engineVerify(byte[] witness, byte[] element) throws AccumulatorException;
 
+    /**
+     * Returns an immutable and thread-safe snapshot of the current state of this accumulator engine.
+     * <p>
+     * The default implementation throws an <code>AccumulatorException</code>, as contexts are an optional feature.
+     *
+     * @return the accumulator context
+     * @throws AccumulatorException if the engine is not initialized properly or does not support contexts
+     */
+    protected AccumulatorContext engineGetContext() throws AccumulatorException {
+        throw new AccumulatorException("This accumulator does not support contexts");
+    }
+
     /**
      * Returns the accumulator value of the accumulated elements.
      *
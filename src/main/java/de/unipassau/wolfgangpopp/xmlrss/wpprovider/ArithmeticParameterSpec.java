@@ -0,0 +1,80 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider;
+
+import java.security.spec.AlgorithmParameterSpec;
+
+/**
+ * The <code>ArithmeticParameterSpec</code> specifies which implementation of the modular arithmetic an accumulator
+ * engine uses. The {@link #REFERENCE} implementation delegates to <code>BigInteger</code> and is the default. The
+ * {@link #MONTGOMERY} engine computes in mutable limbs and allocates far less garbage at the cost of throughput, which
+ * may be preferable for servers that create many signatures. Both compute the same results. The spec is passed to an
+ * accumulator by wrapping it in the <code>AlgorithmParameters</code> of the "Arithmetic" algorithm:
+ * <pre>
+ * AlgorithmParameters parameters = AlgorithmParameters.getInstance("Arithmetic");
+ * parameters.init(ArithmeticParameterSpec.MONTGOMERY);
+ * accumulator.setParameters(parameters);
+ * </pre>
+ *
+ * @author Wolfgang Popp
+ */
+public class ArithmeticParameterSpec implements AlgorithmParameterSpec {
+
+    /**
+     * The reference arithmetic, which delegates to <code>BigInteger</code>.
+     */
+    public static final ArithmeticParameterSpec REFERENCE = new ArithmeticParameterSpec("BigInteger");
+
+    /**
+     * The Montgomery engine, which requires an odd modulus. Even moduli fall back to the reference arithmetic.
+     */
+    public static final ArithmeticParameterSpec MONTGOMERY = new ArithmeticParameterSpec("Montgomery");
+
+    private final String name;
+
+    private ArithmeticParameterSpec(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the arithmetic with the given name.
+     *
+     * @param name the name of the arithmetic, ignoring case
+     * @return the arithmetic or null if there is no arithmetic with the given name
+     */
+    public static ArithmeticParameterSpec forName(String name) {
+        for (ArithmeticParameterSpec spec : new ArithmeticParameterSpec[]{REFERENCE, MONTGOMERY}) {
+            if (spec.getName().equalsIgnoreCase(name)) {
+                return spec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of the arithmetic.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.AlgorithmParametersSpi;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.InvalidParameterSpecException;
+
+/**
+ * The <code>ArithmeticParameters</code> class is the <code>AlgorithmParametersSpi</code> of the "Arithmetic" algorithm
+ * parameters, which wrap an {@link ArithmeticParameterSpec}. The parameters are encoded as the UTF-8 bytes of the name
+ * of the arithmetic.
+ *
+ * @author Wolfgang Popp
+ */
+public class ArithmeticParameters extends AlgorithmParametersSpi {
+
+    private ArithmeticParameterSpec spec;
+
+    @Override
+    protected void engineInit(AlgorithmParameterSpec paramSpec) throws InvalidParameterSpecException {
+        if (!(paramSpec instanceof ArithmeticParameterSpec)) {
+            throw new InvalidParameterSpecException("Inappropriate parameter specification");
+        }
+        spec = (ArithmeticParameterSpec) paramSpec;
+    }
+
+    @Override
+    protected void engineInit(byte[] params) throws IOException {
+        ArithmeticParameterSpec decoded = ArithmeticParameterSpec.forName(new String(params, StandardCharsets.UTF_8));
+        if (decoded == null) {
+            throw new IOException("Unknown arithmetic");
+        }
+        spec = decoded;
+    }
+
+    @Override
+    protected void engineInit(byte[] params, String format) throws IOException {
+        engineInit(params);
+    }
+
+    @Override
+    protected <T extends AlgorithmParameterSpec> T engineGetParameterSpec(Class<T> paramSpec)
+            throws InvalidParameterSpecException {
+
+        if (!paramSpec.isAssignableFrom(ArithmeticParameterSpec.class)) {
+            throw new InvalidParameterSpecException("Inappropriate parameter specification");
+        }
+        return paramSpec.cast(spec);
+    }
+
+    @Override
+    protected byte[] engineGetEncoded() throws IOException {
+        return spec.getName().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected byte[] engineGetEncoded(String format) throws IOException {
+        return engineGetEncoded();
+    }
+
+    @Override
+    protected String engineToString() {
+        return "Arithmetic (" + spec.getName() + ")";
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider;
+
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.concurrent.Executor;
+
+/**
+ * The <code>ParallelismParameterSpec</code> specifies how a redactable signature engine distributes independent work
+ * (e.g. the creation and verification of witnesses) across threads.
+ * <p>
+ * Work on fewer elements than the given threshold is executed sequentially in the calling thread. Larger workloads are
+ * executed by the given executor or by a pool shared by all engines if no executor is given. Additionally, engines
+ * may be allowed to check many witnesses at once with a randomized batch verification instead of checking every
+ * witness on its own. The spec is passed to an engine by wrapping it in the <code>AlgorithmParameters</code> of the
+ * "Parallelism" algorithm:
+ * <pre>
+ * AlgorithmParameters parameters = AlgorithmParameters.getInstance("Parallelism");
+ * parameters.init(new ParallelismParameterSpec(executor, 64));
+ * redactableSignature.setParameters(parameters);
+ * </pre>
+ *
+ * @author Wolfgang Popp
+ */
+public class ParallelismParameterSpec implements AlgorithmParameterSpec {
+
+    /**
+     * The default threshold below which work is executed sequentially.
+     */
+    public static final int DEFAULT_THRESHOLD = 16;
+
+    /**
+     * Executes all work sequentially in the calling thread.
+     */
+    public static final ParallelismParameterSpec SEQUENTIAL =
+            new ParallelismParameterSpec(null, Integer.MAX_VALUE, false);
+
+    /**
+     * Executes work on at least {@link #DEFAULT_THRESHOLD} elements in the shared pool.
+     */
+    public static final ParallelismParameterSpec DEFAULT =
+            new ParallelismParameterSpec(null, DEFAULT_THRESHOLD, false);
+
+    private final Executor executor;
+    private final int threshold;
+    private final boolean batchVerification;
+
+    /**
+     * Constructs a new ParallelismParameterSpec without batch verification.
+     *
+     * @param executor  the executor used for parallel execution or null to use the shared pool
+     * @param threshold the minimum number of elements that are processed in parallel
+     */
+    public ParallelismParameterSpec(Executor executor, int threshold) {
+        this(executor, threshold, false);
+    }
+
+    /**
+     * Constructs a new ParallelismParameterSpec.
+     *
+     * @param executor          the executor used for parallel execution or null to use the shared pool
+     * @param threshold         the minimum number of elements that are processed in parallel
+     * @param batchVerification whether witnesses may be checked with a randomized batch verification
+     */
+    public ParallelismParameterSpec(Executor executor, int threshold, boolean batchVerification) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("The threshold must be positive");
+        }
+        this.executor = executor;
+        this.threshold = threshold;
+        this.batchVerification = batchVerification;
+    }
+
+    /**
+     * Returns the executor used for parallel execution.
+     *
+     * @return the executor or null if the shared pool is used
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Returns the minimum number of elements that are processed in parallel.
+     *
+     * @return the threshold
+     */
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Returns whether witnesses may be checked with a randomized batch verification.
+     *
+     * @return true if batch verification is enabled
+     */
+    public boolean isBatchVerification() {
+        return batchVerification;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider;
+
+import java.io.IOException;
+import java.security.AlgorithmParametersSpi;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.InvalidParameterSpecException;
+
+/**
+ * The <code>ParallelismParameters</code> class is the <code>AlgorithmParametersSpi</code> of the "Parallelism"
+ * algorithm parameters, which wrap a {@link ParallelismParameterSpec}. Executors cannot be encoded, so these parameters
+ * do not support encoding.
+ *
+ * @author Wolfgang Popp
+ */
+public class ParallelismParameters extends AlgorithmParametersSpi {
+
+    private ParallelismParameterSpec spec;
+
+    @Override
+    protected void engineInit(AlgorithmParameterSpec paramSpec) throws InvalidParameterSpecException {
+        if (!(paramSpec instanceof ParallelismParameterSpec)) {
+            throw new InvalidParameterSpecException("Inappropriate parameter specification");
+        }
+        spec = (ParallelismParameterSpec) paramSpec;
+    }
+
+    @Override
+    protected void engineInit(byte[] params) throws IOException {
+        throw new IOException("Parallelism parameters cannot be decoded");
+    }
+
+    @Override
+    protected void engineInit(byte[] params, String format) throws IOException {
+        engineInit(params);
+    }
+
+    @Override
+    protected <T extends AlgorithmParameterSpec> T engineGetParameterSpec(Class<T> paramSpec)
+            throws InvalidParameterSpecException {
+
+        if (!paramSpec.isAssignableFrom(ParallelismParameterSpec.class)) {
+            throw new InvalidParameterSpecException("Inappropriate parameter specification");
+        }
+        return paramSpec.cast(spec);
+    }
+
+    @Override
+    protected byte[] engineGetEncoded() throws IOException {
+        throw new IOException("Parallelism parameters cannot be encoded");
+    }
+
+    @Override
+    protected byte[] engineGetEncoded(String format) throws IOException {
+        return engineGetEncoded();
+    }
+
+    @Override
+    protected String engineToString() {
+        return "Parallelism (Executor: " + (spec.getExecutor() == null ? "shared pool" : spec.getExecutor())
+                + ", Threshold: " + spec.getThreshold() + ", Batch verification: " + spec.isBatchVerification() + ")";
+    }
+}
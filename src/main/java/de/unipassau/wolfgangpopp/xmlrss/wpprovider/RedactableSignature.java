@@ -22,6 +22,9 @@ package de.unipassau.wolfgangpopp.xmlrss.wpprovider;
 
 import sun.security.jca.GetInstance;
 
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.AlgorithmParameters;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -31,6 +34,7 @@ import java.security.NoSuchProviderException;
 import java.security.Provider;
 import java.security.PublicKey;
 import java.security.SecureRandom;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -355,6 +359,57 @@ public abstract class RedactableSignature {
         throw new RedactableSignatureException("not initialized for signing");
     }
 
+    /**
+     * Signs the elements that were added via a {@link #addPart(byte[]) addPart} method together with the redactable
+     * elements of the given iterator and writes the binary encoding of the signature output to the given channel.
+     * <p>
+     * In contrast to {@link #sign()}, the elements are signed as they are taken from the iterator and the signature
+     * output is written while it is generated. So very large sets of elements can be signed with bounded memory. Since
+     * the elements are not kept, set-based algorithms do not detect duplicate elements of the iterator.
+     * <p>
+     * A call of this method resets this signature object to the initial state, which is the state it was in after a
+     * call of {@link #initSign(KeyPair)}.
+     *
+     * @param parts   the elements to be signed
+     * @param channel the channel the encoded signature output is written to
+     * @throws RedactableSignatureException  if this RedactableSignature object is not initialized properly. Or if this
+     *                                       redactable signature algorithm cannot process the elements to be signed.
+     * @throws IOException                   if writing to the channel fails
+     * @throws UnsupportedOperationException if this redactable signature algorithm does not support streaming
+     */
+    public final void sign(Iterator<byte[]> parts, WritableByteChannel channel)
+            throws RedactableSignatureException, IOException {
+
+        if (state == STATE.SIGN) {
+            engine.engineSign(parts, channel);
+            return;
+        }
+        throw new RedactableSignatureException("not initialized for signing");
+    }
+
+    /**
+     * Verifies the binary encoded SignatureOutput that is read from the given channel.
+     * <p>
+     * In contrast to {@link #verify(SignatureOutput)}, the signed elements are verified as they are read. So very
+     * large signatures can be verified with bounded memory.
+     * <p>
+     * A call of this method resets this signature object to the initial state, which is the state it was in after a
+     * call of {@link #initVerify(PublicKey)}.
+     *
+     * @param channel the channel the encoded signature output is read from
+     * @return true if the signature verifies, false otherwise
+     * @throws RedactableSignatureException  if this RedactableSignature object is not initialized properly. Or if this
+     *                                       redactable signature algorithm cannot process the elements to be verified.
+     * @throws IOException                   if reading from the channel fails or the encoding is invalid
+     * @throws UnsupportedOperationException if this redactable signature algorithm does not support streaming
+     */
+    public final boolean verify(ReadableByteChannel channel) throws RedactableSignatureException, IOException {
+        if (state == STATE.VERIFY) {
+            return engine.engineVerify(channel);
+        }
+        throw new RedactableSignatureException("not initialized for verification");
+    }
+
     /**
      * Verifies the given SignatureOutput.
      * <p>
@@ -20,12 +20,16 @@
 
 package de.unipassau.wolfgangpopp.xmlrss.wpprovider;
 
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.AlgorithmParameters;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.security.SecureRandom;
+import java.util.Iterator;
 
 /**
  * This class defines the Service Provider Interface for the {@link RedactableSignature} class.
@@ -127,6 +131,47 @@ public abstract class RedactableSignatureSpi {
      */
     protected abstract SignatureOutput engineSign() throws RedactableSignatureException;
 
+    /**
+     * Signs the parts added so far together with the parts of the given iterator and writes the binary encoding of the
+     * signature output to the given channel. The parts are signed as they are taken from the iterator, so neither the
+     * parts nor the signature output have to be held in memory at once.
+     * <p>
+     * When this method completes, the state of this object must be reset to the initial state it was in after
+     * initialization.
+     * <p>
+     * Overriding this method is optional, since not all redactable signature schemes can sign parts before all parts
+     * are known. The default implementation throws an <code>UnsupportedOperationException</code>.
+     *
+     * @param parts   the redactable parts that are signed
+     * @param channel the channel the encoded signature output is written to
+     * @throws RedactableSignatureException if this engine cannot process the given data
+     * @throws IOException                  if writing to the channel fails
+     */
+    protected void engineSign(Iterator<byte[]> parts, WritableByteChannel channel)
+            throws RedactableSignatureException, IOException {
+
+        throw new UnsupportedOperationException("This Redactable Signature Scheme does not support streaming");
+    }
+
+    /**
+     * Verifies the binary encoded signature output that is read from the given channel. The signed parts are verified
+     * as they are read, so the signature output does not have to be held in memory at once.
+     * <p>
+     * When this method completes, the state of this object must be reset to the initial state it was in after
+     * initialization.
+     * <p>
+     * Overriding this method is optional, since not all redactable signature schemes can verify a signature before all
+     * parts are known. The default implementation throws an <code>UnsupportedOperationException</code>.
+     *
+     * @param channel the channel the encoded signature output is read from
+     * @return true if the signature was verified, false if not
+     * @throws RedactableSignatureException if this engine cannot process the given data
+     * @throws IOException                  if reading from the channel fails or the encoding is invalid
+     */
+    protected boolean engineVerify(ReadableByteChannel channel) throws RedactableSignatureException, IOException {
+        throw new UnsupportedOperationException("This Redactable Signature Scheme does not support streaming");
+    }
+
     /**
      * Verifies the given signature output.
      * <p>
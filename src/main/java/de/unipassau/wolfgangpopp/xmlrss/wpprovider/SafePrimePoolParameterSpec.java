@@ -0,0 +1,74 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider;
+
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.SafePrimePool;
+
+import java.security.spec.AlgorithmParameterSpec;
+
+/**
+ * The <code>SafePrimePoolParameterSpec</code> initializes a key pair generator that is based on safe primes (e.g. the
+ * PSRSS and BPA key pair generators) to take its safe primes from a {@link SafePrimePool} instead of searching them
+ * when a key pair is generated:
+ * <pre>
+ * SafePrimePool pool = new SafePrimePool(1024, 8, new SecureRandom(), new File("primes.pool"));
+ * keyPairGenerator.initialize(new SafePrimePoolParameterSpec(2048, pool));
+ * </pre>
+ *
+ * @author Wolfgang Popp
+ */
+public class SafePrimePoolParameterSpec implements AlgorithmParameterSpec {
+
+    private final int keySize;
+    private final SafePrimePool pool;
+
+    /**
+     * Constructs a new SafePrimePoolParameterSpec.
+     *
+     * @param keySize the key size in bits, which must be twice the bit length of the safe primes in the pool
+     * @param pool    the pool the safe primes are taken from
+     */
+    public SafePrimePoolParameterSpec(int keySize, SafePrimePool pool) {
+        if (pool.getBitLength() != keySize / 2) {
+            throw new IllegalArgumentException("The pool must contain safe primes of half the key size");
+        }
+        this.keySize = keySize;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the key size in bits.
+     *
+     * @return the key size
+     */
+    public int getKeySize() {
+        return keySize;
+    }
+
+    /**
+     * Returns the pool the safe primes are taken from.
+     *
+     * @return the safe prime pool
+     */
+    public SafePrimePool getPool() {
+        return pool;
+    }
+}
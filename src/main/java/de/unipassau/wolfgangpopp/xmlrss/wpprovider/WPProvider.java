@@ -74,6 +74,10 @@ public class WPProvider extends Provider {
         put("KeyPairGenerator.GLRSSwithRSAandBPA",
                 "de.unipassau.wolfgangpopp.xmlrss.wpprovider.grss.GLRSSKeyPairGenerator$GLRSSwithRSAandBPA");
 
+        // Algorithm parameters
+        put("AlgorithmParameters.Parallelism", "de.unipassau.wolfgangpopp.xmlrss.wpprovider.ParallelismParameters");
+        put("AlgorithmParameters.Arithmetic", "de.unipassau.wolfgangpopp.xmlrss.wpprovider.ArithmeticParameters");
+
         // Accumulator engines
         put("Accumulator.PSA", "de.unipassau.wolfgangpopp.xmlrss.wpprovider.psrss.PSAccumulator");
         put("Accumulator.BPA", "de.unipassau.wolfgangpopp.xmlrss.wpprovider.grss.BPAccumulator");
@@ -20,9 +20,15 @@
 
 package de.unipassau.wolfgangpopp.xmlrss.wpprovider.grss;
 
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorContext;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorException;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorSpi;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorState;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.ArithmeticParameterSpec;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ByteArray;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.FixedBaseExponentiation;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.FullDomainHash;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ModularArithmetic;
 
 import java.math.BigInteger;
 import java.security.AlgorithmParameters;
@@ -32,9 +38,13 @@ import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
-import static de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.CryptoUtils.fullDomainHash;
+import static de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.CryptoUtils.multiModPow;
 
 /**
  * The BPAccumulator implements the accumulator scheme proposed by Barić and Pfitzmann and adjusted in
@@ -44,10 +54,21 @@ import static de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.CryptoUtils.full
  */
 public class BPAccumulator extends AccumulatorSpi {
 
+    private static final int HASH_CACHE_SIZE = 1024;
+
     private BigInteger publicParm;
+    private ModularArithmetic arithmetic;
+    private ArithmeticParameterSpec arithmeticSpec = ArithmeticParameterSpec.REFERENCE;
+    private AlgorithmParameters parameters;
+    private FullDomainHash fullDomainHash;
     private BigInteger accumulatorValue;
     private BigInteger startValue;
+    private FixedBaseExponentiation startPowers;
     private byte[][] elements;
+    private BigInteger[] elementHashes;
+    private byte[] addedElement;
+    private BigInteger addedElementWitness;
+    private BigInteger updateExponent;
     private SecureRandom random;
 
     @Override
@@ -62,18 +83,68 @@ public class BPAccumulator extends AccumulatorSpi {
             startValue = new BigInteger(publicParm.bitLength(), random);
         } while (startValue.compareTo(publicParm) == 1 || !startValue.gcd(publicParm).equals(BigInteger.ONE));
 
-        BigInteger exponent = BigInteger.ONE;
+        startPowers = null;
+        this.elements = elements;
+        this.elementHashes = null;
+        resetAddedElement();
+        accumulatorValue = arithmetic.modPow(startValue, product(getElementHashes(), 0, elements.length));
+    }
 
-        for (byte[] element : elements) {
-            try {
-                exponent = exponent.multiply(fullDomainHash(publicParm, element));
-            } catch (NoSuchAlgorithmException e) {
-                throw new AccumulatorException(e);
+    /**
+     * Adds the given element to the accumulated elements. The start value is randomized by a fresh random exponent
+     * <code>t</code> with each added element, so that consecutive accumulator values cannot be linked to each other.
+     * The new accumulator value is <code>acc^(t * FDH(element))</code> and a previous witness <code>w</code> is updated
+     * to <code>w^(t * FDH(element))</code>.
+     *
+     * @param element the element that is added to the accumulated elements
+     * @throws AccumulatorException if the given element is already accumulated
+     */
+    @Override
+    protected void engineAdd(byte[] element) throws AccumulatorException {
+        for (byte[] bytes : elements) {
+            if (Arrays.equals(bytes, element)) {
+                throw new AccumulatorException("The given element is already accumulated");
             }
         }
 
-        accumulatorValue = startValue.modPow(exponent, publicParm);
-        this.elements = elements;
+        BigInteger hash;
+        try {
+            hash = fullDomainHash.hash(element);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AccumulatorException(e);
+        }
+
+        BigInteger blinding;
+        do {
+            blinding = new BigInteger(publicParm.bitLength(), random);
+        } while (blinding.signum() == 0);
+
+        BigInteger[] hashes = elementHashes == null ? null : Arrays.copyOf(elementHashes, elementHashes.length + 1);
+        if (hashes != null) {
+            hashes[elementHashes.length] = hash;
+        }
+        byte[][] extended = Arrays.copyOf(elements, elements.length + 1);
+        extended[elements.length] = element;
+
+        addedElement = element;
+        addedElementWitness = arithmetic.modPow(accumulatorValue, blinding);
+        updateExponent = blinding.multiply(hash);
+        accumulatorValue = arithmetic.modPow(addedElementWitness, hash);
+        startValue = arithmetic.modPow(startValue, blinding);
+        startPowers = null;
+        elements = extended;
+        elementHashes = hashes;
+    }
+
+    @Override
+    protected byte[] engineUpdateWitness(byte[] witness, byte[] element) throws AccumulatorException {
+        if (updateExponent == null) {
+            throw new AccumulatorException("No element has been added since the last digest");
+        }
+        if (Arrays.equals(element, addedElement)) {
+            throw new AccumulatorException("The witness of the added element cannot be updated");
+        }
+        return arithmetic.modPow(new BigInteger(witness), updateExponent).toByteArray();
     }
 
     @Override
@@ -82,7 +153,10 @@ public class BPAccumulator extends AccumulatorSpi {
 
         this.accumulatorValue = new BigInteger(accumulatorValue);
         this.startValue = new BigInteger(auxiliaryValue);
+        this.startPowers = null;
         this.elements = elements;
+        this.elementHashes = null;
+        resetAddedElement();
     }
 
     @Override
@@ -90,7 +164,12 @@ public class BPAccumulator extends AccumulatorSpi {
         if (!(publicKey instanceof BPPublicKey)) {
             throw new InvalidKeyException("The given key is not a BPKey");
         }
-        publicParm = ((BPPublicKey) publicKey).getKey();
+        setPublicParm(((BPPublicKey) publicKey).getKey());
+        startValue = null;
+        startPowers = null;
+        elements = null;
+        elementHashes = null;
+        resetAddedElement();
     }
 
     @Override
@@ -100,29 +179,44 @@ public class BPAccumulator extends AccumulatorSpi {
 
     @Override
     protected byte[] engineCreateWitness(byte[] element) throws AccumulatorException {
-        BigInteger exponent = BigInteger.ONE;
+        if (addedElementWitness != null && Arrays.equals(element, addedElement)) {
+            return addedElementWitness.toByteArray();
+        }
 
-        for (byte[] bytes : elements) {
-            if (!Arrays.equals(bytes, element)) {
-                try {
-                    exponent = exponent.multiply(fullDomainHash(publicParm, bytes));
-                } catch (NoSuchAlgorithmException e) {
-                    throw new AccumulatorException(e);
-                }
+        return createWitness(getStartPowers(), elements, getElementHashes(), element);
+    }
+
+    @Override
+    protected byte[][] engineCreateWitnesses(byte[]... elements) throws AccumulatorException {
+        byte[][] witnesses = createWitnesses(arithmetic, getStartPowers(), this.elements, getElementHashes(),
+                elements);
+        if (witnesses == null) {
+            return super.engineCreateWitnesses(elements);
+        }
+
+        for (int i = 0; i < elements.length; i++) {
+            if (witnesses[i] == null) {
+                witnesses[i] = engineCreateWitness(elements[i]);
             }
         }
-        return startValue.modPow(exponent, publicParm).toByteArray();
+        return witnesses;
     }
 
     @Override
     protected boolean engineVerify(byte[] witness, byte[] element) throws AccumulatorException {
-        BigInteger intWitness = new BigInteger(witness);
-        try {
-            BigInteger intElement = fullDomainHash(publicParm, element);
-            return intWitness.modPow(intElement, publicParm).equals(accumulatorValue);
-        } catch (NoSuchAlgorithmException e) {
-            throw new AccumulatorException(e);
+        return verify(arithmetic, fullDomainHash, accumulatorValue, witness, element);
+    }
+
+    @Override
+    protected AccumulatorContext engineGetContext() throws AccumulatorException {
+        if (accumulatorValue == null) {
+            throw new AccumulatorException("The accumulator value is neither digested nor restored");
+        }
+        if (startValue == null) {
+            return new Context(arithmetic, fullDomainHash, accumulatorValue, null, null, null);
         }
+        return new Context(arithmetic, fullDomainHash, accumulatorValue, getStartPowers(), elements,
+                getElementHashes());
     }
 
     @Override
@@ -142,19 +236,307 @@ public class BPAccumulator extends AccumulatorSpi {
 
     @Override
     protected AlgorithmParameters engineGetParameters() {
-        return null;
+        return parameters;
     }
 
+    /**
+     * Selects the modular arithmetic of this accumulator with the given "Arithmetic" parameters. The arithmetic of an
+     * initialized accumulator is replaced, the accumulator value is kept.
+     *
+     * @param parameters the parameters wrapping an {@link ArithmeticParameterSpec} or null for the reference arithmetic
+     * @throws InvalidAlgorithmParameterException if the given parameters do not contain an ArithmeticParameterSpec
+     */
     @Override
     protected void engineSetParameters(AlgorithmParameters parameters) throws InvalidAlgorithmParameterException {
+        arithmeticSpec = ModularArithmetic.getSpec(parameters);
+        this.parameters = parameters;
+        if (publicParm != null) {
+            arithmetic = ModularArithmetic.getInstance(publicParm, arithmeticSpec);
+            startPowers = null;
+        }
+    }
+
+    private void resetAddedElement() {
+        addedElement = null;
+        addedElementWitness = null;
+        updateExponent = null;
+    }
+
+    private BigInteger[] getElementHashes() throws AccumulatorException {
+        if (elementHashes == null) {
+            BigInteger[] hashes = new BigInteger[elements.length];
+            for (int i = 0; i < elements.length; i++) {
+                try {
+                    hashes[i] = fullDomainHash.hash(elements[i]);
+                } catch (NoSuchAlgorithmException e) {
+                    throw new AccumulatorException(e);
+                }
+            }
+            elementHashes = hashes;
+        }
+        return elementHashes;
+    }
 
+    /**
+     * Returns the powers of the start value. Every witness is a power of the start value, so the table of powers is
+     * shared by all witnesses of the same start value. It is built lazily, see {@link FixedBaseExponentiation}. Its
+     * exponents are bounded by the product of the hashes of all accumulated elements.
+     */
+    private FixedBaseExponentiation getStartPowers() throws AccumulatorException {
+        if (startPowers == null) {
+            int maxExponentBits = 1;
+            for (BigInteger hash : getElementHashes()) {
+                maxExponentBits += hash.bitLength();
+            }
+            startPowers = new FixedBaseExponentiation(startValue, arithmetic, maxExponentBits);
+        }
+        return startPowers;
+    }
+
+    /**
+     * Creates the witnesses of the given elements with a root factor tree. The start value is raised to the product of
+     * the hashes of all accumulated elements that are not requested, which yields the common base of the requested
+     * witnesses. The tree then only spans the requested elements, so disjoint subsets of the accumulated elements can
+     * be processed independently, e.g. by different threads.
+     *
+     * @return the witnesses, which are null for elements that are not accumulated, or null if the requested witnesses
+     * are cheaper to create one by one
+     */
+    private static byte[][] createWitnesses(ModularArithmetic arithmetic, FixedBaseExponentiation startPowers,
+                                            byte[][] accumulated, BigInteger[] hashes, byte[][] elements) {
+
+        // Equal elements share one witness, so their hashes are merged into a single factor
+        Map<ByteArray, BigInteger> factors = new HashMap<>();
+        for (int i = 0; i < accumulated.length; i++) {
+            ByteArray element = new ByteArray(accumulated[i]);
+            BigInteger factor = factors.get(element);
+            factors.put(element, factor == null ? hashes[i] : factor.multiply(hashes[i]));
+        }
+
+        Map<ByteArray, Integer> indices = new HashMap<>();
+        List<BigInteger> requested = new ArrayList<>();
+        for (byte[] bytes : elements) {
+            ByteArray element = new ByteArray(bytes);
+            BigInteger factor = factors.remove(element);
+            if (factor != null) {
+                indices.put(element, requested.size());
+                requested.add(factor);
+            }
+        }
+
+        // The root factor tree costs about log2(n) full exponentiations. Only few witnesses are cheaper one by one.
+        if (requested.size() <= 32 - Integer.numberOfLeadingZeros(requested.size() + factors.size())) {
+            return null;
+        }
+
+        BigInteger base = startPowers.getBase();
+        if (!factors.isEmpty()) {
+            BigInteger[] remaining = factors.values().toArray(new BigInteger[factors.size()]);
+            base = startPowers.modPow(product(remaining, 0, remaining.length));
+        }
+
+        BigInteger[] rootFactors = new BigInteger[requested.size()];
+        rootFactor(arithmetic, base, requested.toArray(new BigInteger[requested.size()]), 0, rootFactors.length,
+                rootFactors);
+
+        byte[][] witnesses = new byte[elements.length][];
+        for (int i = 0; i < elements.length; i++) {
+            Integer index = indices.get(new ByteArray(elements[i]));
+            if (index != null) {
+                witnesses[i] = rootFactors[index].toByteArray();
+            }
+        }
+        return witnesses;
+    }
+
+    /**
+     * Computes <code>base^(product of all factors except factors[i]) mod publicParm</code> for every i in
+     * <code>[from, to)</code> and stores the result in <code>results[i]</code>. The range is split in two halves and
+     * each half is raised to the product of the other half, before the algorithm recurses into both halves. This
+     * results in O(n log n) exponentiations instead of the O(n^2) exponentiations of the naive approach.
+     */
+    private static void rootFactor(ModularArithmetic arithmetic, BigInteger base, BigInteger[] factors, int from,
+                                   int to, BigInteger[] results) {
+        if (to - from == 1) {
+            results[from] = base;
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+        rootFactor(arithmetic, arithmetic.modPow(base, product(factors, mid, to)), factors, from, mid, results);
+        rootFactor(arithmetic, arithmetic.modPow(base, product(factors, from, mid)), factors, mid, to, results);
+    }
+
+    private static byte[] createWitness(FixedBaseExponentiation startPowers, byte[][] elements, BigInteger[] hashes,
+                                        byte[] element) {
+        BigInteger exponent = BigInteger.ONE;
+
+        for (int i = 0; i < elements.length; i++) {
+            if (!Arrays.equals(elements[i], element)) {
+                exponent = exponent.multiply(hashes[i]);
+            }
+        }
+        return startPowers.modPow(exponent).toByteArray();
+    }
+
+    private static boolean verify(ModularArithmetic arithmetic, FullDomainHash fullDomainHash,
+                                  BigInteger accumulatorValue, byte[] witness, byte[] element)
+            throws AccumulatorException {
+
+        BigInteger intWitness = new BigInteger(witness);
+        try {
+            BigInteger intElement = fullDomainHash.hash(element);
+            return arithmetic.modPow(intWitness, intElement).equals(accumulatorValue);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AccumulatorException(e);
+        }
+    }
+
+    private static BigInteger square(ModularArithmetic arithmetic, BigInteger value) {
+        return arithmetic.modMul(value, value);
+    }
+
+    private static boolean isReduced(BigInteger value, BigInteger modulus) {
+        return value.signum() >= 0 && value.compareTo(modulus) < 0;
+    }
+
+    private static BigInteger product(BigInteger[] factors, int from, int to) {
+        if (to - from == 0) {
+            return BigInteger.ONE;
+        }
+        if (to - from == 1) {
+            return factors[from];
+        }
+
+        int mid = (from + to) >>> 1;
+        return product(factors, from, mid).multiply(product(factors, mid, to));
     }
 
     private void checkAndSetParm(KeyPair keyPair) throws InvalidKeyException {
         if (!(keyPair.getPublic() instanceof BPPublicKey) || !(keyPair.getPrivate() instanceof BPPrivateKey)) {
             throw new InvalidKeyException("The given key pair is not a BPKeyPair");
         }
-        this.publicParm = ((BPPublicKey) keyPair.getPublic()).getKey();
+        setPublicParm(((BPPublicKey) keyPair.getPublic()).getKey());
+    }
+
+    private void setPublicParm(BigInteger publicParm) {
+        this.publicParm = publicParm;
+
+        // keep the cached hashes if the accumulator is initialized with the same modulus again
+        if (fullDomainHash == null || !fullDomainHash.getMax().equals(publicParm)) {
+            fullDomainHash = new FullDomainHash(publicParm, HASH_CACHE_SIZE);
+            arithmetic = ModularArithmetic.getInstance(publicParm, arithmeticSpec);
+        }
     }
 
+    /**
+     * The immutable state of a BPAccumulator. The context of an accumulator that is initialized for verification
+     * contains neither the start value nor the accumulated elements and therefore cannot create witnesses.
+     */
+    private static final class Context implements AccumulatorContext {
+        private static final int MIN_BATCH_SIZE = 32;
+        private static final int BATCH_EXPONENT_BITS = 64;
+        private static final SecureRandom BATCH_RANDOM = new SecureRandom();
+
+        private final ModularArithmetic arithmetic;
+        private final FullDomainHash fullDomainHash;
+        private final BigInteger publicParm;
+        private final BigInteger accumulatorValue;
+        private final FixedBaseExponentiation startPowers;
+        private final byte[][] elements;
+        private final BigInteger[] hashes;
+
+        private Context(ModularArithmetic arithmetic, FullDomainHash fullDomainHash, BigInteger accumulatorValue,
+                        FixedBaseExponentiation startPowers, byte[][] elements, BigInteger[] hashes) {
+            this.arithmetic = arithmetic;
+            this.fullDomainHash = fullDomainHash;
+            this.publicParm = fullDomainHash.getMax();
+            this.accumulatorValue = accumulatorValue;
+            this.startPowers = startPowers;
+            this.elements = elements == null ? null : Arrays.copyOf(elements, elements.length);
+            this.hashes = hashes;
+        }
+
+        @Override
+        public byte[] createWitness(byte[] element) throws AccumulatorException {
+            if (startPowers == null) {
+                throw new AccumulatorException("not initialized for creating witnesses");
+            }
+            return BPAccumulator.createWitness(startPowers, elements, hashes, element);
+        }
+
+        @Override
+        public byte[][] createWitnesses(byte[]... elements) throws AccumulatorException {
+            if (startPowers == null) {
+                throw new AccumulatorException("not initialized for creating witnesses");
+            }
+
+            byte[][] witnesses = BPAccumulator.createWitnesses(arithmetic, startPowers, this.elements, hashes,
+                    elements);
+            if (witnesses == null) {
+                witnesses = new byte[elements.length][];
+            }
+            for (int i = 0; i < elements.length; i++) {
+                if (witnesses[i] == null) {
+                    witnesses[i] = createWitness(elements[i]);
+                }
+            }
+            return witnesses;
+        }
+
+        @Override
+        public boolean verify(byte[] witness, byte[] element) throws AccumulatorException {
+            return BPAccumulator.verify(arithmetic, fullDomainHash, accumulatorValue, witness, element);
+        }
+
+        /**
+         * Verifies all witnesses at once using the randomized small exponent test: every equation
+         * <code>w_i^H(x_i) = acc</code> is raised to a random odd exponent r_i and the square of the product of all
+         * left-hand sides is compared to the square of <code>acc^(r_1 + ... + r_n)</code>. The product is computed
+         * with a single multi-exponentiation. Squared, both sides lie in the subgroup of quadratic residues, whose
+         * order is a product of two large primes since the modulus is a product of safe primes. Hence, an invalid
+         * witness is detected with overwhelming probability.
+         * <p>
+         * The batch only checks the equations up to factors of order two, though: a witness that differs from a valid
+         * one by such a factor (e.g. <code>-w mod n</code>) is rejected by {@link #verify(byte[], byte[])} but
+         * passes the batch. Small batches and accumulator values outside <code>[0, n)</code> are verified one by one.
+         */
+        @Override
+        public boolean batchVerify(byte[][] witnesses, byte[][] elements) throws AccumulatorException {
+            if (witnesses.length != elements.length) {
+                throw new AccumulatorException("The number of witnesses and elements differ");
+            }
+
+            if (witnesses.length < MIN_BATCH_SIZE || !isReduced(accumulatorValue, publicParm)) {
+                for (int i = 0; i < witnesses.length; i++) {
+                    if (!verify(witnesses[i], elements[i])) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            BigInteger[] bases = new BigInteger[witnesses.length];
+            BigInteger[] exponents = new BigInteger[witnesses.length];
+            BigInteger exponentSum = BigInteger.ZERO;
+            try {
+                for (int i = 0; i < witnesses.length; i++) {
+                    BigInteger r = new BigInteger(BATCH_EXPONENT_BITS, BATCH_RANDOM).setBit(0);
+                    bases[i] = new BigInteger(witnesses[i]).mod(publicParm);
+                    exponents[i] = fullDomainHash.hash(elements[i]).multiply(r);
+                    exponentSum = exponentSum.add(r);
+                }
+            } catch (NoSuchAlgorithmException e) {
+                throw new AccumulatorException(e);
+            }
+
+            return square(arithmetic, multiModPow(bases, exponents, publicParm))
+                    .equals(square(arithmetic, arithmetic.modPow(accumulatorValue, exponentSum)));
+        }
+
+        @Override
+        public byte[] getAccumulatorValue() {
+            return accumulatorValue.toByteArray();
+        }
+    }
 }
@@ -20,6 +20,10 @@
 
 package de.unipassau.wolfgangpopp.xmlrss.wpprovider.grss;
 
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SafePrimePoolParameterSpec;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.CryptoUtils;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.SafePrimePool;
+
 import java.math.BigInteger;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyPair;
@@ -29,8 +33,6 @@ import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.spec.AlgorithmParameterSpec;
 
-import static de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.CryptoUtils.safePrime;
-
 /**
  * @author Wolfgang Popp
  */
@@ -39,28 +41,35 @@ public class BPKeyPairGenerator extends KeyPairGeneratorSpi {
 
     private SecureRandom random = new SecureRandom();
     private int keySize = 2048;
+    private SafePrimePool pool;
 
     @Override
     public void initialize(int keysize, SecureRandom random) {
         this.keySize = keysize;
         this.random = random;
+        this.pool = null;
     }
 
     @Override
     public void initialize(AlgorithmParameterSpec params, SecureRandom random)
             throws InvalidAlgorithmParameterException {
 
-        //TODO
-        super.initialize(params, random);
+        if (!(params instanceof SafePrimePoolParameterSpec)) {
+            throw new InvalidAlgorithmParameterException("Only SafePrimePoolParameterSpec is supported");
+        }
+        this.keySize = ((SafePrimePoolParameterSpec) params).getKeySize();
+        this.random = random;
+        this.pool = ((SafePrimePoolParameterSpec) params).getPool();
     }
 
     @Override
     public KeyPair generateKeyPair() {
-        BigInteger p = safePrime(keySize / 2, random);
-        BigInteger q = safePrime(keySize / 2, random);
+        BigInteger[] primes = safePrimes(2);
+        BigInteger p = primes[0];
+        BigInteger q = primes[1];
 
         while (p.equals(q)) {
-            q = safePrime(keySize / 2, random);
+            q = safePrimes(1)[0];
         }
 
         PublicKey publicKey = new BPPublicKey(p.multiply(q));
@@ -68,4 +77,11 @@ public class BPKeyPairGenerator extends KeyPairGeneratorSpi {
 
         return new KeyPair(publicKey, privateKey);
     }
+
+    private BigInteger[] safePrimes(int count) {
+        if (pool != null) {
+            return pool.take(count);
+        }
+        return CryptoUtils.safePrimes(count, keySize / 2, random);
+    }
 }
@@ -20,6 +20,9 @@
 
 package de.unipassau.wolfgangpopp.xmlrss.wpprovider.grss;
 
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SafePrimePoolParameterSpec;
+
+import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.KeyPairGeneratorSpi;
@@ -27,6 +30,7 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
 
 /**
  * @author Wolfgang Popp
@@ -48,6 +52,17 @@ public abstract class GLRSSKeyPairGenerator extends KeyPairGeneratorSpi {
         accGenerator.initialize(keysize, random);
     }
 
+    @Override
+    public void initialize(AlgorithmParameterSpec params, SecureRandom random)
+            throws InvalidAlgorithmParameterException {
+
+        if (!(params instanceof SafePrimePoolParameterSpec)) {
+            throw new InvalidAlgorithmParameterException("Only SafePrimePoolParameterSpec is supported");
+        }
+        gsrssGenerator.initialize(params, random);
+        accGenerator.initialize(params, random);
+    }
+
     @Override
     public KeyPair generateKeyPair() {
         KeyPair gsrssKeyPair = gsrssGenerator.generateKeyPair();
@@ -22,10 +22,15 @@ package de.unipassau.wolfgangpopp.xmlrss.wpprovider.grss;
 
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Identifier;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SignatureOutput;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.BinaryDecoder;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.BinaryEncoder;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ByteArray;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -34,7 +39,8 @@ import java.util.Set;
 /**
  * @author Wolfgang Popp
  */
-public class GLRSSSignatureOutput implements SignatureOutput {
+public class GLRSSSignatureOutput implements SignatureOutput, BinaryEncoder.Encoding {
+    static final byte ENCODING_TYPE = 3;
 
     private final List<GLRSSSignedPart> parts;
     private final Set<ByteArray> messageParts;
@@ -46,7 +52,7 @@ public class GLRSSSignatureOutput implements SignatureOutput {
         this.parts = parts;
         Set<ByteArray> messageParts = new HashSet<>(size());
         for (GLRSSSignedPart part : parts) {
-            messageParts.add(new ByteArray(part.getMessagePart()));
+            messageParts.add(new ByteArray(part.messagePart));
         }
         this.messageParts = Collections.unmodifiableSet(messageParts);
         this.gsAccumulator = gsAccumulator;
@@ -65,21 +71,107 @@ public class GLRSSSignatureOutput implements SignatureOutput {
         return Arrays.copyOf(gsDsigValue, gsDsigValue.length);
     }
 
+    /**
+     * Returns a read-only view of the accumulator value of the embedded GSRSS signature.
+     *
+     * @return the accumulator value of the embedded GSRSS signature
+     */
+    public ByteBuffer getGsAccumulatorBuffer() {
+        return ByteBuffer.wrap(gsAccumulator).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a read-only view of the dsig value of the embedded GSRSS signature.
+     *
+     * @return the dsig value of the embedded GSRSS signature
+     */
+    public ByteBuffer getGsDsigValueBuffer() {
+        return ByteBuffer.wrap(gsDsigValue).asReadOnlyBuffer();
+    }
+
     public GSRSSSignatureOutput extractGSOutput() {
         GSRSSSignatureOutput.Builder builder = new GSRSSSignatureOutput.Builder();
-        builder.setDSigValue(getGsDsigValue())
-                .setAccumulatorValue(getGsAccumulator());
+        builder.setDSigValue(gsDsigValue)
+                .setAccumulatorValue(gsAccumulator);
 
-        for (GLRSSSignatureOutput.GLRSSSignedPart glrssSignedPart : getParts()) {
-            byte[] value = glrssSignedPart.toGSIdentifier().getBytes();
-            builder.addSignedPart(value, glrssSignedPart.getGsProof(), glrssSignedPart.isRedactable());
+        for (GLRSSSignatureOutput.GLRSSSignedPart glrssSignedPart : parts) {
+            builder.addSignedPart(glrssSignedPart.toGSIdentifier().getByteArray(), glrssSignedPart.gsProof,
+                    glrssSignedPart.isRedactable);
         }
 
         return builder.build();
     }
 
+    /**
+     * Writes the binary encoding of this signature output to the given encoder.
+     *
+     * @param encoder the encoder
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        encoder.writeHeader(ENCODING_TYPE);
+        encoder.writeBytes(gsAccumulator);
+        encoder.writeBytes(gsDsigValue);
+        encoder.writeLength(parts.size());
+        for (GLRSSSignedPart part : parts) {
+            encoder.writeBytes(part.messagePart);
+            encoder.writeBytes(part.randomValue);
+            encoder.writeBytes(part.accumulatorValue);
+            encoder.writeBytes(part.gsProof);
+            encoder.writeBoolean(part.isRedactable);
+            encoder.writeLength(part.witnesses.size());
+            for (ByteArray witness : part.witnesses) {
+                encoder.writeBytes(witness.getArray());
+            }
+        }
+    }
+
+    /**
+     * Returns the binary encoding of this signature output.
+     *
+     * @return the binary encoding
+     */
+    public byte[] getEncoded() {
+        return BinaryEncoder.encode(this);
+    }
+
+    /**
+     * Reads a binary encoded signature output from the given decoder.
+     *
+     * @param decoder the decoder
+     * @return the decoded signature output
+     * @throws IOException if an I/O error occurs or if the encoding is invalid
+     */
+    public static GLRSSSignatureOutput readFrom(BinaryDecoder decoder) throws IOException {
+        decoder.readHeader(ENCODING_TYPE);
+        byte[] gsAccumulator = decoder.readBytes();
+        byte[] gsDsigValue = decoder.readBytes();
+        int size = decoder.readLength();
+
+        List<GLRSSSignedPart> parts = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            GLRSSSignedPart part = new GLRSSSignedPart();
+            part.messagePart = decoder.readBytes();
+            part.randomValue = decoder.readBytes();
+            part.accumulatorValue = decoder.readBytes();
+            part.gsProof = decoder.readBytes();
+            part.isRedactable = decoder.readBoolean();
+            int witnesses = decoder.readLength();
+            for (int j = 0; j < witnesses; j++) {
+                part.witnesses.add(new ByteArray(decoder.readBytes()));
+            }
+            parts.add(part);
+        }
+        return new GLRSSSignatureOutput(parts, gsAccumulator, gsDsigValue);
+    }
+
     static byte[] concat(byte[] messagePart, byte[] accumulatorValue, byte[] randomValue) {
-        return new ByteArray(messagePart).concat(accumulatorValue).concat(randomValue).getArray();
+        byte[] concat = new byte[messagePart.length + accumulatorValue.length + randomValue.length];
+        System.arraycopy(messagePart, 0, concat, 0, messagePart.length);
+        System.arraycopy(accumulatorValue, 0, concat, messagePart.length, accumulatorValue.length);
+        System.arraycopy(randomValue, 0, concat, messagePart.length + accumulatorValue.length, randomValue.length);
+        return concat;
     }
 
 
@@ -92,7 +184,7 @@ public class GLRSSSignatureOutput implements SignatureOutput {
     public boolean contains(Identifier identifier) {
         int position = identifier.getPosition();
         return !(position < 0 || position >= size()) &&
-                Arrays.equals(parts.get(position).getMessagePart(), identifier.getBytes());
+                Arrays.equals(parts.get(position).messagePart, identifier.getBytes());
     }
 
     @Override
@@ -144,6 +236,7 @@ public class GLRSSSignatureOutput implements SignatureOutput {
 
         public Builder setMessagePart(int index, byte[] messagePart) {
             parts[index].messagePart = Arrays.copyOf(messagePart, messagePart.length);
+            parts[index].gsIdentifier = null;
             return this;
         }
 
@@ -154,6 +247,7 @@ public class GLRSSSignatureOutput implements SignatureOutput {
 
         public Builder setRandomValue(int index, byte[] randomValue) {
             parts[index].randomValue = Arrays.copyOf(randomValue, randomValue.length);
+            parts[index].gsIdentifier = null;
             return this;
         }
 
@@ -176,6 +270,34 @@ public class GLRSSSignatureOutput implements SignatureOutput {
 
         public Builder setAccValue(int index, byte[] accumulatorValue) {
             parts[index].accumulatorValue = Arrays.copyOf(accumulatorValue, accumulatorValue.length);
+            parts[index].gsIdentifier = null;
+            return this;
+        }
+
+        /**
+         * Sets the part at the given index to the given signed part of a redacted signature output. The immutable data
+         * of the given part, including its witnesses, is shared instead of copied. Only the witnesses of the positions
+         * that are not removed are kept.
+         *
+         * @param index   the index of the part in the new signature output
+         * @param part    the signed part of the original signature output
+         * @param removed the positions of the parts that are removed from the original signature output
+         * @return a reference to this object
+         */
+        Builder setPart(int index, GLRSSSignedPart part, BitSet removed) {
+            GLRSSSignedPart newPart = parts[index];
+            newPart.messagePart = part.messagePart;
+            newPart.randomValue = part.randomValue;
+            newPart.accumulatorValue = part.accumulatorValue;
+            newPart.isRedactable = part.isRedactable;
+            newPart.gsIdentifier = part.gsIdentifier;
+
+            List<ByteArray> witnesses = part.witnesses;
+            newPart.witnesses.clear();
+            newPart.witnesses.ensureCapacity(witnesses.size());
+            for (int j = removed.nextClearBit(0); j < witnesses.size(); j = removed.nextClearBit(j + 1)) {
+                newPart.witnesses.add(witnesses.get(j));
+            }
             return this;
         }
 
@@ -190,8 +312,8 @@ public class GLRSSSignatureOutput implements SignatureOutput {
         }
 
         Builder embedGSOutput(GSRSSSignatureOutput output) {
-            this.gsAccumulator = output.getAccumulatorValue();
-            this.gsDsigValue = output.getDSigValue();
+            this.gsAccumulator = output.accumulatorValue();
+            this.gsDsigValue = output.dSigValue();
             for (GLRSSSignedPart part : parts) {
                 part.gsProof = output.getProof(part.toGSIdentifier());
             }
@@ -211,12 +333,71 @@ public class GLRSSSignatureOutput implements SignatureOutput {
         private byte[] accumulatorValue;
         private byte[] gsProof;
         private boolean isRedactable;
-        private final List<ByteArray> witnesses = new ArrayList<>();
+        private final ArrayList<ByteArray> witnesses = new ArrayList<>();
+        private Identifier gsIdentifier;
 
         public byte[] getMessagePart() {
             return Arrays.copyOf(messagePart, messagePart.length);
         }
 
+        /**
+         * Returns a read-only view of the message part. Unlike {@link #getMessagePart()}, the message part is not
+         * copied.
+         *
+         * @return the message part
+         */
+        public ByteBuffer getMessagePartBuffer() {
+            return ByteBuffer.wrap(messagePart).asReadOnlyBuffer();
+        }
+
+        /**
+         * Returns a read-only view of the random value, which is accumulated by the positional accumulator.
+         *
+         * @return the random value
+         */
+        public ByteBuffer getRandomValueBuffer() {
+            return ByteBuffer.wrap(randomValue).asReadOnlyBuffer();
+        }
+
+        /**
+         * Returns a read-only view of the value of the positional accumulator.
+         *
+         * @return the accumulator value
+         */
+        public ByteBuffer getAccumulatorValueBuffer() {
+            return ByteBuffer.wrap(accumulatorValue).asReadOnlyBuffer();
+        }
+
+        /**
+         * Returns a read-only view of the proof of this part in the embedded GSRSS signature.
+         *
+         * @return the GSRSS proof
+         */
+        public ByteBuffer getGsProofBuffer() {
+            return ByteBuffer.wrap(gsProof).asReadOnlyBuffer();
+        }
+
+        /**
+         * Returns the message part without copying it. The returned array must not be modified.
+         */
+        byte[] messagePart() {
+            return messagePart;
+        }
+
+        /**
+         * Returns the random value without copying it. The returned array must not be modified.
+         */
+        byte[] randomValue() {
+            return randomValue;
+        }
+
+        /**
+         * Returns the accumulator value without copying it. The returned array must not be modified.
+         */
+        byte[] accumulatorValue() {
+            return accumulatorValue;
+        }
+
         public byte[] getRandomValue() {
             return Arrays.copyOf(randomValue, randomValue.length);
         }
@@ -237,8 +418,15 @@ public class GLRSSSignatureOutput implements SignatureOutput {
             return isRedactable;
         }
 
-        private Identifier toGSIdentifier() {
-            return new Identifier(concat(messagePart, accumulatorValue, randomValue));
+        /**
+         * Returns the identifier of this part in the embedded GSRSS signature. The concatenation is computed once and
+         * then reused.
+         */
+        Identifier toGSIdentifier() {
+            if (gsIdentifier == null) {
+                gsIdentifier = new Identifier(concat(messagePart, accumulatorValue, randomValue));
+            }
+            return gsIdentifier;
         }
 
         @Override
@@ -21,6 +21,7 @@
 package de.unipassau.wolfgangpopp.xmlrss.wpprovider.grss;
 
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Accumulator;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorContext;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorException;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Identifier;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignature;
@@ -28,6 +29,8 @@ import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignatureException;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignatureSpi;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SignatureOutput;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ByteArray;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ParallelExecutor;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ParallelExecutor.Function;
 
 import java.security.AlgorithmParameters;
 import java.security.InvalidAlgorithmParameterException;
@@ -39,10 +42,11 @@ import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 /**
  * The <code>GLRedactableSignature</code> implements the general redactable signature for lists as described in
@@ -65,6 +69,7 @@ public abstract class GLRedactableSignature extends RedactableSignatureSpi {
     private KeyPair accKeyPair;
     private SecureRandom random;
     private int accByteLength;
+    private ParallelExecutor executor = new ParallelExecutor();
 
     protected GLRedactableSignature(Accumulator posAccumulator, RedactableSignature gsrss) {
         this.posAccumulator = posAccumulator;
@@ -131,18 +136,30 @@ public abstract class GLRedactableSignature extends RedactableSignatureSpi {
             random.nextBytes(randomValues[i]);
         }
 
+        // witnesses[j] certifies randomValues[j] in the accumulator of the current prefix. Instead of digesting every
+        // prefix from scratch, the accumulator of the previous prefix is extended by one element and the existing
+        // witnesses are updated.
+        byte[][] witnesses = new byte[parts.size()][];
+
         for (int i = 0; i < parts.size(); i++) {
             byte[] accumulatorValue;
             byte[] messagePart = parts.get(i).getArray();
             boolean isRedactable = this.isRedactable.get(i);
 
             try {
-                byte[][] randomRange = Arrays.copyOfRange(randomValues, 0, i + 1);
-                posAccumulator.digest(randomRange);
+                if (i == 0) {
+                    posAccumulator.digest(randomValues[0]);
+                } else {
+                    posAccumulator.add(randomValues[i]);
+                    for (int j = 0; j < i; j++) {
+                        witnesses[j] = posAccumulator.updateWitness(witnesses[j], randomValues[j]);
+                    }
+                }
+                witnesses[i] = posAccumulator.createWitness(randomValues[i]);
                 accumulatorValue = posAccumulator.getAccumulatorValue();
 
-                for (byte[] bytes : randomRange) {
-                    builder.addWittness(i, posAccumulator.createWitness(bytes));
+                for (int j = 0; j <= i; j++) {
+                    builder.addWittness(i, witnesses[j]);
                 }
             } catch (AccumulatorException e) {
                 throw new RedactableSignatureException(e);
@@ -173,27 +190,81 @@ public abstract class GLRedactableSignature extends RedactableSignatureSpi {
         }
 
         GLRSSSignatureOutput glrssSignatureOutput = (GLRSSSignatureOutput) signature;
-        List<GLRSSSignatureOutput.GLRSSSignedPart> parts = glrssSignatureOutput.getParts();
-        boolean verify = gsrss.verify(glrssSignatureOutput.extractGSOutput());
+        final List<GLRSSSignatureOutput.GLRSSSignedPart> parts = glrssSignatureOutput.getParts();
+        if (!gsrss.verify(glrssSignatureOutput.extractGSOutput())) {
+            return false;
+        }
 
-        for (int i = 0; i < parts.size() && verify; i++) {
-            GLRSSSignatureOutput.GLRSSSignedPart part = parts.get(i);
+        // The accumulator is not thread-safe, so the contexts of all positions are captured up front. The positions
+        // are then verified independently of each other.
+        final AccumulatorContext[] contexts = new AccumulatorContext[parts.size()];
+        try {
+            for (int i = 0; i < parts.size(); i++) {
+                posAccumulator.restoreVerify(parts.get(i).accumulatorValue());
+                contexts[i] = posAccumulator.getContext();
+            }
+        } catch (AccumulatorException e) {
+            throw new RedactableSignatureException(e);
+        }
 
-            try {
-                posAccumulator.restoreVerify(part.getAccumulatorValue());
-                for (int j = 0; j < i && verify; j++) {
-                    byte[] witness = part.getWitnesses().get(j).getArray();
-                    byte[] randomValue = parts.get(j).getRandomValue();
-                    verify = posAccumulator.verify(witness, randomValue);
+        //TODO Check if all Non redactable parts are present
+
+        try {
+            return executor.allMatch(new Function<Integer, Boolean>() {
+                @Override
+                public Boolean execute(Integer position) throws Exception {
+                    return verifyPosition(parts, position, contexts[position]);
                 }
-            } catch (AccumulatorException e) {
-                throw new RedactableSignatureException(e);
+            }, balancePositions(parts.size()));
+        } catch (ExecutionException e) {
+            throw new RedactableSignatureException(e);
+        }
+    }
+
+    /**
+     * Verifies that the witnesses of the part at the given position certify the random values of all preceding parts
+     * in the accumulator value of the part.
+     */
+    private boolean verifyPosition(List<GLRSSSignatureOutput.GLRSSSignedPart> parts, int position,
+                                   AccumulatorContext context) throws AccumulatorException {
+
+        List<ByteArray> witnesses = parts.get(position).getWitnesses();
+        if (witnesses.size() < position) {
+            return false;
+        }
+
+        if (executor.isBatchVerification() && position > 0) {
+            byte[][] witnessValues = new byte[position][];
+            byte[][] randomValues = new byte[position][];
+            for (int j = 0; j < position; j++) {
+                witnessValues[j] = witnesses.get(j).getArray();
+                randomValues[j] = parts.get(j).randomValue();
             }
+            return context.batchVerify(witnessValues, randomValues);
         }
 
-        //TODO Check if all Non redactable parts are present
+        for (int j = 0; j < position; j++) {
+            if (!context.verify(witnesses.get(j).getArray(), parts.get(j).randomValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        return verify;
+    /**
+     * Orders the positions such that the position with the most witnesses is followed by the one with the least
+     * witnesses and so on. Contiguous chunks of the returned list, as processed by the {@link ParallelExecutor}, then
+     * contain roughly the same number of witnesses.
+     */
+    private static List<Integer> balancePositions(int size) {
+        List<Integer> positions = new ArrayList<>(size);
+        for (int low = 0, high = size - 1; low <= high; low++, high--) {
+            positions.add(high);
+            if (low != high) {
+                positions.add(low);
+            }
+        }
+        return positions;
     }
 
     @Override
@@ -204,32 +275,17 @@ public abstract class GLRedactableSignature extends RedactableSignatureSpi {
 
         GLRSSSignatureOutput original = (GLRSSSignatureOutput) signature;
         List<GLRSSSignatureOutput.GLRSSSignedPart> parts = ((GLRSSSignatureOutput) signature).getParts();
-        int size = parts.size() - identifiers.size();
-        GLRSSSignatureOutput.Builder builder = new GLRSSSignatureOutput.Builder(size);
+        BitSet removed = getRemovedPositions(parts);
+        GLRSSSignatureOutput.Builder builder = new GLRSSSignatureOutput.Builder(parts.size() - removed.cardinality());
 
         int builderIndex = 0;
-        for (int i = 0; i < parts.size(); i++) {
-            GLRSSSignatureOutput.GLRSSSignedPart part = parts.get(i);
-            if (!isIdentified(i, part)) {
-                ArrayList<ByteArray> copy = new ArrayList<>(part.getWitnesses());
-                removeWitnesses(copy);
-
-                builder.setMessagePart(builderIndex, part.getMessagePart())
-                        .setRedactable(builderIndex, part.isRedactable())
-                        .setRandomValue(builderIndex, part.getRandomValue())
-                        .setAccValue(builderIndex, part.getAccumulatorValue())
-                        .setWitnesses(builderIndex, copy);
-
-                ++builderIndex;
-            }
+        for (int i = removed.nextClearBit(0); i < parts.size(); i = removed.nextClearBit(i + 1)) {
+            builder.setPart(builderIndex++, parts.get(i), removed);
         }
 
         // redact gsrss signature output
-        for (Identifier identifier : identifiers) {
-            GLRSSSignatureOutput.GLRSSSignedPart part = parts.get(identifier.getPosition());
-            ByteArray concat = new ByteArray(part.getMessagePart()).concat(part.getAccumulatorValue())
-                    .concat(part.getRandomValue());
-            gsrss.addIdentifier(new Identifier(concat));
+        for (int i = removed.nextSetBit(0); i >= 0; i = removed.nextSetBit(i + 1)) {
+            gsrss.addIdentifier(parts.get(i).toGSIdentifier());
         }
 
         builder.embedGSOutput((GSRSSSignatureOutput) gsrss.redact(original.extractGSOutput()));
@@ -239,29 +295,46 @@ public abstract class GLRedactableSignature extends RedactableSignatureSpi {
         return builder.build();
     }
 
-    private void removeWitnesses(List<ByteArray> witnesses) {
-        ByteArray invalid = new ByteArray(null);
+    /**
+     * Returns the positions of the parts that are removed by the redaction.
+     *
+     * @param parts the signed parts of the original signature
+     * @return the removed positions
+     * @throws RedactableSignatureException if an identifier does not identify a part of the given parts
+     */
+    private BitSet getRemovedPositions(List<GLRSSSignatureOutput.GLRSSSignedPart> parts)
+            throws RedactableSignatureException {
+
+        BitSet removed = new BitSet(parts.size());
         for (Identifier identifier : identifiers) {
             int position = identifier.getPosition();
-            if (position < witnesses.size()) {
-                witnesses.set(position, invalid);
+            if (position < 0 || position >= parts.size()
+                    || !Arrays.equals(parts.get(position).messagePart(), identifier.getBytes())) {
+                throw new RedactableSignatureException("The signature does not contain the identified part");
             }
+            removed.set(position);
         }
-        witnesses.removeAll(Collections.singleton(invalid));
-    }
-
-    private boolean isIdentified(int index, GLRSSSignatureOutput.GLRSSSignedPart part) {
-        return identifiers.contains(new Identifier(part.getMessagePart(), index));
+        return removed;
     }
 
+    /**
+     * Sets the parallelism of this engine and of the embedded GSRSS. The given parameters must wrap a
+     * {@link de.unipassau.wolfgangpopp.xmlrss.wpprovider.ParallelismParameterSpec} or be null to restore the default
+     * parallelism. The list positions of a signature are verified in parallel; if batch verification is enabled, the
+     * witnesses of each position are verified in one batch.
+     *
+     * @param parameters the "Parallelism" parameters
+     * @throws InvalidAlgorithmParameterException if the given parameters are not "Parallelism" parameters
+     */
     @Override
     protected void engineSetParameters(AlgorithmParameters parameters) throws InvalidAlgorithmParameterException {
-
+        executor = ParallelExecutor.fromParameters(parameters);
+        gsrss.setParameters(parameters);
     }
 
     @Override
     protected AlgorithmParameters engineGetParameters() {
-        return null;
+        return executor.getParameters();
     }
 
     private void reset() {
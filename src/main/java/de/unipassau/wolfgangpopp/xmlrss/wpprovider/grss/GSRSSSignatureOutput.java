@@ -22,8 +22,13 @@ package de.unipassau.wolfgangpopp.xmlrss.wpprovider.grss;
 
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Identifier;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SignatureOutput;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.BinaryDecoder;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.BinaryEncoder;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ByteArray;
 
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -34,7 +39,9 @@ import java.util.Set;
 /**
  * @author Wolfgang Popp
  */
-public class GSRSSSignatureOutput implements SignatureOutput {
+public class GSRSSSignatureOutput implements SignatureOutput, BinaryEncoder.Encoding {
+    static final byte ENCODING_TYPE = 2;
+
     private final Map<ByteArray, byte[]> signedParts = new HashMap<>();
     private final Map<ByteArray, Boolean> redactableMapping = new HashMap<>();
     private byte[] dSigValue;
@@ -95,6 +102,38 @@ public class GSRSSSignatureOutput implements SignatureOutput {
         return Arrays.copyOf(accumulatorValue, accumulatorValue.length);
     }
 
+    /**
+     * Returns a read-only view of the signature value of the non-redactable parts.
+     *
+     * @return the dsig value
+     */
+    public ByteBuffer getDSigValueBuffer() {
+        return ByteBuffer.wrap(dSigValue).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a read-only view of the accumulator value.
+     *
+     * @return the accumulator value
+     */
+    public ByteBuffer getAccumulatorValueBuffer() {
+        return ByteBuffer.wrap(accumulatorValue).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the dsig value without copying it. The returned array must not be modified.
+     */
+    byte[] dSigValue() {
+        return dSigValue;
+    }
+
+    /**
+     * Returns the accumulator value without copying it. The returned array must not be modified.
+     */
+    byte[] accumulatorValue() {
+        return accumulatorValue;
+    }
+
     public Set<ByteArray> getNonRedactableParts() {
         Set<ByteArray> nonRedactableParts = new HashSet<>();
         for (Map.Entry<ByteArray, Boolean> part : redactableMapping.entrySet()) {
@@ -109,6 +148,58 @@ public class GSRSSSignatureOutput implements SignatureOutput {
         return Collections.unmodifiableMap(signedParts);
     }
 
+    /**
+     * Writes the binary encoding of this signature output to the given encoder.
+     *
+     * @param encoder the encoder
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        encoder.writeHeader(ENCODING_TYPE);
+        encoder.writeBytes(dSigValue);
+        encoder.writeBytes(accumulatorValue);
+        encoder.writeLength(signedParts.size());
+        for (Map.Entry<ByteArray, byte[]> entry : signedParts.entrySet()) {
+            encoder.writeBytes(entry.getKey().getArray());
+            encoder.writeBytes(entry.getValue());
+            encoder.writeBoolean(redactableMapping.get(entry.getKey()));
+        }
+    }
+
+    /**
+     * Returns the binary encoding of this signature output.
+     *
+     * @return the binary encoding
+     */
+    public byte[] getEncoded() {
+        return BinaryEncoder.encode(this);
+    }
+
+    /**
+     * Reads a binary encoded signature output from the given decoder.
+     *
+     * @param decoder the decoder
+     * @return the decoded signature output
+     * @throws IOException if an I/O error occurs or if the encoding is invalid
+     */
+    public static GSRSSSignatureOutput readFrom(BinaryDecoder decoder) throws IOException {
+        decoder.readHeader(ENCODING_TYPE);
+        Builder builder = new Builder()
+                .setDSigValue(decoder.readBytes())
+                .setAccumulatorValue(decoder.readBytes());
+        int size = decoder.readLength();
+        for (int i = 0; i < size; i++) {
+            builder.addSignedPart(decoder.readBytes(), decoder.readBytes(), decoder.readBoolean());
+        }
+
+        try {
+            return builder.build();
+        } catch (IllegalStateException e) {
+            throw new StreamCorruptedException(e.getMessage());
+        }
+    }
+
 
     public static class Builder {
         private final GSRSSSignatureOutput signatureOutput = new GSRSSSignatureOutput();
@@ -21,12 +21,15 @@
 package de.unipassau.wolfgangpopp.xmlrss.wpprovider.grss;
 
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Accumulator;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorContext;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorException;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Identifier;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignatureException;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignatureSpi;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SignatureOutput;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ByteArray;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ParallelExecutor;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ParallelExecutor.Function;
 
 import java.security.AlgorithmParameters;
 import java.security.InvalidAlgorithmParameterException;
@@ -39,6 +42,7 @@ import java.security.SecureRandom;
 import java.security.Signature;
 import java.security.SignatureException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -46,6 +50,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 /**
  * The {@link GSRedactableSignature} class implements the general RSS for sets as descibed in
@@ -65,6 +70,7 @@ public abstract class GSRedactableSignature extends RedactableSignatureSpi {
     private PrivateKey dsigPrivateKey;
     private KeyPair dsigkeyPair;
     private KeyPair acckeyPair;
+    private ParallelExecutor executor = new ParallelExecutor();
 
     protected GSRedactableSignature(Accumulator accumulator, Signature dsig) {
         this.accumulator = accumulator;
@@ -123,9 +129,11 @@ public abstract class GSRedactableSignature extends RedactableSignatureSpi {
             elements[index++] = redactablePart.getArray();
         }
 
+        final AccumulatorContext context;
         try {
             accumulator.digest(elements);
-            builder.setAccumulatorValue(accumulator.getAccumulatorValue());
+            context = accumulator.getContext();
+            builder.setAccumulatorValue(context.getAccumulatorValue());
         } catch (AccumulatorException e) {
             throw new RedactableSignatureException(e);
         }
@@ -151,12 +159,25 @@ public abstract class GSRedactableSignature extends RedactableSignatureSpi {
             throw new RedactableSignatureException(e);
         }
 
-        for (Map.Entry<ByteArray, Boolean> entry : messageParts.entrySet()) {
-            ByteArray part = entry.getKey();
-            try {
-                builder.addSignedPart(part, accumulator.createWitness(part.getArray()), entry.getValue());
-            } catch (AccumulatorException e) {
-                throw new RedactableSignatureException(e);
+        // Every chunk of elements is raised to the product of the other elements' hashes once and then creates its
+        // witnesses with its own root factor tree. The chunks are contiguous and the results are in input order.
+        List<byte[][]> witnesses;
+        try {
+            witnesses = executor.map(new Function<List<byte[]>, byte[][]>() {
+                @Override
+                public byte[][] execute(List<byte[]> chunk) throws Exception {
+                    return context.createWitnesses(chunk.toArray(new byte[chunk.size()][]));
+                }
+            }, executor.split(Arrays.asList(elements)));
+        } catch (ExecutionException e) {
+            throw new RedactableSignatureException(e);
+        }
+
+        int i = 0;
+        for (byte[][] chunk : witnesses) {
+            for (byte[] witness : chunk) {
+                ByteArray part = new ByteArray(elements[i++]);
+                builder.addSignedPart(part, witness, messageParts.get(part));
             }
         }
 
@@ -173,8 +194,10 @@ public abstract class GSRedactableSignature extends RedactableSignatureSpi {
 
         GSRSSSignatureOutput signatureOutput = ((GSRSSSignatureOutput) signature);
 
+        final AccumulatorContext context;
         try {
-            accumulator.restoreVerify(signatureOutput.getAccumulatorValue());
+            accumulator.restoreVerify(signatureOutput.accumulatorValue());
+            context = accumulator.getContext();
         } catch (AccumulatorException e) {
             throw new RedactableSignatureException(e);
         }
@@ -190,21 +213,41 @@ public abstract class GSRedactableSignature extends RedactableSignatureSpi {
 
         boolean valid;
         try {
-            valid = dsig.verify(signatureOutput.getDSigValue());
+            valid = dsig.verify(signatureOutput.dSigValue());
         } catch (SignatureException e) {
             throw new RedactableSignatureException(e);
         }
 
-        Map<ByteArray, byte[]> redactableParts = signatureOutput.getParts();
-        for (ByteArray key : redactableParts.keySet()) {
-            try {
-                valid = valid && accumulator.verify(redactableParts.get(key), key.getArray());
-            } catch (AccumulatorException e) {
-                throw new RedactableSignatureException(e);
-            }
+        if (!valid) {
+            return false;
         }
 
-        return valid;
+        List<Map.Entry<ByteArray, byte[]>> signedParts = new ArrayList<>(signatureOutput.getParts().entrySet());
+        try {
+            if (executor.isBatchVerification()) {
+                return executor.allMatch(new Function<List<Map.Entry<ByteArray, byte[]>>, Boolean>() {
+                    @Override
+                    public Boolean execute(List<Map.Entry<ByteArray, byte[]>> batch) throws Exception {
+                        byte[][] witnesses = new byte[batch.size()][];
+                        byte[][] elements = new byte[batch.size()][];
+                        for (int i = 0; i < batch.size(); i++) {
+                            witnesses[i] = batch.get(i).getValue();
+                            elements[i] = batch.get(i).getKey().getArray();
+                        }
+                        return context.batchVerify(witnesses, elements);
+                    }
+                }, executor.split(signedParts));
+            }
+
+            return executor.allMatch(new Function<Map.Entry<ByteArray, byte[]>, Boolean>() {
+                @Override
+                public Boolean execute(Map.Entry<ByteArray, byte[]> signedPart) throws Exception {
+                    return context.verify(signedPart.getValue(), signedPart.getKey().getArray());
+                }
+            }, signedParts);
+        } catch (ExecutionException e) {
+            throw new RedactableSignatureException(e);
+        }
     }
 
     @Override
@@ -218,8 +261,8 @@ public abstract class GSRedactableSignature extends RedactableSignatureSpi {
         Set<ByteArray> parts = signedParts.keySet();
         Set<ByteArray> nonRedactableParts = signatureOutput.getNonRedactableParts();
 
-        builder.setDSigValue(signatureOutput.getDSigValue())
-                .setAccumulatorValue(signatureOutput.getAccumulatorValue());
+        builder.setDSigValue(signatureOutput.dSigValue())
+                .setAccumulatorValue(signatureOutput.accumulatorValue());
 
         for (ByteArray messagePart : messageParts.keySet()) {
             if (nonRedactableParts.contains(messagePart)) {
@@ -238,14 +281,23 @@ public abstract class GSRedactableSignature extends RedactableSignatureSpi {
         return builder.build();
     }
 
+    /**
+     * Sets the parallelism of this engine. The given parameters must wrap a
+     * {@link de.unipassau.wolfgangpopp.xmlrss.wpprovider.ParallelismParameterSpec} or be null to restore the default
+     * parallelism. The witnesses of a signature are created in parallel. If batch verification is enabled, the
+     * witnesses of a signature are verified in batches.
+     *
+     * @param parameters the "Parallelism" parameters
+     * @throws InvalidAlgorithmParameterException if the given parameters are not "Parallelism" parameters
+     */
     @Override
     protected void engineSetParameters(AlgorithmParameters parameters) throws InvalidAlgorithmParameterException {
-
+        executor = ParallelExecutor.fromParameters(parameters);
     }
 
     @Override
     protected AlgorithmParameters engineGetParameters() {
-        return null;
+        return executor.getParameters();
     }
 
     private void reset() {
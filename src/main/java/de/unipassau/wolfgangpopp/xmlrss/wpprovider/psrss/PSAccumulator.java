@@ -20,9 +20,13 @@
 
 package de.unipassau.wolfgangpopp.xmlrss.wpprovider.psrss;
 
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorContext;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorException;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorSpi;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorState;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.ArithmeticParameterSpec;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.FullDomainHash;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ModularArithmetic;
 
 import java.math.BigInteger;
 import java.security.AlgorithmParameters;
@@ -34,7 +38,7 @@ import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.util.Arrays;
 
-import static de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.CryptoUtils.fullDomainHash;
+import static de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.CryptoUtils.multiModPow;
 
 /**
  * The <code>PSAccumulator</code> class implements the trapdoor accumulator as proposed in
@@ -44,16 +48,24 @@ import static de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.CryptoUtils.full
  */
 public class PSAccumulator extends AccumulatorSpi {
 
+    private static final int HASH_CACHE_SIZE = 1024;
+
     private PSRSSPrivateKey privateKey;
     private PSRSSPublicKey publicKey;
-    private byte[] accumulatorValueRaw;
-    private BigInteger accumulatorValue;
+    private FullDomainHash fullDomainHash;
+    private ModularArithmetic arithmetic;
+    private ModularArithmetic arithmeticP;
+    private ModularArithmetic arithmeticQ;
+    private ArithmeticParameterSpec arithmeticSpec = ArithmeticParameterSpec.REFERENCE;
+    private AlgorithmParameters parameters;
+    private Context context;
     private SecureRandom random;
 
     @Override
     protected void engineInitWitness(KeyPair keyPair, SecureRandom random) throws InvalidKeyException {
         setKeyPair(keyPair);
         this.random = random;
+        rekeyContext();
     }
 
     @Override
@@ -67,61 +79,49 @@ public class PSAccumulator extends AccumulatorSpi {
             digest = new BigInteger(bitLength, random);
         } while (digest.compareTo(n) == 1 || !digest.gcd(n).equals(BigInteger.ONE));
 
-        accumulatorValueRaw = digest.toByteArray();
-        accumulatorValue = new BigInteger(accumulatorValueRaw);
+        context = newContext(privateKey, digest.toByteArray());
     }
 
     @Override
     protected void engineRestoreWitness(byte[] accumulatorValue, byte[] auxiliaryValue, byte[]... elements)
             throws AccumulatorException {
 
-        this.accumulatorValueRaw = Arrays.copyOf(accumulatorValue, accumulatorValue.length);
-        this.accumulatorValue = new BigInteger(accumulatorValueRaw);
+        context = newContext(privateKey, Arrays.copyOf(accumulatorValue, accumulatorValue.length));
     }
 
     @Override
     protected void engineInitVerify(PublicKey publicKey) throws InvalidKeyException {
         setPublicKey(publicKey);
+        this.privateKey = null;
+        rekeyContext();
     }
 
     @Override
     protected void engineRestoreVerify(byte[] accumulatorValue) {
-        this.accumulatorValueRaw = Arrays.copyOf(accumulatorValue, accumulatorValue.length);
-        this.accumulatorValue = new BigInteger(accumulatorValueRaw);
+        context = newContext(null, Arrays.copyOf(accumulatorValue, accumulatorValue.length));
     }
 
     @Override
     protected byte[] engineCreateWitness(byte[] element) throws AccumulatorException {
-        BigInteger hash;
-        try {
-            hash = fullDomainHash(publicKey.getKey(), element);
-        } catch (NoSuchAlgorithmException e) {
-            throw new AccumulatorException(e);
-        }
-
-        BigInteger exponent = hash.modInverse(privateKey.getKey());
-
-        return accumulatorValue.modPow(exponent, publicKey.getKey()).toByteArray();
+        return engineGetContext().createWitness(element);
     }
 
     @Override
     protected boolean engineVerify(byte[] witness, byte[] element) throws AccumulatorException {
-        BigInteger hash;
-        try {
-            hash = fullDomainHash(publicKey.getKey(), element);
-        } catch (NoSuchAlgorithmException e) {
-            throw new AccumulatorException(e);
-        }
-
-        BigInteger proofAsInt = new BigInteger(witness);
-        BigInteger acc_aux = proofAsInt.modPow(hash, publicKey.getKey());
+        return engineGetContext().verify(witness, element);
+    }
 
-        return Arrays.equals(acc_aux.toByteArray(), accumulatorValueRaw);
+    @Override
+    protected AccumulatorContext engineGetContext() throws AccumulatorException {
+        if (context == null) {
+            throw new AccumulatorException("The accumulator value is neither digested nor restored");
+        }
+        return context;
     }
 
     @Override
     protected byte[] engineGetAccumulatorValue() throws AccumulatorException {
-        return Arrays.copyOf(accumulatorValueRaw, accumulatorValueRaw.length);
+        return engineGetContext().getAccumulatorValue();
     }
 
     @Override
@@ -130,18 +130,43 @@ public class PSAccumulator extends AccumulatorSpi {
     }
 
     @Override
-    protected AccumulatorState engineGetAccumulatorState() {
-        return new AccumulatorState(accumulatorValueRaw, null);
+    protected AccumulatorState engineGetAccumulatorState() throws AccumulatorException {
+        return new AccumulatorState(engineGetContext().getAccumulatorValue(), null);
     }
 
     @Override
     protected AlgorithmParameters engineGetParameters() {
-        return null;
+        return parameters;
     }
 
+    /**
+     * Selects the modular arithmetic of this accumulator with the given "Arithmetic" parameters. The arithmetic of an
+     * initialized accumulator is replaced, the accumulator value is kept.
+     *
+     * @param parameters the parameters wrapping an {@link ArithmeticParameterSpec} or null for the reference arithmetic
+     * @throws InvalidAlgorithmParameterException if the given parameters do not contain an ArithmeticParameterSpec
+     */
     @Override
     protected void engineSetParameters(AlgorithmParameters parameters) throws InvalidAlgorithmParameterException {
-        //TODO
+        arithmeticSpec = ModularArithmetic.getSpec(parameters);
+        this.parameters = parameters;
+        if (publicKey != null) {
+            arithmetic = ModularArithmetic.getInstance(publicKey.getKey(), arithmeticSpec);
+        }
+        if (privateKey != null) {
+            setPrimeArithmetic();
+        }
+        rekeyContext();
+    }
+
+    private void rekeyContext() {
+        if (context != null) {
+            context = newContext(privateKey, context.accumulatorValueRaw);
+        }
+    }
+
+    private Context newContext(PSRSSPrivateKey privateKey, byte[] accumulatorValueRaw) {
+        return new Context(privateKey, fullDomainHash, arithmetic, arithmeticP, arithmeticQ, accumulatorValueRaw);
     }
 
     private void setPublicKey(PublicKey key) throws InvalidKeyException {
@@ -149,6 +174,12 @@ public class PSAccumulator extends AccumulatorSpi {
             throw new InvalidKeyException("The given key is not a RSSPublicKey");
         }
         publicKey = (PSRSSPublicKey) key;
+
+        // keep the cached hashes if the accumulator is initialized with the same modulus again
+        if (fullDomainHash == null || !fullDomainHash.getMax().equals(publicKey.getKey())) {
+            fullDomainHash = new FullDomainHash(publicKey.getKey(), HASH_CACHE_SIZE);
+            arithmetic = ModularArithmetic.getInstance(publicKey.getKey(), arithmeticSpec);
+        }
     }
 
     private void setKeyPair(KeyPair keyPair) throws InvalidKeyException {
@@ -158,6 +189,172 @@ public class PSAccumulator extends AccumulatorSpi {
 
         setPublicKey(keyPair.getPublic());
         privateKey = (PSRSSPrivateKey) keyPair.getPrivate();
+        setPrimeArithmetic();
+    }
+
+    private void setPrimeArithmetic() {
+        if (privateKey.hasCRTParameters()) {
+            arithmeticP = ModularArithmetic.getInstance(privateKey.getPrimeP(), arithmeticSpec);
+            arithmeticQ = ModularArithmetic.getInstance(privateKey.getPrimeQ(), arithmeticSpec);
+        } else {
+            arithmeticP = null;
+            arithmeticQ = null;
+        }
+    }
+
+    /**
+     * The immutable state of a PSAccumulator, which is shared by all threads using the same context.
+     */
+    private static final class Context implements AccumulatorContext {
+        private static final int MIN_BATCH_SIZE = 32;
+        private static final int BATCH_EXPONENT_BITS = 64;
+        private static final SecureRandom BATCH_RANDOM = new SecureRandom();
+
+        private final PSRSSPrivateKey privateKey;
+        private final FullDomainHash fullDomainHash;
+        private final ModularArithmetic arithmetic;
+        private final ModularArithmetic arithmeticP;
+        private final ModularArithmetic arithmeticQ;
+        private final byte[] accumulatorValueRaw;
+        private final BigInteger accumulatorValue;
+
+        private Context(PSRSSPrivateKey privateKey, FullDomainHash fullDomainHash, ModularArithmetic arithmetic,
+                        ModularArithmetic arithmeticP, ModularArithmetic arithmeticQ, byte[] accumulatorValueRaw) {
+            this.privateKey = privateKey;
+            this.fullDomainHash = fullDomainHash;
+            this.arithmetic = arithmetic;
+            this.arithmeticP = arithmeticP;
+            this.arithmeticQ = arithmeticQ;
+            this.accumulatorValueRaw = accumulatorValueRaw;
+            this.accumulatorValue = new BigInteger(accumulatorValueRaw);
+        }
 
+        @Override
+        public byte[] createWitness(byte[] element) throws AccumulatorException {
+            if (privateKey == null) {
+                throw new AccumulatorException("not initialized for creating witnesses");
+            }
+
+            BigInteger hash;
+            try {
+                hash = fullDomainHash.hash(element);
+            } catch (NoSuchAlgorithmException e) {
+                throw new AccumulatorException(e);
+            }
+
+            if (privateKey.hasCRTParameters()) {
+                return createWitnessCRT(hash).toByteArray();
+            }
+
+            BigInteger exponent = hash.modInverse(privateKey.getKey());
+
+            return arithmetic.modPow(accumulatorValue, exponent).toByteArray();
+        }
+
+        @Override
+        public byte[][] createWitnesses(byte[]... elements) throws AccumulatorException {
+            byte[][] witnesses = new byte[elements.length][];
+            for (int i = 0; i < elements.length; i++) {
+                witnesses[i] = createWitness(elements[i]);
+            }
+            return witnesses;
+        }
+
+        /**
+         * Computes <code>acc^(hash^-1 mod phi(n)) mod n</code> using the Chinese Remainder Theorem. The inverse of the
+         * hash and the exponentiation are computed modulo each prime factor with half the bit length, and the partial
+         * results are recombined using Garner's formula.
+         */
+        private BigInteger createWitnessCRT(BigInteger hash) {
+            BigInteger p = privateKey.getPrimeP();
+            BigInteger q = privateKey.getPrimeQ();
+
+            BigInteger exponentP = hash.modInverse(p.subtract(BigInteger.ONE));
+            BigInteger exponentQ = hash.modInverse(q.subtract(BigInteger.ONE));
+            BigInteger witnessP = arithmeticP.modPow(accumulatorValue, exponentP);
+            BigInteger witnessQ = arithmeticQ.modPow(accumulatorValue, exponentQ);
+
+            BigInteger h = arithmeticP.modMul(witnessP.subtract(witnessQ), privateKey.getCRTCoefficient());
+            return witnessQ.add(h.multiply(q));
+        }
+
+        @Override
+        public boolean verify(byte[] witness, byte[] element) throws AccumulatorException {
+            BigInteger hash;
+            try {
+                hash = fullDomainHash.hash(element);
+            } catch (NoSuchAlgorithmException e) {
+                throw new AccumulatorException(e);
+            }
+
+            BigInteger proofAsInt = new BigInteger(witness);
+            BigInteger acc_aux = arithmetic.modPow(proofAsInt, hash);
+
+            return Arrays.equals(acc_aux.toByteArray(), accumulatorValueRaw);
+        }
+
+        /**
+         * Verifies all witnesses at once using the randomized small exponent test: every equation
+         * <code>w_i^H(x_i) = acc</code> is raised to a random odd exponent r_i and the product of all left-hand sides
+         * is compared to <code>acc^(r_1 + ... + r_n)</code>. The product is computed with a single
+         * multi-exponentiation. Both sides are squared, which maps them into the subgroup of quadratic residues.
+         * Since the modulus is a product of safe primes, the order of this subgroup has no small prime factors, so an
+         * invalid witness is detected with overwhelming probability.
+         * <p>
+         * The batch only checks the equations up to factors of order two, though: a witness that differs from a valid
+         * one by such a factor (e.g. <code>-w mod n</code>) is rejected by {@link #verify(byte[], byte[])} but
+         * passes the batch. Callers that need the exact check must verify such witnesses one by one. Small batches and
+         * accumulator values that are not encoded in the reduced form are always verified one by one.
+         */
+        @Override
+        public boolean batchVerify(byte[][] witnesses, byte[][] elements) throws AccumulatorException {
+            if (witnesses.length != elements.length) {
+                throw new AccumulatorException("The number of witnesses and elements differ");
+            }
+
+            BigInteger n = arithmetic.getModulus();
+            if (witnesses.length < MIN_BATCH_SIZE || !isReduced()) {
+                for (int i = 0; i < witnesses.length; i++) {
+                    if (!verify(witnesses[i], elements[i])) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            BigInteger[] bases = new BigInteger[witnesses.length];
+            BigInteger[] exponents = new BigInteger[witnesses.length];
+            BigInteger exponentSum = BigInteger.ZERO;
+            try {
+                for (int i = 0; i < witnesses.length; i++) {
+                    BigInteger r = new BigInteger(BATCH_EXPONENT_BITS, BATCH_RANDOM).setBit(0);
+                    bases[i] = new BigInteger(witnesses[i]).mod(n);
+                    exponents[i] = fullDomainHash.hash(elements[i]).multiply(r);
+                    exponentSum = exponentSum.add(r);
+                }
+            } catch (NoSuchAlgorithmException e) {
+                throw new AccumulatorException(e);
+            }
+
+            BigInteger product = multiModPow(bases, exponents, n);
+            return square(product).equals(square(arithmetic.modPow(accumulatorValue, exponentSum)));
+        }
+
+        private BigInteger square(BigInteger value) {
+            return arithmetic.modMul(value, value);
+        }
+
+        /**
+         * Returns whether the accumulator value is in the range <code>[0, n)</code> and encoded without leading zeros.
+         */
+        private boolean isReduced() {
+            return accumulatorValue.signum() >= 0 && accumulatorValue.compareTo(arithmetic.getModulus()) < 0
+                    && Arrays.equals(accumulatorValue.toByteArray(), accumulatorValueRaw);
+        }
+
+        @Override
+        public byte[] getAccumulatorValue() {
+            return Arrays.copyOf(accumulatorValueRaw, accumulatorValueRaw.length);
+        }
     }
 }
@@ -20,6 +20,10 @@
 
 package de.unipassau.wolfgangpopp.xmlrss.wpprovider.psrss;
 
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SafePrimePoolParameterSpec;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.CryptoUtils;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.SafePrimePool;
+
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.security.InvalidAlgorithmParameterException;
@@ -30,10 +34,9 @@ import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.spec.AlgorithmParameterSpec;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-import static de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.CryptoUtils.safePrime;
-
 
 /**
  * @author Wolfgang Popp
@@ -46,42 +49,44 @@ public class PSRSSKeyPairGenerator extends KeyPairGeneratorSpi {
 
     private SecureRandom random = new SecureRandom();
     private int keySize = 2048;
+    private SafePrimePool pool;
 
     @Override
     public void initialize(int keysize, SecureRandom random) {
         this.keySize = keysize;
         this.random = random;
+        this.pool = null;
     }
 
     @Override
     public void initialize(AlgorithmParameterSpec params, SecureRandom random)
             throws InvalidAlgorithmParameterException {
 
-        //TODO
-        super.initialize(params, random);
+        if (!(params instanceof SafePrimePoolParameterSpec)) {
+            throw new InvalidAlgorithmParameterException("Only SafePrimePoolParameterSpec is supported");
+        }
+        this.keySize = ((SafePrimePoolParameterSpec) params).getKeySize();
+        this.random = random;
+        this.pool = ((SafePrimePoolParameterSpec) params).getPool();
     }
 
     @Override
     public KeyPair generateKeyPair() {
         //divide bitlength by 2 as the complete keys are supposed to have the said bitlength
         //TODO make p or q one bit larger if bitLength is not divisible by 2?
-        List<BigInteger> safePrimes = new ArrayList<>();
-
-        safePrimes.add(safePrime(keySize / 2, random));
-        safePrimes.add(safePrime(keySize / 2, random));
+        List<BigInteger> safePrimes = new ArrayList<>(Arrays.asList(safePrimes(2)));
 
         while (true) {
             for (BigInteger safePrimeA : safePrimes) {
                 for (BigInteger safePrimeB : safePrimes) {
                     if (inRange(safePrimeA, safePrimeB)) {
-                        PrivateKey privateKey = new PSRSSPrivateKey(safePrimeA.subtract(BigInteger.ONE)
-                                .multiply(safePrimeB.subtract(BigInteger.ONE)));
+                        PrivateKey privateKey = new PSRSSPrivateKey(safePrimeA, safePrimeB);
                         PublicKey publicKey = new PSRSSPublicKey(safePrimeA.multiply(safePrimeB));
                         return new KeyPair(publicKey, privateKey);
                     }
                 }
             }
-            safePrimes.add(safePrime(keySize / 2, random));
+            safePrimes.add(safePrimes(1)[0]);
         }
     }
 
@@ -91,4 +96,10 @@ public class PSRSSKeyPairGenerator extends KeyPairGeneratorSpi {
         return safePrimeB.compareTo(lowerLimit) > 0 && safePrimeB.compareTo(upperLimit) < 0;
     }
 
+    private BigInteger[] safePrimes(int count) {
+        if (pool != null) {
+            return pool.take(count);
+        }
+        return CryptoUtils.safePrimes(count, keySize / 2, random);
+    }
 }
@@ -28,8 +28,69 @@ import java.security.PrivateKey;
  */
 public class PSRSSPrivateKey extends PSRSSKey implements PrivateKey {
 
+    private final BigInteger p;
+    private final BigInteger q;
+    private final BigInteger qInverse;
+
+    /**
+     * Constructs a private key from the given value of Euler's totient function <code>phi(n) = (p-1)(q-1)</code>.
+     *
+     * @param key phi(n) of the modulus n of the corresponding public key
+     */
     public PSRSSPrivateKey(BigInteger key) {
         super(key);
+        this.p = null;
+        this.q = null;
+        this.qInverse = null;
+    }
+
+    /**
+     * Constructs a private key from the prime factors of the modulus <code>n = p * q</code>. In contrast to a key that
+     * only knows phi(n), this key allows to create witnesses using the Chinese Remainder Theorem (CRT).
+     *
+     * @param p the first prime factor of the modulus
+     * @param q the second prime factor of the modulus
+     */
+    public PSRSSPrivateKey(BigInteger p, BigInteger q) {
+        super(p.subtract(BigInteger.ONE).multiply(q.subtract(BigInteger.ONE)));
+        this.p = p;
+        this.q = q;
+        this.qInverse = q.modInverse(p);
+    }
+
+    /**
+     * Returns whether this key contains the prime factors of the modulus.
+     *
+     * @return true if the CRT parameters are available
+     */
+    public boolean hasCRTParameters() {
+        return p != null;
     }
 
+    /**
+     * Returns the first prime factor of the modulus.
+     *
+     * @return the first prime factor or null if this key only contains phi(n)
+     */
+    public BigInteger getPrimeP() {
+        return p;
+    }
+
+    /**
+     * Returns the second prime factor of the modulus.
+     *
+     * @return the second prime factor or null if this key only contains phi(n)
+     */
+    public BigInteger getPrimeQ() {
+        return q;
+    }
+
+    /**
+     * Returns the CRT coefficient <code>q^-1 mod p</code>.
+     *
+     * @return the CRT coefficient or null if this key only contains phi(n)
+     */
+    public BigInteger getCRTCoefficient() {
+        return qInverse;
+    }
 }
@@ -21,13 +21,21 @@
 package de.unipassau.wolfgangpopp.xmlrss.wpprovider.psrss;
 
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Accumulator;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorContext;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorException;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Identifier;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignatureException;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignatureSpi;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SignatureOutput;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.BinaryDecoder;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.BinaryEncoder;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ByteArray;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ParallelExecutor;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ParallelExecutor.Function;
 
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.AlgorithmParameters;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
@@ -39,13 +47,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.Future;
 
 /**
  * The <code>PSRedactableSignature</code> class implements the updatable and mergeable redactable signature by Pöhls
@@ -58,10 +63,20 @@ abstract class PSRedactableSignature extends RedactableSignatureSpi {
 
     private PSRSSPublicKey publicKey;
     private PSRSSPrivateKey privateKey;
+    /**
+     * The number of parts that are signed or verified together when signing or verifying a stream of parts.
+     */
+    private static final int STREAMING_BATCH_SIZE = 1024;
+    /**
+     * The minimum number of witnesses that are checked together if batch verification is enabled.
+     */
+    private static final int MIN_BATCH_VERIFICATION_SIZE = 64;
+
     private Accumulator accumulator;
     private SecureRandom random;
     private final Set<ByteArray> parts = new HashSet<>();
     private KeyPair keyPair;
+    private ParallelExecutor executor = new ParallelExecutor();
 
     PSRedactableSignature(Accumulator accumulator) {
         this.accumulator = accumulator;
@@ -122,7 +137,6 @@ abstract class PSRedactableSignature extends RedactableSignatureSpi {
     }
 
     protected SignatureOutput engineSign() throws RedactableSignatureException {
-        final byte[] acc;
         byte[][] pts = new byte[parts.size()][];
 
         int i = 0;
@@ -130,48 +144,91 @@ abstract class PSRedactableSignature extends RedactableSignatureSpi {
             pts[i] = part.getArray();
             ++i;
         }
+
+        final AccumulatorContext context = digest(pts);
+        final byte[] tag = createTag();
+
+        PSSignatureOutput.Builder builder;
         try {
-            accumulator.digest(pts);
+            builder = new PSSignatureOutput.Builder(tag, context.createWitness(tag), context.getAccumulatorValue());
         } catch (AccumulatorException e) {
             throw new RedactableSignatureException(e);
         }
 
+        builder.addAll(map(signFunction(context, tag), parts));
+
+        parts.clear();
+
+        return builder.build();
+    }
+
+    /**
+     * Signs the parts as they are taken from the given iterator. The PS accumulator is a trapdoor accumulator whose
+     * value does not depend on the accumulated elements, so the witness of every part can be created right away. The
+     * parts are signed in batches of {@link #STREAMING_BATCH_SIZE} parts, which are processed in parallel.
+     */
+    @Override
+    protected void engineSign(Iterator<byte[]> elements, WritableByteChannel channel)
+            throws RedactableSignatureException, IOException {
+
+        AccumulatorContext context = digest();
+        byte[] tag = createTag();
+        Function<ByteArray, PSSignatureOutput.SignedPart> signFunction = signFunction(context, tag);
+        BinaryEncoder encoder = new BinaryEncoder(channel);
+
         try {
-            acc = accumulator.getAccumulatorValue();
+            PSSignatureOutput.writeStart(encoder, tag, context.createWitness(tag), context.getAccumulatorValue());
         } catch (AccumulatorException e) {
             throw new RedactableSignatureException(e);
         }
 
-        final byte[] tag = new byte[publicKey.getKey().bitLength()];
-        random.nextBytes(tag);
+        List<ByteArray> batch = new ArrayList<>(parts);
+        parts.clear();
+        while (!batch.isEmpty() || elements.hasNext()) {
+            while (batch.size() < STREAMING_BATCH_SIZE && elements.hasNext()) {
+                batch.add(new ByteArray(elements.next()));
+            }
+            for (PSSignatureOutput.SignedPart signedPart : map(signFunction, batch)) {
+                PSSignatureOutput.writePart(encoder, signedPart);
+            }
+            batch.clear();
+        }
 
-        final byte[] proofOfTag;
+        PSSignatureOutput.writeEnd(encoder);
+        encoder.flush();
+    }
+
+    private AccumulatorContext digest(byte[]... parts) throws RedactableSignatureException {
         try {
-            proofOfTag = accumulator.createWitness(tag);
+            accumulator.digest(parts);
+            return accumulator.getContext();
         } catch (AccumulatorException e) {
             throw new RedactableSignatureException(e);
         }
+    }
 
-        PSSignatureOutput.Builder builder = new PSSignatureOutput.Builder(tag, proofOfTag, acc);
-
-        Function<ByteArray, PSSignatureOutput.SignedPart> signFunction =
-                new Function<ByteArray, PSSignatureOutput.SignedPart>() {
-                    @Override
-                    public PSSignatureOutput.SignedPart execute(ByteArray element) throws Exception {
-                        return signPart(element, tag);
-                    }
-                };
-
-        builder.addAll(map(signFunction, parts));
+    private byte[] createTag() {
+        byte[] tag = new byte[publicKey.getKey().bitLength()];
+        random.nextBytes(tag);
+        return tag;
+    }
 
-        parts.clear();
+    private Function<ByteArray, PSSignatureOutput.SignedPart> signFunction(final AccumulatorContext context,
+                                                                          final byte[] tag) {
 
-        return builder.build();
+        return new Function<ByteArray, PSSignatureOutput.SignedPart>() {
+            @Override
+            public PSSignatureOutput.SignedPart execute(ByteArray element) throws Exception {
+                return signPart(context, element, tag);
+            }
+        };
     }
 
-    private PSSignatureOutput.SignedPart signPart(ByteArray part, byte[] tag) throws AccumulatorException {
+    private PSSignatureOutput.SignedPart signPart(AccumulatorContext context, ByteArray part, byte[] tag)
+            throws AccumulatorException {
+
         byte[] partRaw = part.getArray();
-        return new PSSignatureOutput.SignedPart(accumulator.createWitness(concat(tag, partRaw)), part);
+        return new PSSignatureOutput.SignedPart(context.createWitness(concat(tag, partRaw)), part);
     }
 
     private byte[] concat(byte[] first, byte[] second) {
@@ -184,32 +241,123 @@ abstract class PSRedactableSignature extends RedactableSignatureSpi {
             throw new RedactableSignatureException("bad signature type");
         }
         sig = ((PSSignatureOutput) signature);
+        final AccumulatorContext context;
         try {
-            accumulator.restoreVerify(sig.getAccumulator());
+            accumulator.restoreVerify(sig.accumulator());
+            context = accumulator.getContext();
         } catch (AccumulatorException e) {
             throw new RedactableSignatureException(e);
         }
 
-        final byte tag[] = sig.getTag();
+        final byte tag[] = sig.tag();
 
-        Function<PSSignatureOutput.SignedPart, Boolean> verifyFunction =
-                new Function<PSSignatureOutput.SignedPart, Boolean>() {
-                    @Override
-                    public Boolean execute(PSSignatureOutput.SignedPart argument) throws Exception {
-                        byte[] proof = argument.getProof();
-                        byte[] value = argument.getElement().getArray();
-                        return accumulator.verify(proof, concat(tag, value));
-                    }
-                };
+        List<PSSignatureOutput.SignedPart> signedParts = new ArrayList<>(sig.size());
+        for (PSSignatureOutput.SignedPart signedPart : sig) {
+            signedParts.add(signedPart);
+        }
+        boolean valid = verifyParts(context, tag, signedParts);
 
-        Collection<Boolean> results = map(verifyFunction, sig);
+        parts.clear();
+        try {
+            return valid && context.verify(sig.proofOfTag(), tag);
+        } catch (AccumulatorException e) {
+            throw new RedactableSignatureException(e);
+        }
+    }
 
+    /**
+     * Verifies the signed parts as they are read from the given channel in batches of {@link #STREAMING_BATCH_SIZE}
+     * parts, which are processed in parallel. The verification stops at the first batch that contains an invalid part.
+     */
+    @Override
+    protected boolean engineVerify(ReadableByteChannel channel) throws RedactableSignatureException, IOException {
+        BinaryDecoder decoder = new BinaryDecoder(channel);
+        PSSignatureOutput sig = PSSignatureOutput.readStart(decoder);
         parts.clear();
+
+        AccumulatorContext context;
         try {
-            return !results.contains(false) && accumulator.verify(sig.getProofOfTag(), sig.getTag());
+            accumulator.restoreVerify(sig.accumulator());
+            context = accumulator.getContext();
+            if (!context.verify(sig.proofOfTag(), sig.tag())) {
+                return false;
+            }
         } catch (AccumulatorException e) {
             throw new RedactableSignatureException(e);
         }
+
+        List<PSSignatureOutput.SignedPart> batch = new ArrayList<>(STREAMING_BATCH_SIZE);
+        PSSignatureOutput.SignedPart signedPart;
+        do {
+            signedPart = PSSignatureOutput.readPart(decoder);
+            if (signedPart != null) {
+                batch.add(signedPart);
+            }
+            if (batch.size() == STREAMING_BATCH_SIZE || (signedPart == null && !batch.isEmpty())) {
+                if (!verifyParts(context, sig.tag(), batch)) {
+                    return false;
+                }
+                batch.clear();
+            }
+        } while (signedPart != null);
+
+        return true;
+    }
+
+    /**
+     * Verifies the witnesses of the given signed parts in parallel. If batch verification is enabled, the parts are
+     * split into chunks of at least {@link #MIN_BATCH_VERIFICATION_SIZE} parts and the witnesses of every chunk are
+     * checked at once with {@link AccumulatorContext#batchVerify(byte[][], byte[][])}. The parts of a chunk that fails
+     * the batch check are verified one by one with {@link AccumulatorContext#verify(byte[], byte[])}, which has the
+     * final say.
+     */
+    private boolean verifyParts(AccumulatorContext context, byte[] tag, List<PSSignatureOutput.SignedPart> signedParts)
+            throws PSRSSException {
+
+        if (executor.isBatchVerification()) {
+            List<List<PSSignatureOutput.SignedPart>> chunks = executor.split(signedParts, MIN_BATCH_VERIFICATION_SIZE);
+            return !map(batchVerifyFunction(context, tag), chunks).contains(false);
+        }
+        return !map(verifyFunction(context, tag), signedParts).contains(false);
+    }
+
+    private Function<List<PSSignatureOutput.SignedPart>, Boolean> batchVerifyFunction(
+            final AccumulatorContext context, final byte[] tag) {
+
+        return new Function<List<PSSignatureOutput.SignedPart>, Boolean>() {
+            @Override
+            public Boolean execute(List<PSSignatureOutput.SignedPart> argument) throws Exception {
+                byte[][] proofs = new byte[argument.size()][];
+                byte[][] values = new byte[argument.size()][];
+                for (int i = 0; i < proofs.length; i++) {
+                    proofs[i] = argument.get(i).getProof();
+                    values[i] = concat(tag, argument.get(i).getElement().getArray());
+                }
+                if (context.batchVerify(proofs, values)) {
+                    return true;
+                }
+
+                for (int i = 0; i < proofs.length; i++) {
+                    if (!context.verify(proofs[i], values[i])) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    private Function<PSSignatureOutput.SignedPart, Boolean> verifyFunction(final AccumulatorContext context,
+                                                                          final byte[] tag) {
+
+        return new Function<PSSignatureOutput.SignedPart, Boolean>() {
+            @Override
+            public Boolean execute(PSSignatureOutput.SignedPart argument) throws Exception {
+                byte[] proof = argument.getProof();
+                byte[] value = argument.getElement().getArray();
+                return context.verify(proof, concat(tag, value));
+            }
+        };
     }
 
     protected SignatureOutput engineRedact(SignatureOutput signature) throws RedactableSignatureException {
@@ -226,7 +374,7 @@ abstract class PSRedactableSignature extends RedactableSignatureSpi {
         }
 
         PSSignatureOutput.Builder builder = new PSSignatureOutput.Builder(
-                sig.getTag(), sig.getProofOfTag(), sig.getAccumulator());
+                sig.tag(), sig.proofOfTag(), sig.accumulator());
 
         for (PSSignatureOutput.SignedPart signedPart : sig) {
             if (!parts.contains(signedPart.getElement())) {
@@ -255,7 +403,7 @@ abstract class PSRedactableSignature extends RedactableSignatureSpi {
         PSSignatureOutput psSignature1 = (PSSignatureOutput) signature1;
         PSSignatureOutput psSignature2 = (PSSignatureOutput) signature2;
 
-        if (!Arrays.equals(psSignature1.getTag(), psSignature2.getTag())) {
+        if (!Arrays.equals(psSignature1.tag(), psSignature2.tag())) {
             throw new PSRSSException("the tags of the given signatures differ");
         }
 
@@ -284,8 +432,10 @@ abstract class PSRedactableSignature extends RedactableSignatureSpi {
             throw new IllegalArgumentException("Redact Set and this set are not disjoint");
         }
 
+        AccumulatorContext context;
         try {
-            accumulator.restoreWitness(psSig.getAccumulator(), null);
+            accumulator.restoreWitness(psSig.accumulator(), null);
+            context = accumulator.getContext();
         } catch (AccumulatorException e) {
             throw new PSRSSException(e);
         }
@@ -293,7 +443,7 @@ abstract class PSRedactableSignature extends RedactableSignatureSpi {
         PSSignatureOutput.Builder builder = new PSSignatureOutput.Builder(psSig);
         for (ByteArray part : parts) {
             try {
-                builder.add(signPart(part, psSig.getTag()));
+                builder.add(signPart(context, part, psSig.tag()));
             } catch (AccumulatorException e) {
                 throw new PSRSSException(e);
             }
@@ -303,12 +453,20 @@ abstract class PSRedactableSignature extends RedactableSignatureSpi {
         return builder.build();
     }
 
+    /**
+     * Sets the parallelism of this engine. The given parameters must wrap a
+     * {@link de.unipassau.wolfgangpopp.xmlrss.wpprovider.ParallelismParameterSpec} or be null to restore the default
+     * parallelism.
+     *
+     * @param parameters the "Parallelism" parameters
+     * @throws InvalidAlgorithmParameterException if the given parameters are not "Parallelism" parameters
+     */
     protected void engineSetParameters(AlgorithmParameters parameters) throws InvalidAlgorithmParameterException {
-        //TODO No parameters needed
+        executor = ParallelExecutor.fromParameters(parameters);
     }
 
     protected AlgorithmParameters engineGetParameters() {
-        return null;
+        return executor.getParameters();
     }
 
     private void setPublicKey(PublicKey key) throws InvalidKeyException {
@@ -338,48 +496,12 @@ abstract class PSRedactableSignature extends RedactableSignatureSpi {
      * @return a collection of results of the function
      * @throws PSRSSException if the parallel execution failed
      */
-    private <E, R> Collection<R> map(final Function<E, R> function, Iterable<E> collection) throws PSRSSException {
-        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
-        Collection<Callable<R>> tasks = new LinkedList<>();
-
-        for (final E item : collection) {
-            tasks.add(new Callable<R>() {
-                @Override
-                public R call() throws Exception {
-                    return function.execute(item);
-                }
-            });
-        }
-
-        List<Future<R>> futures = pool.invokeAll(tasks);
-        Collection<R> results = new ArrayList<>(futures.size());
-
-        for (Future<R> future : futures) {
-            if (!future.isCancelled()) {
-                try {
-                    results.add(future.get());
-                } catch (InterruptedException | ExecutionException e) {
-                    throw new PSRSSException(e);
-                }
-            } else {
-                throw new PSRSSException("Parallel execution failed");
-            }
+    private <E, R> Collection<R> map(Function<E, R> function, Collection<E> collection) throws PSRSSException {
+        try {
+            return executor.map(function, collection);
+        } catch (ExecutionException e) {
+            throw new PSRSSException(e);
         }
-
-        pool.shutdown();
-
-        return results;
-    }
-
-    /**
-     * The function Interface describes a function of the following type:
-     * f: E --> R, x |--> f(x)
-     *
-     * @param <E> the type of the argument of the function
-     * @param <R> the type of the result
-     */
-    private interface Function<E, R> {
-        R execute(E argument) throws Exception;
     }
 
     public static final class PSRSSwithPSA extends PSRedactableSignature {
@@ -22,8 +22,12 @@ package de.unipassau.wolfgangpopp.xmlrss.wpprovider.psrss;
 
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Identifier;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SignatureOutput;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.BinaryDecoder;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.BinaryEncoder;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ByteArray;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -36,7 +40,10 @@ import java.util.Set;
 /**
  * @author Wolfgang Popp
  */
-public final class PSSignatureOutput implements SignatureOutput, Iterable<PSSignatureOutput.SignedPart> {
+public final class PSSignatureOutput implements SignatureOutput, Iterable<PSSignatureOutput.SignedPart>,
+        BinaryEncoder.Encoding {
+    static final byte ENCODING_TYPE = 1;
+
     private final byte[] tag;
     private final byte[] proofOfTag;
     private final byte[] accumulator;
@@ -78,6 +85,55 @@ public final class PSSignatureOutput implements SignatureOutput, Iterable<PSSign
         return Arrays.copyOf(accumulator, accumulator.length);
     }
 
+    /**
+     * Returns a read-only view of the tag of this <code>SignedSet</code>. Unlike {@link #getTag()}, the tag is not
+     * copied.
+     *
+     * @return the tag
+     */
+    public ByteBuffer getTagBuffer() {
+        return ByteBuffer.wrap(tag).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a read-only view of the proof of the tag.
+     *
+     * @return the proof
+     */
+    public ByteBuffer getProofOfTagBuffer() {
+        return ByteBuffer.wrap(proofOfTag).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns a read-only view of the accumulator of this set.
+     *
+     * @return the accumulator
+     */
+    public ByteBuffer getAccumulatorBuffer() {
+        return ByteBuffer.wrap(accumulator).asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the tag without copying it. The returned array must not be modified.
+     */
+    byte[] tag() {
+        return tag;
+    }
+
+    /**
+     * Returns the proof of the tag without copying it. The returned array must not be modified.
+     */
+    byte[] proofOfTag() {
+        return proofOfTag;
+    }
+
+    /**
+     * Returns the accumulator without copying it. The returned array must not be modified.
+     */
+    byte[] accumulator() {
+        return accumulator;
+    }
+
     /**
      * Checks if all elements of the given collection are values of this <code>SignedSet</code>.
      *
@@ -178,21 +234,109 @@ public final class PSSignatureOutput implements SignatureOutput, Iterable<PSSign
         PSSignatureOutput that = (PSSignatureOutput) o;
 
         return partToProof.equals(that.partToProof)
-                && Arrays.equals(getTag(), that.getTag())
-                && Arrays.equals(getProofOfTag(), that.getProofOfTag())
-                && Arrays.equals(getAccumulator(), that.getAccumulator());
+                && Arrays.equals(tag, that.tag)
+                && Arrays.equals(proofOfTag, that.proofOfTag)
+                && Arrays.equals(accumulator, that.accumulator);
 
     }
 
     @Override
     public int hashCode() {
         int result = partToProof.hashCode();
-        result = 31 * result + Arrays.hashCode(getTag());
-        result = 31 * result + Arrays.hashCode(getProofOfTag());
-        result = 31 * result + Arrays.hashCode(getAccumulator());
+        result = 31 * result + Arrays.hashCode(tag);
+        result = 31 * result + Arrays.hashCode(proofOfTag);
+        result = 31 * result + Arrays.hashCode(accumulator);
         return result;
     }
 
+    /**
+     * Writes the binary encoding of this signature output to the given encoder.
+     * <p>
+     * The signed parts are not preceded by their number but followed by a null part, so signatures can be encoded
+     * while they are generated, see {@link #writeStart(BinaryEncoder, byte[], byte[], byte[])}.
+     *
+     * @param encoder the encoder
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void writeTo(BinaryEncoder encoder) throws IOException {
+        writeStart(encoder, tag, proofOfTag, accumulator);
+        for (Map.Entry<ByteArray, byte[]> entry : partToProof.entrySet()) {
+            writePart(encoder, new SignedPart(entry.getValue(), entry.getKey()));
+        }
+        writeEnd(encoder);
+    }
+
+    /**
+     * Returns the binary encoding of this signature output.
+     *
+     * @return the binary encoding
+     */
+    public byte[] getEncoded() {
+        return BinaryEncoder.encode(this);
+    }
+
+    /**
+     * Reads a binary encoded signature output from the given decoder.
+     *
+     * @param decoder the decoder
+     * @return the decoded signature output
+     * @throws IOException if an I/O error occurs or if the encoding is invalid
+     */
+    public static PSSignatureOutput readFrom(BinaryDecoder decoder) throws IOException {
+        PSSignatureOutput output = readStart(decoder);
+        SignedPart signedPart;
+        while ((signedPart = readPart(decoder)) != null) {
+            output.partToProof.put(signedPart.getElement(), signedPart.getProof());
+        }
+        return output;
+    }
+
+    /**
+     * Writes the header, the tag, the proof of the tag and the accumulator of an encoded signature output. The
+     * signed parts are written afterwards via {@link #writePart(BinaryEncoder, SignedPart)} and the encoding is
+     * completed via {@link #writeEnd(BinaryEncoder)}.
+     */
+    static void writeStart(BinaryEncoder encoder, byte[] tag, byte[] proofOfTag, byte[] accumulator)
+            throws IOException {
+
+        encoder.writeHeader(ENCODING_TYPE);
+        encoder.writeBytes(tag);
+        encoder.writeBytes(proofOfTag);
+        encoder.writeBytes(accumulator);
+    }
+
+    static void writePart(BinaryEncoder encoder, SignedPart signedPart) throws IOException {
+        encoder.writeBytes(signedPart.part.getArray());
+        encoder.writeBytes(signedPart.proof);
+    }
+
+    static void writeEnd(BinaryEncoder encoder) throws IOException {
+        encoder.writeBytes(null);
+    }
+
+    /**
+     * Reads the header, the tag, the proof of the tag and the accumulator of an encoded signature output and returns
+     * them as a signature output without signed parts.
+     */
+    static PSSignatureOutput readStart(BinaryDecoder decoder) throws IOException {
+        decoder.readHeader(ENCODING_TYPE);
+        return new PSSignatureOutput(decoder.readBytes(), decoder.readBytes(), decoder.readBytes());
+    }
+
+    /**
+     * Reads the next signed part of an encoded signature output.
+     *
+     * @return the signed part or null if all signed parts were read
+     */
+    static SignedPart readPart(BinaryDecoder decoder) throws IOException {
+        byte[] part = decoder.readBytes();
+        if (part == null) {
+            return null;
+        }
+        return new SignedPart(decoder.readBytes(), new ByteArray(part));
+    }
+
     /**
      * Returns the proof for the given message part
      *
@@ -235,9 +379,9 @@ public final class PSSignatureOutput implements SignatureOutput, Iterable<PSSign
          * @param signedSet the <code>SignedSet</code> that initializes this builder
          */
         public Builder(PSSignatureOutput signedSet) {
-            this.tag = signedSet.getTag();
-            this.proofOfTag = signedSet.getProofOfTag();
-            this.accumulator = signedSet.getAccumulator();
+            this.tag = signedSet.tag;
+            this.proofOfTag = signedSet.proofOfTag;
+            this.accumulator = signedSet.accumulator;
             this.partToProof.putAll(signedSet.partToProof);
         }
 
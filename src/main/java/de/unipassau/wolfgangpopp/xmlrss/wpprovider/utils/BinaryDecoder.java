@@ -0,0 +1,179 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * The <code>BinaryDecoder</code> reads the compact binary encoding of signature outputs, which is written by the
+ * {@link BinaryEncoder}, from a {@link ByteBuffer} or a {@link ReadableByteChannel}.
+ * <p>
+ * When reading from a channel, the decoder may read ahead. So the channel should not be used for other data after the
+ * encoded signature output.
+ *
+ * @author Wolfgang Popp
+ * @see BinaryEncoder
+ */
+public final class BinaryDecoder {
+
+    /**
+     * The maximum length of a byte array that is accepted by this decoder. This guards against allocating huge arrays
+     * when reading corrupted encodings.
+     */
+    public static final int MAX_LENGTH = 1 << 26;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructs a new decoder that reads from the given channel.
+     *
+     * @param channel the channel
+     */
+    public BinaryDecoder(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.buffer.flip();
+    }
+
+    /**
+     * Constructs a new decoder that reads from the given buffer, starting at its current position.
+     *
+     * @param buffer the buffer
+     */
+    public BinaryDecoder(ByteBuffer buffer) {
+        this.channel = null;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Reads the header of an encoded signature output and checks that it has the expected type.
+     *
+     * @param expectedType the expected type of the encoded signature output
+     * @throws IOException if an I/O error occurs or if the header is invalid
+     */
+    public void readHeader(byte expectedType) throws IOException {
+        require(BinaryEncoder.MAGIC.length + 2);
+        for (byte magic : BinaryEncoder.MAGIC) {
+            if (buffer.get() != magic) {
+                throw new StreamCorruptedException("Not a binary encoded signature output");
+            }
+        }
+
+        byte version = buffer.get();
+        if (version != BinaryEncoder.VERSION) {
+            throw new StreamCorruptedException("Unsupported encoding version " + version);
+        }
+        byte type = buffer.get();
+        if (type != expectedType) {
+            throw new StreamCorruptedException("Unexpected signature output type " + type);
+        }
+    }
+
+    /**
+     * Reads a count or length.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs or if the value is invalid
+     */
+    public int readLength() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            require(1);
+            byte b = buffer.get();
+            if (shift == 28 && (b & 0xF8) != 0) {
+                break;
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Invalid length");
+    }
+
+    /**
+     * Reads a boolean.
+     *
+     * @return the value
+     * @throws IOException if an I/O error occurs or if the value is invalid
+     */
+    public boolean readBoolean() throws IOException {
+        require(1);
+        byte b = buffer.get();
+        if (b != 0 && b != 1) {
+            throw new StreamCorruptedException("Invalid boolean");
+        }
+        return b == 1;
+    }
+
+    /**
+     * Reads a length-prefixed byte array.
+     *
+     * @return the byte array or null if null was encoded
+     * @throws IOException if an I/O error occurs or if the length is invalid
+     */
+    public byte[] readBytes() throws IOException {
+        int length = readLength() - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > MAX_LENGTH) {
+            throw new StreamCorruptedException("Byte array too long: " + length);
+        }
+
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            require(1);
+            int chunk = Math.min(length - offset, buffer.remaining());
+            buffer.get(bytes, offset, chunk);
+            offset += chunk;
+        }
+        return bytes;
+    }
+
+    /**
+     * Ensures that the buffer has at least the given number of bytes remaining.
+     */
+    private void require(int length) throws IOException {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+        if (channel == null) {
+            throw new EOFException("Unexpected end of the encoded signature output");
+        }
+
+        buffer.compact();
+        while (buffer.position() < length) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of the encoded signature output");
+            }
+        }
+        buffer.flip();
+    }
+}
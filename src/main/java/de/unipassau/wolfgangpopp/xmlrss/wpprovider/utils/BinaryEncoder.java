@@ -0,0 +1,196 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The <code>BinaryEncoder</code> writes the compact binary encoding of signature outputs to a {@link ByteBuffer} or a
+ * {@link WritableByteChannel}.
+ * <p>
+ * An encoding starts with a header, which consists of the magic bytes <code>XRSS</code>, the version of the encoding
+ * and the type of the encoded signature output. The header is followed by the fields of the signature output. Byte
+ * arrays are prefixed by their length and counts and lengths are encoded as unsigned variable length integers (seven
+ * bits per byte, least significant group first). Booleans are encoded in a single byte.
+ * <p>
+ * When writing to a channel, the encoded data is buffered; call {@link #flush()} after the last field. When writing
+ * to a buffer, a {@link java.nio.BufferOverflowException} is thrown if the buffer is too small.
+ *
+ * @author Wolfgang Popp
+ * @see BinaryDecoder
+ */
+public final class BinaryEncoder {
+
+    /**
+     * The version of the binary encoding written by this encoder.
+     */
+    public static final byte VERSION = 1;
+
+    static final byte[] MAGIC = {'X', 'R', 'S', 'S'};
+    private static final int BUFFER_SIZE = 8192;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructs a new encoder that writes to the given channel.
+     *
+     * @param channel the channel
+     */
+    public BinaryEncoder(WritableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    /**
+     * Constructs a new encoder that writes to the given buffer, starting at its current position.
+     *
+     * @param buffer the buffer
+     */
+    public BinaryEncoder(ByteBuffer buffer) {
+        this.channel = null;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Encodes a signature output with the given encoder.
+     *
+     * @param encoding the encoding routine of the signature output
+     * @return the binary encoding
+     */
+    public static byte[] encode(Encoding encoding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = new BinaryEncoder(Channels.newChannel(out));
+        try {
+            encoding.writeTo(encoder);
+            encoder.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to a byte array failed", e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the header of an encoded signature output.
+     *
+     * @param type the type of the encoded signature output
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeHeader(byte type) throws IOException {
+        require(MAGIC.length + 2);
+        buffer.put(MAGIC).put(VERSION).put(type);
+    }
+
+    /**
+     * Writes a non-negative count or length.
+     *
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeLength(int value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("length must not be negative");
+        }
+        require(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes a boolean.
+     *
+     * @param value the value
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeBoolean(boolean value) throws IOException {
+        require(1);
+        buffer.put((byte) (value ? 1 : 0));
+    }
+
+    /**
+     * Writes a length-prefixed byte array. Null is encoded as well and is distinguished from the empty array.
+     *
+     * @param bytes the byte array or null
+     * @throws IOException if an I/O error occurs
+     */
+    public void writeBytes(byte[] bytes) throws IOException {
+        if (bytes == null) {
+            writeLength(0);
+            return;
+        }
+
+        writeLength(bytes.length + 1);
+        if (channel != null && bytes.length > buffer.remaining()) {
+            flush();
+            if (bytes.length > buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(bytes));
+                return;
+            }
+        }
+        buffer.put(bytes);
+    }
+
+    /**
+     * Writes all buffered data to the channel. This method has no effect when writing to a buffer.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void flush() throws IOException {
+        if (channel != null) {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+    }
+
+    private void require(int length) throws IOException {
+        if (channel != null && buffer.remaining() < length) {
+            flush();
+        }
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    /**
+     * An <code>Encoding</code> writes the fields of a signature output to an encoder.
+     */
+    public interface Encoding {
+
+        /**
+         * Writes the header and the fields of a signature output to the given encoder.
+         *
+         * @param encoder the encoder
+         * @throws IOException if an I/O error occurs
+         */
+        void writeTo(BinaryEncoder encoder) throws IOException;
+    }
+}
@@ -21,9 +21,15 @@
 package de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils;
 
 import java.math.BigInteger;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.ProviderException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * The <code>CryptoUtils</code> class contains helper functions for cryptographic operations.
@@ -33,10 +39,11 @@ import java.security.SecureRandom;
 public final class CryptoUtils {
 
     private static final int CERTAINTY = 100; // BigInteger also uses 100 for its default certainty
+    private static final int MIN_SIEVE_BIT_LENGTH = 64;
 
     /**
      * Calculates a full domain hash (FDH) for the given byte array and the given maximum, where
-     * <code>FDH < max</code>
+     * <code>FDH < max</code>. Use a {@link FullDomainHash} to hash several messages for the same maximum.
      *
      * @param max the maximum value of the resulting FDH
      * @param m   message for which the hash is calculated
@@ -44,68 +51,163 @@ public final class CryptoUtils {
      * @throws NoSuchAlgorithmException if no SHA-512 implementation is found
      */
     public static BigInteger fullDomainHash(BigInteger max, byte[] m) throws NoSuchAlgorithmException {
-        BigInteger fdh;
-        BigInteger counter = BigInteger.ZERO;
-        MessageDigest md = MessageDigest.getInstance("SHA-512");
-        int digestLength = md.getDigestLength();
-        int bitLength = max.bitLength();
-
-        byte[] shortHash = getShortHash(md, m, counter);
-        byte[] largeHash = shortHash;
-        counter = counter.add(BigInteger.ONE);
-
-        // concatenate new small hashes to the large hash until the bitlenght of the large hash is bigger than or equal
-        // to the bitlength of max
-        while ((largeHash.length * 8) < bitLength) {
-            shortHash = getShortHash(md, m, counter);
-            counter = counter.add(BigInteger.ONE);
-            largeHash = new ByteArray(largeHash).concat(shortHash).getArray();
+        return new FullDomainHash(max).hash(m);
+    }
+
+    /**
+     * Computes the product of <code>bases[i]^exponents[i] mod modulus</code> over all i with a single
+     * multi-exponentiation (Pippenger's bucket method). All bases share the squarings, so this is considerably faster
+     * than exponentiating every base on its own if there are many bases. The modulus must be odd.
+     *
+     * @param bases     the bases
+     * @param exponents the non-negative exponents, where <code>exponents[i]</code> belongs to <code>bases[i]</code>
+     * @param modulus   the odd modulus
+     * @return the product of all powers modulo the given modulus
+     */
+    public static BigInteger multiModPow(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus) {
+        if (bases.length != exponents.length) {
+            throw new IllegalArgumentException("The number of bases and exponents differ");
         }
 
-        fdh = convertHashToBigInt(largeHash, bitLength);
+        MontgomeryArithmetic montgomery = new MontgomeryArithmetic(modulus);
+        int[] scratch = montgomery.newScratch();
+        int maxBitLength = 0;
+        int[][] reduced = new int[bases.length][];
+        for (int i = 0; i < bases.length; i++) {
+            if (exponents[i].signum() < 0) {
+                throw new IllegalArgumentException("The exponents must not be negative");
+            }
+            maxBitLength = Math.max(maxBitLength, exponents[i].bitLength());
+            reduced[i] = montgomery.toMontgomery(bases[i], scratch);
+        }
+
+        // a window of about log2(n) - 1 bits balances the bucket accumulation against the bucket summation
+        int windowBits = Math.max(1, Math.min(16, 30 - Integer.numberOfLeadingZeros(Math.max(1, bases.length))));
+        int windows = (maxBitLength + windowBits - 1) / windowBits;
+        int[][] buckets = new int[1 << windowBits][];
+        boolean[] filled = new boolean[buckets.length];
+        int[] running = montgomery.newElement();
+        int[] windowResult = montgomery.newElement();
+        int[] result = montgomery.newElement();
+        montgomery.setOne(result);
+
+        for (int window = windows - 1; window >= 0; window--) {
+            for (int i = 0; i < windowBits && window < windows - 1; i++) {
+                montgomery.square(result, result, scratch);
+            }
 
-        // while resulting fdh is too big, cut off the first part of the fdh and append a new short hash
-        while (fdh.compareTo(max) > 0) {
-            counter = counter.add(BigInteger.ONE);
-            shortHash = getShortHash(md, m, counter);
-            System.arraycopy(largeHash, digestLength, largeHash, 0, largeHash.length - digestLength);
-            System.arraycopy(shortHash, 0, largeHash, largeHash.length - digestLength, digestLength);
+            Arrays.fill(filled, false);
+            int offset = window * windowBits;
+            for (int i = 0; i < reduced.length; i++) {
+                int digit = 0;
+                for (int bit = windowBits - 1; bit >= 0; bit--) {
+                    digit = (digit << 1) | (exponents[i].testBit(offset + bit) ? 1 : 0);
+                }
+                if (digit != 0) {
+                    if (buckets[digit] == null) {
+                        buckets[digit] = montgomery.newElement();
+                    }
+                    if (filled[digit]) {
+                        montgomery.multiply(buckets[digit], reduced[i], buckets[digit], scratch);
+                    } else {
+                        System.arraycopy(reduced[i], 0, buckets[digit], 0, reduced[i].length);
+                        filled[digit] = true;
+                    }
+                }
+            }
 
-            fdh = convertHashToBigInt(largeHash, bitLength);
+            // sum over all digits d of buckets[d]^d, computed with running products
+            boolean hasRunning = false;
+            boolean hasWindowResult = false;
+            for (int digit = buckets.length - 1; digit > 0; digit--) {
+                if (filled[digit]) {
+                    if (hasRunning) {
+                        montgomery.multiply(running, buckets[digit], running, scratch);
+                    } else {
+                        System.arraycopy(buckets[digit], 0, running, 0, running.length);
+                        hasRunning = true;
+                    }
+                }
+                if (hasRunning) {
+                    if (hasWindowResult) {
+                        montgomery.multiply(windowResult, running, windowResult, scratch);
+                    } else {
+                        System.arraycopy(running, 0, windowResult, 0, windowResult.length);
+                        hasWindowResult = true;
+                    }
+                }
+            }
+            if (hasWindowResult) {
+                montgomery.multiply(result, windowResult, result, scratch);
+            }
         }
 
-        return fdh;
+        return montgomery.fromMontgomery(result, scratch);
     }
 
-    private static byte[] getShortHash(MessageDigest md, byte[] message, BigInteger counter) {
-        md.reset();
-        md.update(message);
-        md.update(counter.toByteArray());
-        return md.digest();
+    /**
+     * Creates a safe prime number of the given bit length. A prime number <code>p</code> is safe, if p=2*q+1, where q
+     * is also prime. The search runs on all available processors.
+     *
+     * @param bitLength the length of the prime number
+     * @param random    the random pool used
+     * @return java.math.BigInteger which is a safe prime number
+     */
+    public static BigInteger safePrime(int bitLength, SecureRandom random) {
+        return safePrimes(1, bitLength, random)[0];
     }
 
-    private static BigInteger convertHashToBigInt(byte[] largeHash, int bitLength) {
-        // set first bit to 1. This ensures, that the BigInteger (in the next step) has the correct bitlength.
-        largeHash[0] |= 0x80;
-
-        BigInteger fdh = new BigInteger(1, largeHash);
-
-        //cut the hash to the same size as the public key
-        fdh = fdh.shiftRight((largeHash.length * 8) - bitLength);
+    /**
+     * Creates <code>count</code> safe prime numbers of the given bit length concurrently. The returned primes are not
+     * necessarily distinct.
+     *
+     * @param count     the number of safe primes
+     * @param bitLength the length of the prime numbers
+     * @param random    the random pool used
+     * @return the safe prime numbers
+     * @throws ProviderException if the current thread is interrupted while waiting for the safe primes
+     */
+    public static BigInteger[] safePrimes(int count, int bitLength, SecureRandom random) {
+        List<Future<BigInteger>> searches = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            searches.add(safePrimeAsync(bitLength, random));
+        }
 
-        // set last bit to 1 to ensure that the hash is odd. (Add 1 if the hash is even)
-        return fdh.setBit(0);
+        BigInteger[] safePrimes = new BigInteger[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                safePrimes[i] = searches.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProviderException(e);
+        } catch (ExecutionException e) {
+            throw new ProviderException(e.getCause());
+        } finally {
+            for (Future<BigInteger> search : searches) {
+                search.cancel(true);
+            }
+        }
+        return safePrimes;
     }
 
     /**
-     * Creates a safe prime number of the given bit length. A prime number <code>p</code> is safe, if p=2*q+1, where q
-     * is also prime.
+     * Starts the search for a safe prime number of the given bit length in the background. One worker per available
+     * processor races to find a safe prime. The workers of all concurrent searches share one pool with a thread per
+     * available processor. Cancelling the returned future stops all workers.
      *
      * @param bitLength the length of the prime number
      * @param random    the random pool used
-     * @return java.math.BigInteger which is a safe prime number
+     * @return the future safe prime
      */
-    public static BigInteger safePrime(int bitLength, SecureRandom random) {
+    public static Future<BigInteger> safePrimeAsync(int bitLength, SecureRandom random) {
+        if (bitLength < MIN_SIEVE_BIT_LENGTH) {
+            return CompletableFuture.completedFuture(safePrimeSequential(bitLength, random));
+        }
+        return SafePrimeSearch.start(bitLength, random, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static BigInteger safePrimeSequential(int bitLength, SecureRandom random) {
         BigInteger p, q;
 
         q = BigInteger.probablePrime(bitLength - 1, random);
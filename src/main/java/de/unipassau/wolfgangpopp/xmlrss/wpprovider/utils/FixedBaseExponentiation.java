@@ -0,0 +1,168 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * The <code>FixedBaseExponentiation</code> raises a fixed base to many different exponents modulo a fixed modulus. It
+ * implements the fixed-base method of Yao: the exponent is split into <code>m</code> digits of <code>k</code> bits
+ * and the powers <code>g_i = base^(2^(i * k))</code> are precomputed, so that <code>base^e</code> is the product of
+ * <code>g_i^(d_i)</code>. For every digit value d from <code>2^k - 1</code> down to 1, all <code>g_i</code> with
+ * <code>d_i = d</code> are multiplied into a running product A, which is then multiplied into the result. An
+ * exponentiation thus needs at most <code>m + 2^k</code> multiplications and no squarings at all, whereas a plain
+ * exponentiation needs one squaring per bit of the exponent. This pays off even for the reference arithmetic, whose
+ * modPow is several times faster per step than its modMul, since k is chosen to minimize <code>m + 2^k</code>.
+ * <p>
+ * Computing the table costs about as much as three plain exponentiations with an exponent of the maximum length, since
+ * it raises to the short exponent <code>2^k</code> once per digit. So the table is only built when the base is raised
+ * for the second time; the first exponentiation is a plain one. Exponents
+ * that are longer than the maximum exponent length are computed with {@link ModularArithmetic#modPow(BigInteger,
+ * BigInteger)} as well. All arithmetic is delegated to the given {@link ModularArithmetic}. Instances are
+ * thread-safe.
+ *
+ * @author Wolfgang Popp
+ */
+public final class FixedBaseExponentiation {
+
+    private static final int MAX_DIGIT_BITS = 16;
+
+    private final BigInteger base;
+    private final ModularArithmetic arithmetic;
+    private final int digitBits;
+    private final int digits;
+    private BigInteger[] table;
+    private boolean isUsed;
+
+    /**
+     * Constructs a new FixedBaseExponentiation. The table is built lazily.
+     *
+     * @param base            the fixed base
+     * @param arithmetic      the arithmetic modulo the modulus
+     * @param maxExponentBits the maximum bit length of the exponents that are computed with the table
+     */
+    public FixedBaseExponentiation(BigInteger base, ModularArithmetic arithmetic, int maxExponentBits) {
+        if (maxExponentBits < 1) {
+            throw new IllegalArgumentException("The maximum exponent length must be positive");
+        }
+
+        this.base = base;
+        this.arithmetic = arithmetic;
+        int bestBits = 1;
+        for (int k = 2; k <= MAX_DIGIT_BITS; k++) {
+            if (cost(maxExponentBits, k) < cost(maxExponentBits, bestBits)) {
+                bestBits = k;
+            }
+        }
+        this.digitBits = bestBits;
+        this.digits = (maxExponentBits + digitBits - 1) / digitBits;
+    }
+
+    /**
+     * Returns the maximum number of multiplications of an exponentiation with digits of the given length.
+     */
+    private static long cost(int exponentBits, int digitBits) {
+        return (exponentBits + digitBits - 1) / digitBits + (1L << digitBits);
+    }
+
+    /**
+     * Computes <code>base^exponent mod modulus</code>.
+     *
+     * @param exponent the non-negative exponent
+     * @return the power of the fixed base
+     */
+    public BigInteger modPow(BigInteger exponent) {
+        BigInteger[] table = exponent.signum() < 0 || exponent.bitLength() > digits * digitBits ? null : getTable();
+        if (table == null) {
+            return arithmetic.modPow(base, exponent);
+        }
+
+        // chain the positions of equal digits into one list per digit value
+        int used = (exponent.bitLength() + digitBits - 1) / digitBits;
+        int[] first = new int[1 << digitBits];
+        int[] next = new int[used];
+        Arrays.fill(first, -1);
+        for (int i = 0; i < used; i++) {
+            int digit = digit(exponent, i);
+            if (digit != 0) {
+                next[i] = first[digit];
+                first[digit] = i;
+            }
+        }
+
+        BigInteger product = null;
+        BigInteger result = null;
+        for (int digit = first.length - 1; digit > 0; digit--) {
+            for (int i = first[digit]; i >= 0; i = next[i]) {
+                product = product == null ? table[i] : arithmetic.modMul(product, table[i]);
+            }
+            if (product != null) {
+                result = result == null ? product : arithmetic.modMul(result, product);
+            }
+        }
+        return result == null ? BigInteger.ONE.mod(arithmetic.getModulus()) : result;
+    }
+
+    private int digit(BigInteger exponent, int index) {
+        int digit = 0;
+        for (int bit = digitBits - 1; bit >= 0; bit--) {
+            digit = (digit << 1) | (exponent.testBit(index * digitBits + bit) ? 1 : 0);
+        }
+        return digit;
+    }
+
+    /**
+     * Returns the table or null if the base is raised for the first time.
+     */
+    private synchronized BigInteger[] getTable() {
+        if (table == null && isUsed) {
+            BigInteger[] powers = new BigInteger[digits];
+            BigInteger digitExponent = BigInteger.ONE.shiftLeft(digitBits);
+            powers[0] = base.mod(arithmetic.getModulus());
+            for (int i = 1; i < digits; i++) {
+                powers[i] = arithmetic.modPow(powers[i - 1], digitExponent);
+            }
+            table = powers;
+        }
+        isUsed = true;
+        return table;
+    }
+
+    /**
+     * Returns the fixed base of this exponentiation.
+     *
+     * @return the base
+     */
+    public BigInteger getBase() {
+        return base;
+    }
+
+    /**
+     * Returns the modulus of this exponentiation.
+     *
+     * @return the modulus
+     */
+    public BigInteger getModulus() {
+        return arithmetic.getModulus();
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils;
+
+import java.math.BigInteger;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The <code>FullDomainHash</code> class calculates full domain hashes (FDH) for a fixed maximum, which is usually the
+ * modulus of a key. It produces the same hashes as {@link CryptoUtils#fullDomainHash(BigInteger, byte[])}, but each
+ * thread reuses its SHA-512 digest and its output buffer, so only the resulting BigInteger is allocated.
+ * <p>
+ * Optionally, the most recently used hashes are kept in a bounded cache, so that hashing the same element again (e.g.
+ * when signing, creating a witness and verifying the same part) only computes the first of the SHA-512 digests that
+ * make up the hash. The cache is keyed by this first digest instead of the element, so every entry has a fixed size
+ * regardless of how large the hashed elements are. Instances of this class are thread-safe.
+ *
+ * @author Wolfgang Popp
+ */
+public final class FullDomainHash {
+
+    private static final String DIGEST_ALGORITHM = "SHA-512";
+    private static final int DIGEST_LENGTH = 64;
+    private static final ThreadLocal<MessageDigest> DIGEST = new ThreadLocal<>();
+    private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<>();
+
+    private final BigInteger max;
+    private final int bitLength;
+    private final int bufferLength;
+    private final Map<ByteArray, BigInteger> cache;
+
+    /**
+     * Constructs a new FullDomainHash for the given maximum that does not cache any hashes.
+     *
+     * @param max the maximum value of the resulting hashes
+     */
+    public FullDomainHash(BigInteger max) {
+        this(max, 0);
+    }
+
+    /**
+     * Constructs a new FullDomainHash for the given maximum that caches up to <code>cacheSize</code> hashes. The least
+     * recently used hash is evicted if the cache is full.
+     *
+     * @param max       the maximum value of the resulting hashes
+     * @param cacheSize the maximum number of cached hashes or 0 to disable the cache
+     */
+    public FullDomainHash(BigInteger max, final int cacheSize) {
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException("The cache size must not be negative");
+        }
+        this.max = max;
+        this.bitLength = max.bitLength();
+        this.bufferLength = Math.max(1, (bitLength + DIGEST_LENGTH * 8 - 1) / (DIGEST_LENGTH * 8)) * DIGEST_LENGTH;
+
+        if (cacheSize > 0) {
+            this.cache = new LinkedHashMap<ByteArray, BigInteger>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ByteArray, BigInteger> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+        } else {
+            this.cache = null;
+        }
+    }
+
+    /**
+     * Returns the maximum value of the hashes calculated by this FullDomainHash.
+     *
+     * @return the maximum
+     */
+    public BigInteger getMax() {
+        return max;
+    }
+
+    /**
+     * Calculates the full domain hash of the given message, where <code>FDH &lt;= max</code>.
+     *
+     * @param m message for which the hash is calculated
+     * @return a big integer representing the full domain hash
+     * @throws NoSuchAlgorithmException if no SHA-512 implementation is found
+     */
+    public BigInteger hash(byte[] m) throws NoSuchAlgorithmException {
+        MessageDigest md = getDigest();
+        byte[] largeHash = getBuffer();
+        digest(md, m, 0, largeHash, 0);
+        if (cache == null) {
+            return calculate(md, m, largeHash);
+        }
+
+        ByteArray key = new ByteArray(Arrays.copyOf(largeHash, DIGEST_LENGTH));
+        BigInteger fdh;
+        synchronized (cache) {
+            fdh = cache.get(key);
+        }
+        if (fdh == null) {
+            fdh = calculate(md, m, largeHash);
+            synchronized (cache) {
+                cache.put(key, fdh);
+            }
+        }
+        return fdh;
+    }
+
+    /**
+     * Calculates the hash of the given message, where the buffer already starts with the first short hash.
+     */
+    private BigInteger calculate(MessageDigest md, byte[] m, byte[] largeHash) {
+        int counter = 1;
+
+        // fill the buffer with short hashes until its bitlength is bigger than or equal to the bitlength of max
+        for (int offset = DIGEST_LENGTH; offset < largeHash.length; offset += DIGEST_LENGTH) {
+            digest(md, m, counter, largeHash, offset);
+            counter++;
+        }
+
+        BigInteger fdh = convertHashToBigInt(largeHash);
+
+        // while resulting fdh is too big, cut off the first part of the fdh and append a new short hash
+        while (fdh.compareTo(max) > 0) {
+            counter++;
+            System.arraycopy(largeHash, DIGEST_LENGTH, largeHash, 0, largeHash.length - DIGEST_LENGTH);
+            digest(md, m, counter, largeHash, largeHash.length - DIGEST_LENGTH);
+
+            fdh = convertHashToBigInt(largeHash);
+        }
+
+        return fdh;
+    }
+
+    private static void digest(MessageDigest md, byte[] message, int counter, byte[] out, int offset) {
+        md.reset();
+        md.update(message);
+        updateCounter(md, counter);
+        try {
+            md.digest(out, offset, DIGEST_LENGTH);
+        } catch (DigestException e) {
+            // cannot happen, since the buffer is a multiple of the digest length
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Updates the digest with the minimal two's-complement representation of the counter, which is the same encoding
+     * as <code>BigInteger.valueOf(counter).toByteArray()</code>.
+     */
+    private static void updateCounter(MessageDigest md, int counter) {
+        int length = (32 - Integer.numberOfLeadingZeros(counter)) / 8 + 1;
+        for (int i = length - 1; i >= 0; i--) {
+            md.update((byte) (counter >>> (8 * i)));
+        }
+    }
+
+    private BigInteger convertHashToBigInt(byte[] largeHash) {
+        // set first bit to 1. This ensures, that the BigInteger (in the next step) has the correct bitlength.
+        largeHash[0] |= 0x80;
+
+        BigInteger fdh = new BigInteger(1, largeHash);
+
+        //cut the hash to the same size as max
+        fdh = fdh.shiftRight((largeHash.length * 8) - bitLength);
+
+        // set last bit to 1 to ensure that the hash is odd. (Add 1 if the hash is even)
+        return fdh.setBit(0);
+    }
+
+    private byte[] getBuffer() {
+        byte[] buffer = BUFFER.get();
+        if (buffer == null || buffer.length != bufferLength) {
+            buffer = new byte[bufferLength];
+            BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+
+    private static MessageDigest getDigest() throws NoSuchAlgorithmException {
+        MessageDigest md = DIGEST.get();
+        if (md == null) {
+            md = MessageDigest.getInstance(DIGEST_ALGORITHM);
+            DIGEST.set(md);
+        }
+        return md;
+    }
+}
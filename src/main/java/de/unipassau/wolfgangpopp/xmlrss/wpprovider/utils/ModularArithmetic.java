@@ -0,0 +1,177 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils;
+
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.ArithmeticParameterSpec;
+
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.spec.InvalidParameterSpecException;
+
+/**
+ * The <code>ModularArithmetic</code> class performs the modular arithmetic of the accumulators modulo a fixed
+ * modulus. There are two implementations:
+ * <ul>
+ * <li><code>biginteger</code>: the reference implementation, which delegates to <code>BigInteger</code>. HotSpot
+ * implements the Montgomery multiplication of <code>BigInteger.modPow</code> with intrinsics, so this is the fastest
+ * implementation, but every operation allocates several temporary objects.</li>
+ * <li><code>montgomery</code>: an engine that keeps numbers in Montgomery form in mutable 32 bit limbs and only
+ * converts from and to <code>BigInteger</code> at the beginning and at the end of an operation. The intermediate
+ * results of an exponentiation do not allocate any objects, which reduces the garbage collection pressure of servers
+ * that create many signatures at the cost of throughput. This engine requires an odd modulus.</li>
+ * </ul>
+ * <p>
+ * The accumulators select the implementation with the "Arithmetic" algorithm parameters, which wrap an
+ * {@link ArithmeticParameterSpec}, and use the reference implementation by default. Instances are immutable and can
+ * be shared between threads.
+ *
+ * @author Wolfgang Popp
+ */
+public abstract class ModularArithmetic {
+
+    private final BigInteger modulus;
+
+    ModularArithmetic(BigInteger modulus) {
+        if (modulus.signum() <= 0) {
+            throw new ArithmeticException("The modulus must be positive");
+        }
+        this.modulus = modulus;
+    }
+
+    /**
+     * Returns the modular arithmetic for the given modulus that is specified by the given spec.
+     *
+     * @param modulus the positive modulus
+     * @param spec    the implementation of the arithmetic
+     * @return the modular arithmetic
+     */
+    public static ModularArithmetic getInstance(BigInteger modulus, ArithmeticParameterSpec spec) {
+        if (spec == ArithmeticParameterSpec.MONTGOMERY) {
+            return getMontgomery(modulus);
+        }
+        return getReference(modulus);
+    }
+
+    /**
+     * Returns the spec wrapped by the given "Arithmetic" algorithm parameters.
+     *
+     * @param parameters the parameters wrapping an {@link ArithmeticParameterSpec} or null for the reference arithmetic
+     * @return the spec
+     * @throws InvalidAlgorithmParameterException if the given parameters do not contain an ArithmeticParameterSpec
+     */
+    public static ArithmeticParameterSpec getSpec(AlgorithmParameters parameters)
+            throws InvalidAlgorithmParameterException {
+
+        if (parameters == null) {
+            return ArithmeticParameterSpec.REFERENCE;
+        }
+        try {
+            return parameters.getParameterSpec(ArithmeticParameterSpec.class);
+        } catch (InvalidParameterSpecException e) {
+            throw new InvalidAlgorithmParameterException(e);
+        }
+    }
+
+    /**
+     * Returns the Montgomery engine for the given modulus, or the reference implementation if the modulus is even or
+     * one.
+     *
+     * @param modulus the positive modulus
+     * @return the modular arithmetic
+     */
+    public static ModularArithmetic getMontgomery(BigInteger modulus) {
+        if (modulus.testBit(0) && modulus.bitLength() > 1) {
+            return new MontgomeryArithmetic(modulus);
+        }
+        return getReference(modulus);
+    }
+
+    /**
+     * Returns the reference implementation for the given modulus, which delegates to <code>BigInteger</code>.
+     *
+     * @param modulus the positive modulus
+     * @return the modular arithmetic
+     */
+    public static ModularArithmetic getReference(BigInteger modulus) {
+        return new Reference(modulus);
+    }
+
+    /**
+     * Computes <code>base^exponent mod modulus</code>. Negative exponents are supported if the base is invertible.
+     *
+     * @param base     the base
+     * @param exponent the exponent
+     * @return the power in the range <code>[0, modulus)</code>
+     * @throws ArithmeticException if the exponent is negative and the base is not invertible
+     */
+    public abstract BigInteger modPow(BigInteger base, BigInteger exponent);
+
+    /**
+     * Computes <code>a * b mod modulus</code>.
+     *
+     * @param a the first factor
+     * @param b the second factor
+     * @return the product in the range <code>[0, modulus)</code>
+     */
+    public abstract BigInteger modMul(BigInteger a, BigInteger b);
+
+    /**
+     * Computes <code>a^-1 mod modulus</code>.
+     *
+     * @param a the number to invert
+     * @return the inverse in the range <code>[0, modulus)</code>
+     * @throws ArithmeticException if the number is not invertible
+     */
+    public abstract BigInteger modInverse(BigInteger a);
+
+    /**
+     * Returns the modulus.
+     *
+     * @return the modulus
+     */
+    public BigInteger getModulus() {
+        return modulus;
+    }
+
+    private static final class Reference extends ModularArithmetic {
+
+        private Reference(BigInteger modulus) {
+            super(modulus);
+        }
+
+        @Override
+        public BigInteger modPow(BigInteger base, BigInteger exponent) {
+            return base.modPow(exponent, getModulus());
+        }
+
+        @Override
+        public BigInteger modMul(BigInteger a, BigInteger b) {
+            return a.multiply(b).mod(getModulus());
+        }
+
+        @Override
+        public BigInteger modInverse(BigInteger a) {
+            return a.modInverse(getModulus());
+        }
+    }
+}
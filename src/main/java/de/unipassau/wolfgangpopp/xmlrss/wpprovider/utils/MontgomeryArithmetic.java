@@ -0,0 +1,487 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * The <code>MontgomeryArithmetic</code> implements the modular arithmetic modulo an odd modulus n with Montgomery
+ * multiplication. Numbers are stored in arrays of 32 bit limbs (least significant limb first) and in Montgomery form
+ * <code>x * R mod n</code> with <code>R = 2^(32 * limbs)</code>. The products of two limbs are accumulated in longs.
+ * The limbs are deliberately <code>int</code> and not <code>long</code>: Java 8 has neither a 64 x 64 bit
+ * multiplication with a 128 bit result nor <code>Math.multiplyHigh</code>, and emulating it from four 32 bit products
+ * is slower than using 32 bit limbs in the first place.
+ * <p>
+ * The limb operations write into arrays that are provided by the caller, so loops such as an exponentiation allocate
+ * their arrays once and then run without creating garbage. The public operations take their arrays, including the
+ * table of odd powers of an exponentiation, from a per thread workspace, since an instance is shared by all threads
+ * that use the same key. The package-private limb operations are also used by
+ * {@link CryptoUtils#multiModPow(BigInteger[], BigInteger[], BigInteger)}.
+ *
+ * @author Wolfgang Popp
+ */
+final class MontgomeryArithmetic extends ModularArithmetic {
+
+    private static final long MASK = 0xFFFFFFFFL;
+    private static final int MAX_WINDOW_BITS = 6;
+
+    private final int limbs;
+    private final int[] modulus;
+    private final int modulusInverse;
+    private final int[] rSquared;
+    private final int[] one;
+    private final int[] montgomeryOne;
+    private final ThreadLocal<Workspace> workspace = new ThreadLocal<Workspace>() {
+        @Override
+        protected Workspace initialValue() {
+            return new Workspace();
+        }
+    };
+
+    MontgomeryArithmetic(BigInteger modulus) {
+        super(modulus);
+        if (!modulus.testBit(0) || modulus.bitLength() < 2) {
+            throw new ArithmeticException("The modulus must be odd and greater than one");
+        }
+
+        this.limbs = (modulus.bitLength() + 31) >>> 5;
+        this.modulus = toLimbs(modulus);
+
+        // Newton iteration for n^-1 mod 2^32, every step doubles the number of correct bits
+        int inverse = this.modulus[0];
+        for (int i = 0; i < 5; i++) {
+            inverse *= 2 - this.modulus[0] * inverse;
+        }
+        this.modulusInverse = -inverse;
+
+        BigInteger r = BigInteger.ONE.shiftLeft(32 * limbs);
+        this.rSquared = toLimbs(r.multiply(r).mod(modulus));
+        this.montgomeryOne = toLimbs(r.mod(modulus));
+        this.one = new int[limbs];
+        this.one[0] = 1;
+    }
+
+    @Override
+    public BigInteger modPow(BigInteger base, BigInteger exponent) {
+        if (exponent.signum() < 0) {
+            return modPow(modInverse(base), exponent.negate());
+        }
+
+        Workspace workspace = this.workspace.get();
+        pow(toMontgomery(base, workspace.scratch), exponent, workspace.result, workspace.scratch);
+        return fromMontgomery(workspace.result, workspace.scratch);
+    }
+
+    @Override
+    public BigInteger modMul(BigInteger a, BigInteger b) {
+        int[] scratch = workspace.get().scratch;
+        int[] result = toMontgomery(a, scratch);
+        multiply(result, toLimbs(reduce(b)), result, scratch);
+        return toBigInteger(result);
+    }
+
+    /**
+     * Computes the inverse with the binary extended Euclidean algorithm, which keeps the invariants
+     * <code>x1 * a = u</code> and <code>x2 * a = v (mod n)</code> while reducing u and v to their greatest common
+     * divisor.
+     */
+    @Override
+    public BigInteger modInverse(BigInteger a) {
+        int[] u = toLimbs(reduce(a));
+        int[] v = modulus.clone();
+        int[] x1 = new int[limbs + 1];
+        int[] x2 = new int[limbs + 1];
+        x1[0] = 1;
+
+        if (isZero(u)) {
+            throw new ArithmeticException("BigInteger not invertible.");
+        }
+
+        while (!isOne(u) && !isOne(v)) {
+            while ((u[0] & 1) == 0) {
+                shiftRight(u);
+                halve(x1);
+            }
+            while ((v[0] & 1) == 0) {
+                shiftRight(v);
+                halve(x2);
+            }
+
+            if (compare(u, v) >= 0) {
+                subtract(u, v);
+                subtractMod(x1, x2);
+            } else {
+                subtract(v, u);
+                subtractMod(x2, x1);
+            }
+
+            if (isZero(u) || isZero(v)) {
+                throw new ArithmeticException("BigInteger not invertible.");
+            }
+        }
+
+        return toBigInteger(isOne(u) ? x1 : x2);
+    }
+
+    /**
+     * Returns a new array for a number modulo n.
+     */
+    int[] newElement() {
+        return new int[limbs];
+    }
+
+    /**
+     * Returns a new scratch array for {@link #multiply(int[], int[], int[], int[])} and
+     * {@link #square(int[], int[], int[])}.
+     */
+    int[] newScratch() {
+        return new int[2 * limbs + 1];
+    }
+
+    /**
+     * Returns the Montgomery form of the given number.
+     */
+    int[] toMontgomery(BigInteger value, int[] scratch) {
+        int[] result = toLimbs(reduce(value));
+        multiply(result, rSquared, result, scratch);
+        return result;
+    }
+
+    /**
+     * Converts a number from Montgomery form to a BigInteger.
+     */
+    BigInteger fromMontgomery(int[] value, int[] scratch) {
+        int[] result = newElement();
+        multiply(value, one, result, scratch);
+        return toBigInteger(result);
+    }
+
+    /**
+     * Copies the Montgomery form of one into the given array.
+     */
+    void setOne(int[] result) {
+        System.arraycopy(montgomeryOne, 0, result, 0, limbs);
+    }
+
+    /**
+     * Computes the Montgomery product <code>a * b * R^-1 mod n</code> of two numbers in Montgomery form. The result may
+     * be the same array as one of the factors. This is the coarsely integrated operand scanning (CIOS) method, which
+     * interleaves the multiplication with the reduction.
+     */
+    void multiply(int[] a, int[] b, int[] result, int[] scratch) {
+        int[] t = scratch;
+        Arrays.fill(t, 0, limbs + 1, 0);
+        long n0 = modulus[0] & MASK;
+        long b0 = b[0] & MASK;
+
+        for (int i = 0; i < limbs; i++) {
+            long ai = a[i] & MASK;
+            long sum = (t[0] & MASK) + ai * b0;
+            long carry = sum >>> 32;
+            long m = (((int) sum) * modulusInverse) & MASK;
+            long reduced = (sum & MASK) + m * n0;
+            long reducedCarry = reduced >>> 32;
+
+            for (int j = 1; j < limbs; j++) {
+                sum = (t[j] & MASK) + ai * (b[j] & MASK) + carry;
+                carry = sum >>> 32;
+                reduced = (sum & MASK) + m * (modulus[j] & MASK) + reducedCarry;
+                reducedCarry = reduced >>> 32;
+                t[j - 1] = (int) reduced;
+            }
+
+            sum = (t[limbs] & MASK) + carry + reducedCarry;
+            t[limbs - 1] = (int) sum;
+            t[limbs] = (int) (sum >>> 32);
+        }
+
+        // the result is less than 2n, so a single subtraction reduces it
+        if (t[limbs] != 0 || compare(t, modulus) >= 0) {
+            subtract(t, modulus);
+        }
+        System.arraycopy(t, 0, result, 0, limbs);
+    }
+
+    /**
+     * Computes the Montgomery square <code>a * a * R^-1 mod n</code> of a number in Montgomery form. The result may be
+     * the same array as a. The square is computed first, which needs only half of the limb products of a
+     * multiplication, and then reduced limb by limb.
+     */
+    void square(int[] a, int[] result, int[] scratch) {
+        int[] t = scratch;
+        Arrays.fill(t, 0);
+
+        for (int i = 0; i < limbs - 1; i++) {
+            long ai = a[i] & MASK;
+            long carry = 0;
+            for (int j = i + 1; j < limbs; j++) {
+                long sum = (t[i + j] & MASK) + ai * (a[j] & MASK) + carry;
+                t[i + j] = (int) sum;
+                carry = sum >>> 32;
+            }
+            t[i + limbs] = (int) carry;
+        }
+
+        // double the cross products and add the squares of the limbs
+        int shifted = 0;
+        long carry = 0;
+        for (int i = 0; i < limbs; i++) {
+            long ai = a[i] & MASK;
+            long square = ai * ai;
+            int low = t[2 * i];
+            int high = t[2 * i + 1];
+            long sum = (((low << 1) | shifted) & MASK) + (square & MASK) + carry;
+            t[2 * i] = (int) sum;
+            sum = (((high << 1) | (low >>> 31)) & MASK) + (square >>> 32) + (sum >>> 32);
+            t[2 * i + 1] = (int) sum;
+            carry = sum >>> 32;
+            shifted = high >>> 31;
+        }
+
+        for (int i = 0; i < limbs; i++) {
+            long m = (t[i] * modulusInverse) & MASK;
+            long carry2 = 0;
+            for (int j = 0; j < limbs; j++) {
+                long sum = (t[i + j] & MASK) + m * (modulus[j] & MASK) + carry2;
+                t[i + j] = (int) sum;
+                carry2 = sum >>> 32;
+            }
+            for (int k = i + limbs; carry2 != 0; k++) {
+                long sum = (t[k] & MASK) + carry2;
+                t[k] = (int) sum;
+                carry2 = sum >>> 32;
+            }
+        }
+
+        // the result t / R is less than 2n, so a single subtraction reduces it
+        if (t[2 * limbs] != 0 || compareHigh(t) >= 0) {
+            long borrow = 0;
+            for (int i = 0; i < limbs; i++) {
+                long difference = (t[limbs + i] & MASK) - (modulus[i] & MASK) - borrow;
+                t[limbs + i] = (int) difference;
+                borrow = difference >>> 63;
+            }
+        }
+        System.arraycopy(t, limbs, result, 0, limbs);
+    }
+
+    /**
+     * Raises a number in Montgomery form to the given non-negative exponent with a sliding window. The table of odd
+     * powers is taken from the workspace of the current thread, so the result must not be an array of the workspace
+     * other than {@link Workspace#result}.
+     */
+    void pow(int[] base, BigInteger exponent, int[] result, int[] scratch) {
+        int bits = exponent.bitLength();
+        if (bits == 0) {
+            setOne(result);
+            return;
+        }
+
+        int windowBits = bits <= 24 ? 1 : bits <= 80 ? 3 : bits <= 240 ? 4 : bits <= 672 ? 5 : MAX_WINDOW_BITS;
+        int tableSize = 1 << (windowBits - 1);
+        Workspace workspace = this.workspace.get();
+        int[][] oddPowers = workspace.oddPowers;
+        System.arraycopy(base, 0, oddPowers[0], 0, limbs);
+        if (tableSize > 1) {
+            square(base, workspace.square, scratch);
+            for (int i = 1; i < tableSize; i++) {
+                multiply(oddPowers[i - 1], workspace.square, oddPowers[i], scratch);
+            }
+        }
+
+        boolean started = false;
+        int bit = bits - 1;
+        while (bit >= 0) {
+            if (!exponent.testBit(bit)) {
+                square(result, result, scratch);
+                bit--;
+                continue;
+            }
+
+            int low = Math.max(bit - windowBits + 1, 0);
+            while (!exponent.testBit(low)) {
+                low++;
+            }
+            int window = 0;
+            for (int i = bit; i >= low; i--) {
+                window = (window << 1) | (exponent.testBit(i) ? 1 : 0);
+                if (started) {
+                    square(result, result, scratch);
+                }
+            }
+
+            if (started) {
+                multiply(result, oddPowers[window >>> 1], result, scratch);
+            } else {
+                System.arraycopy(oddPowers[window >>> 1], 0, result, 0, limbs);
+                started = true;
+            }
+            bit = low - 1;
+        }
+    }
+
+    private BigInteger reduce(BigInteger value) {
+        if (value.signum() < 0 || value.compareTo(getModulus()) >= 0) {
+            return value.mod(getModulus());
+        }
+        return value;
+    }
+
+    private int[] toLimbs(BigInteger value) {
+        int[] result = newElement();
+        byte[] bytes = value.toByteArray();
+        for (int i = 0; i < bytes.length && i < 4 * limbs; i++) {
+            result[i >>> 2] |= (bytes[bytes.length - 1 - i] & 0xFF) << (8 * (i & 3));
+        }
+        return result;
+    }
+
+    private BigInteger toBigInteger(int[] value) {
+        byte[] bytes = new byte[4 * limbs];
+        for (int i = 0; i < limbs; i++) {
+            int limb = value[i];
+            int offset = bytes.length - 4 * i;
+            bytes[offset - 1] = (byte) limb;
+            bytes[offset - 2] = (byte) (limb >>> 8);
+            bytes[offset - 3] = (byte) (limb >>> 16);
+            bytes[offset - 4] = (byte) (limb >>> 24);
+        }
+        return new BigInteger(1, bytes);
+    }
+
+    /**
+     * Compares the upper half of a double length number with the modulus.
+     */
+    private int compareHigh(int[] t) {
+        for (int i = limbs - 1; i >= 0; i--) {
+            if (t[limbs + i] != modulus[i]) {
+                return (t[limbs + i] & MASK) < (modulus[i] & MASK) ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compares the lowest limbs of a with b, ignoring any additional limbs of a.
+     */
+    private int compare(int[] a, int[] b) {
+        for (int i = limbs - 1; i >= 0; i--) {
+            if (a[i] != b[i]) {
+                return (a[i] & MASK) < (b[i] & MASK) ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Subtracts b from a in place, where a may have one limb more than b.
+     */
+    private void subtract(int[] a, int[] b) {
+        long borrow = 0;
+        for (int i = 0; i < limbs; i++) {
+            long difference = (a[i] & MASK) - (b[i] & MASK) - borrow;
+            a[i] = (int) difference;
+            borrow = (difference >>> 63);
+        }
+        if (a.length > limbs) {
+            a[limbs] -= (int) borrow;
+        }
+    }
+
+    /**
+     * Adds b to a in place, where a has one limb more than b.
+     */
+    private void add(int[] a, int[] b) {
+        long carry = 0;
+        for (int i = 0; i < limbs; i++) {
+            long sum = (a[i] & MASK) + (b[i] & MASK) + carry;
+            a[i] = (int) sum;
+            carry = sum >>> 32;
+        }
+        a[limbs] += (int) carry;
+    }
+
+    /**
+     * Computes <code>a - b mod n</code> in place for a and b in the range <code>[0, n)</code>.
+     */
+    private void subtractMod(int[] a, int[] b) {
+        if (compare(a, b) < 0) {
+            add(a, modulus);
+        }
+        subtract(a, b);
+    }
+
+    /**
+     * Computes <code>a / 2 mod n</code> in place for a in the range <code>[0, n)</code>.
+     */
+    private void halve(int[] a) {
+        if ((a[0] & 1) != 0) {
+            add(a, modulus);
+        }
+        shiftRight(a);
+    }
+
+    private static void shiftRight(int[] a) {
+        for (int i = 0; i < a.length - 1; i++) {
+            a[i] = (a[i] >>> 1) | (a[i + 1] << 31);
+        }
+        a[a.length - 1] >>>= 1;
+    }
+
+    private static boolean isZero(int[] a) {
+        for (int limb : a) {
+            if (limb != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isOne(int[] a) {
+        if (a[0] != 1) {
+            return false;
+        }
+        for (int i = 1; i < a.length; i++) {
+            if (a[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The arrays that one thread reuses for all operations of this arithmetic.
+     */
+    private final class Workspace {
+        private final int[] scratch = newScratch();
+        private final int[] result = newElement();
+        private final int[] square = newElement();
+        private final int[][] oddPowers = new int[1 << (MAX_WINDOW_BITS - 1)][];
+
+        private Workspace() {
+            for (int i = 0; i < oddPowers.length; i++) {
+                oddPowers[i] = newElement();
+            }
+        }
+    }
+}
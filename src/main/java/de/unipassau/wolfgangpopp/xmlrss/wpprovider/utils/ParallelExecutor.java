@@ -0,0 +1,294 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils;
+
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.ParallelismParameterSpec;
+
+import java.security.AlgorithmParameters;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.spec.InvalidParameterSpecException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The <code>ParallelExecutor</code> applies a function to every element of a collection according to a
+ * {@link ParallelismParameterSpec}. Small collections are processed in the calling thread, larger collections are split
+ * into a few contiguous chunks that are processed by the configured executor or by a pool that is shared by all
+ * engines. The order of the results always corresponds to the iteration order of the given collection.
+ *
+ * @author Wolfgang Popp
+ */
+public final class ParallelExecutor {
+
+    private static final int PROCESSORS = Runtime.getRuntime().availableProcessors();
+    private static final int CHUNKS_PER_PROCESSOR = 4;
+
+    private final Executor executor;
+    private final int threshold;
+    private final boolean batchVerification;
+    private final AlgorithmParameters parameters;
+
+    /**
+     * Constructs a new ParallelExecutor that uses the default parallelism.
+     */
+    public ParallelExecutor() {
+        this(ParallelismParameterSpec.DEFAULT, null);
+    }
+
+    private ParallelExecutor(ParallelismParameterSpec spec, AlgorithmParameters parameters) {
+        this.executor = spec.getExecutor();
+        this.threshold = spec.getThreshold();
+        this.batchVerification = spec.isBatchVerification();
+        this.parameters = parameters;
+    }
+
+    /**
+     * Creates a new ParallelExecutor from the given "Parallelism" algorithm parameters.
+     *
+     * @param parameters the parameters wrapping a {@link ParallelismParameterSpec} or null for the default parallelism
+     * @return a new ParallelExecutor
+     * @throws InvalidAlgorithmParameterException if the given parameters do not contain a ParallelismParameterSpec
+     */
+    public static ParallelExecutor fromParameters(AlgorithmParameters parameters)
+            throws InvalidAlgorithmParameterException {
+
+        if (parameters == null) {
+            return new ParallelExecutor();
+        }
+        try {
+            return new ParallelExecutor(parameters.getParameterSpec(ParallelismParameterSpec.class), parameters);
+        } catch (InvalidParameterSpecException e) {
+            throw new InvalidAlgorithmParameterException(e);
+        }
+    }
+
+    /**
+     * Returns the algorithm parameters this executor was created from.
+     *
+     * @return the algorithm parameters or null if the default parallelism is used
+     */
+    public AlgorithmParameters getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Returns whether witnesses may be checked with a randomized batch verification.
+     *
+     * @return true if batch verification is enabled
+     */
+    public boolean isBatchVerification() {
+        return batchVerification;
+    }
+
+    /**
+     * Applies the given function to every element of the given collection and returns a list of the results.
+     *
+     * @param function the function which is applied to every element of collection
+     * @param elements the elements
+     * @param <E>      Input (argument) type
+     * @param <R>      Result type
+     * @return the results of the function in the iteration order of the given collection
+     * @throws ExecutionException if the function threw an exception or the execution was interrupted
+     */
+    public <E, R> List<R> map(final Function<E, R> function, Collection<E> elements) throws ExecutionException {
+        final List<E> items = new ArrayList<>(elements);
+        final Object[] results = new Object[items.size()];
+
+        execute(items.size(), new Chunk() {
+            @Override
+            public void run(int from, int to) throws Exception {
+                for (int i = from; i < to; i++) {
+                    results[i] = function.execute(items.get(i));
+                }
+            }
+        });
+
+        return toList(results);
+    }
+
+    /**
+     * Checks whether the given predicate holds for all elements of the given collection. As soon as the predicate
+     * does not hold for one element, no further elements are checked and all workers stop.
+     *
+     * @param predicate the predicate which is checked for the elements
+     * @param elements  the elements
+     * @param <E>       Input (argument) type
+     * @return true if the predicate holds for all elements
+     * @throws ExecutionException if the predicate threw an exception or the execution was interrupted
+     */
+    public <E> boolean allMatch(final Function<E, Boolean> predicate, Collection<E> elements)
+            throws ExecutionException {
+
+        final List<E> items = new ArrayList<>(elements);
+        final AtomicBoolean failed = new AtomicBoolean(false);
+
+        execute(items.size(), new Chunk() {
+            @Override
+            public void run(int from, int to) throws Exception {
+                for (int i = from; i < to && !failed.get(); i++) {
+                    if (!predicate.execute(items.get(i))) {
+                        failed.set(true);
+                    }
+                }
+            }
+        });
+
+        return !failed.get();
+    }
+
+    /**
+     * Splits the given list into contiguous sublists, one for each chunk that would be processed in parallel. Lists
+     * smaller than the threshold are not split. This is useful if the elements are processed in batches.
+     *
+     * @param elements the elements
+     * @param <E>      the type of the elements
+     * @return the sublists of the given list
+     */
+    public <E> List<List<E>> split(List<E> elements) {
+        return split(elements, 1);
+    }
+
+    /**
+     * Splits the given list into contiguous sublists like {@link #split(List)}, but into fewer sublists if a sublist
+     * would otherwise contain less than the given number of elements. This is useful if a batch needs a minimum size
+     * to be processed efficiently.
+     *
+     * @param elements     the elements
+     * @param minChunkSize the minimum number of elements of a sublist, unless the list itself is smaller
+     * @param <E>          the type of the elements
+     * @return the sublists of the given list
+     */
+    public <E> List<List<E>> split(List<E> elements, int minChunkSize) {
+        int chunks = Math.min(countChunks(elements.size()), Math.max(1, elements.size() / minChunkSize));
+        List<List<E>> sublists = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            sublists.add(elements.subList(from(elements.size(), chunks, i), from(elements.size(), chunks, i + 1)));
+        }
+        return sublists;
+    }
+
+    private void execute(int size, final Chunk chunk) throws ExecutionException {
+        int chunks = countChunks(size);
+
+        if (chunks < 2) {
+            try {
+                chunk.run(0, size);
+            } catch (Exception e) {
+                throw new ExecutionException(e);
+            }
+            return;
+        }
+
+        List<FutureTask<Void>> tasks = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            final int from = from(size, chunks, i);
+            final int to = from(size, chunks, i + 1);
+            FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    chunk.run(from, to);
+                    return null;
+                }
+            });
+            tasks.add(task);
+            try {
+                getExecutor().execute(task);
+            } catch (RejectedExecutionException e) {
+                cancel(tasks);
+                throw new ExecutionException(e);
+            }
+        }
+
+        for (FutureTask<Void> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                cancel(tasks);
+                Thread.currentThread().interrupt();
+                throw new ExecutionException(e);
+            } catch (ExecutionException | CancellationException e) {
+                cancel(tasks);
+                throw e instanceof ExecutionException ? (ExecutionException) e : new ExecutionException(e);
+            }
+        }
+    }
+
+    private int countChunks(int size) {
+        if (size < threshold) {
+            return Math.min(size, 1);
+        }
+        return Math.min(size, PROCESSORS * CHUNKS_PER_PROCESSOR);
+    }
+
+    private static int from(int size, int chunks, int chunk) {
+        return (int) ((long) size * chunk / chunks);
+    }
+
+    private Executor getExecutor() {
+        return executor == null ? SharedPool.POOL : executor;
+    }
+
+    private static void cancel(List<FutureTask<Void>> tasks) {
+        for (FutureTask<Void> task : tasks) {
+            task.cancel(false);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> List<R> toList(Object[] results) {
+        return (List<R>) Arrays.asList(results);
+    }
+
+    /**
+     * The function Interface describes a function of the following type:
+     * f: E --&gt; R, x |--&gt; f(x)
+     *
+     * @param <E> the type of the argument of the function
+     * @param <R> the type of the result
+     */
+    public interface Function<E, R> {
+        R execute(E argument) throws Exception;
+    }
+
+    /**
+     * A chunk processes the elements in the range <code>[from, to)</code>.
+     */
+    private interface Chunk {
+        void run(int from, int to) throws Exception;
+    }
+
+    /**
+     * Holds the pool shared by all engines. The pool is only created when it is used the first time.
+     */
+    private static final class SharedPool {
+        private static final ForkJoinPool POOL = new ForkJoinPool(PROCESSORS);
+    }
+}
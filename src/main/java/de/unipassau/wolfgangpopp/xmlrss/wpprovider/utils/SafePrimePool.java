@@ -0,0 +1,349 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.ProviderException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * A <code>SafePrimePool</code> generates safe primes of a fixed bit length in the background, so that key pair
+ * generators can take them without waiting for the expensive search. The pool is refilled up to the given depth by a
+ * background thread whenever primes are taken. If the pool is empty, {@link #take()} searches a safe prime in the
+ * calling thread.
+ * <p>
+ * Optionally, the pool is persisted to a file, which is rewritten whenever primes are added or taken. A prime is
+ * removed from the file before it is handed out, so that it is never used twice, even if the process is killed. The
+ * file is written outside of the lock of the pool, so taking primes from memory does not wait for the disk.
+ * Note that the file contains secret key material; it is only readable by its owner on file systems that support POSIX
+ * permissions.
+ *
+ * @author Wolfgang Popp
+ */
+public final class SafePrimePool implements Closeable {
+
+    private static final int MAGIC = 0x53505031; // "SPP1"
+
+    private final int bitLength;
+    private final int depth;
+    private final SecureRandom random;
+    private final File file;
+    private final Deque<BigInteger> primes = new ArrayDeque<>();
+    private final Thread refill;
+    private final Object persistLock = new Object();
+    private boolean closed;
+    private long version;
+    private long persistedVersion;
+
+    /**
+     * Constructs a new SafePrimePool that is kept in memory only.
+     *
+     * @param bitLength the bit length of the safe primes
+     * @param depth     the number of safe primes kept in the pool
+     * @param random    the source of randomness for the safe prime search
+     */
+    public SafePrimePool(int bitLength, int depth, SecureRandom random) {
+        this(null, bitLength, depth, random);
+        startRefill();
+    }
+
+    /**
+     * Constructs a new SafePrimePool that is persisted to the given file. Safe primes contained in an existing file are
+     * loaded into the pool.
+     *
+     * @param bitLength the bit length of the safe primes
+     * @param depth     the number of safe primes kept in the pool
+     * @param random    the source of randomness for the safe prime search
+     * @param file      the file the pool is persisted to
+     * @throws IOException if the existing file cannot be read or contains safe primes of another bit length
+     */
+    public SafePrimePool(int bitLength, int depth, SecureRandom random, File file) throws IOException {
+        this(file, bitLength, depth, random);
+        if (file.exists()) {
+            load();
+        }
+        startRefill();
+    }
+
+    private SafePrimePool(File file, int bitLength, int depth, SecureRandom random) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("The depth must be positive");
+        }
+        this.bitLength = bitLength;
+        this.depth = depth;
+        this.random = random;
+        this.file = file;
+        this.refill = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                refill();
+            }
+        }, "SafePrimePool-" + bitLength);
+        this.refill.setDaemon(true);
+    }
+
+    /**
+     * Returns the bit length of the safe primes in this pool.
+     *
+     * @return the bit length
+     */
+    public int getBitLength() {
+        return bitLength;
+    }
+
+    /**
+     * Returns the number of safe primes that are currently available.
+     *
+     * @return the number of pooled safe primes
+     */
+    public synchronized int size() {
+        return primes.size();
+    }
+
+    /**
+     * Takes a safe prime from the pool. If the pool is empty, a safe prime is searched in the calling thread.
+     *
+     * @return a safe prime of the bit length of this pool
+     * @throws ProviderException if the pool cannot be persisted
+     */
+    public BigInteger take() {
+        return take(1)[0];
+    }
+
+    /**
+     * Takes <code>count</code> safe primes from the pool. Missing safe primes are searched concurrently in the calling
+     * thread, if the pool does not contain enough safe primes.
+     *
+     * @param count the number of safe primes
+     * @return the safe primes of the bit length of this pool
+     * @throws ProviderException if the pool cannot be persisted
+     */
+    public BigInteger[] take(int count) {
+        BigInteger[] taken = new BigInteger[count];
+        int available;
+        Snapshot snapshot = null;
+        synchronized (this) {
+            available = Math.min(count, primes.size());
+            for (int i = 0; i < available; i++) {
+                taken[i] = primes.poll();
+            }
+            if (available > 0) {
+                snapshot = snapshot();
+            }
+            notifyAll();
+        }
+
+        try {
+            persist(snapshot);
+        } catch (ProviderException e) {
+            // the taken primes have not been handed out yet, so they are returned to the pool
+            synchronized (this) {
+                for (int i = available - 1; i >= 0; i--) {
+                    primes.addFirst(taken[i]);
+                }
+            }
+            throw e;
+        }
+
+        if (available < count) {
+            BigInteger[] missing = CryptoUtils.safePrimes(count - available, bitLength, random);
+            System.arraycopy(missing, 0, taken, available, missing.length);
+        }
+        return taken;
+    }
+
+    /**
+     * Stops refilling this pool and persists the remaining safe primes. The remaining safe primes can still be taken.
+     *
+     * @throws ProviderException if the pool cannot be persisted
+     */
+    @Override
+    public void close() {
+        Snapshot snapshot;
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+            snapshot = snapshot();
+        }
+
+        try {
+            persist(snapshot);
+        } finally {
+            refill.interrupt();
+        }
+    }
+
+    private void startRefill() {
+        refill.start();
+    }
+
+    /**
+     * Searches safe primes until the pool is full again. Refilling stops when the pool is closed or cannot be
+     * persisted, in which case the pool is emptied by {@link #take(int)} and falls back to searching inline.
+     */
+    private void refill() {
+        while (true) {
+            synchronized (this) {
+                while (!closed && primes.size() >= depth) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+            }
+
+            BigInteger safePrime;
+            try {
+                safePrime = CryptoUtils.safePrime(bitLength, random);
+            } catch (ProviderException e) {
+                // interrupted by close()
+                return;
+            }
+
+            Snapshot snapshot;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                primes.add(safePrime);
+                snapshot = snapshot();
+            }
+
+            try {
+                persist(snapshot);
+            } catch (ProviderException e) {
+                synchronized (this) {
+                    primes.remove(safePrime);
+                }
+                return;
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath()); DataInputStream data = new DataInputStream(in)) {
+            if (data.readInt() != MAGIC) {
+                throw new IOException("The file " + file + " does not contain a safe prime pool");
+            }
+            if (data.readInt() != bitLength) {
+                throw new IOException("The file " + file + " contains safe primes of another bit length");
+            }
+            int count = data.readInt();
+            for (int i = 0; i < count; i++) {
+                byte[] bytes = new byte[data.readInt()];
+                data.readFully(bytes);
+                BigInteger prime = new BigInteger(1, bytes);
+                if (prime.bitLength() != bitLength) {
+                    throw new IOException("The file " + file + " contains safe primes of another bit length");
+                }
+                primes.add(prime);
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the pooled safe primes that is numbered in the order of the changes of the pool, or null if the
+     * pool is not persisted. The caller must hold the lock of this pool.
+     */
+    private Snapshot snapshot() {
+        if (file == null) {
+            return null;
+        }
+        return new Snapshot(++version, primes.toArray(new BigInteger[primes.size()]));
+    }
+
+    /**
+     * Writes the given safe primes to a temporary file, which then replaces the pool file. A snapshot is skipped if a
+     * newer one has already been written, since the newer one reflects all changes of the older one.
+     */
+    private void persist(Snapshot snapshot) {
+        if (snapshot == null) {
+            return;
+        }
+
+        synchronized (persistLock) {
+            if (snapshot.version > persistedVersion) {
+                write(snapshot.primes);
+                persistedVersion = snapshot.version;
+            }
+        }
+    }
+
+    private void write(BigInteger[] primes) {
+        Path target = file.toPath();
+        try {
+            Path tmp = Files.createTempFile(target.toAbsolutePath().getParent(), file.getName(), ".tmp");
+            try {
+                restrictPermissions(tmp);
+                try (OutputStream out = Files.newOutputStream(tmp); DataOutputStream data = new DataOutputStream(out)) {
+                    data.writeInt(MAGIC);
+                    data.writeInt(bitLength);
+                    data.writeInt(primes.length);
+                    for (BigInteger prime : primes) {
+                        byte[] bytes = prime.toByteArray();
+                        data.writeInt(bytes.length);
+                        data.write(bytes);
+                    }
+                }
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            throw new ProviderException("Cannot persist the safe prime pool to " + file, e);
+        }
+    }
+
+    private static void restrictPermissions(Path path) throws IOException {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // the file system does not support POSIX permissions
+        }
+    }
+
+    private static final class Snapshot {
+        private final long version;
+        private final BigInteger[] primes;
+
+        private Snapshot(long version, BigInteger[] primes) {
+            this.version = version;
+            this.primes = primes;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A <code>SafePrimeSearch</code> searches a safe prime <code>p = 2q + 1</code> of a given bit length with several
+ * racing workers. Each worker picks a random start value for <code>q</code> and sieves an interval of candidates
+ * against small primes, i.e. all candidates where <code>q</code> or <code>p</code> has a small factor are ruled out
+ * before any expensive test. The remaining candidates are checked with a Fermat test to base 2 and finally with
+ * Miller-Rabin. The first worker that finds a safe prime completes the search and all other workers stop.
+ * <p>
+ * The workers of all searches share one pool with a thread per available processor. A worker sieves and tests one
+ * interval at a time and then queues itself again, so concurrent searches take turns instead of starting threads of
+ * their own. Idle threads of the pool terminate after a few seconds.
+ *
+ * @author Wolfgang Popp
+ */
+final class SafePrimeSearch extends CompletableFuture<BigInteger> {
+
+    private static final int CERTAINTY = 100;
+    private static final int SIEVE_BOUND = 1 << 14;
+    private static final int SIEVE_LENGTH = 1 << 12;
+    private static final BigInteger TWO = BigInteger.valueOf(2);
+    private static final BigInteger FOUR = BigInteger.valueOf(4);
+    private static final Executor WORKER_POOL = createWorkerPool();
+
+    // the odd primes below SIEVE_BOUND and the inverse of 4 modulo each of them
+    private static final int[] SMALL_PRIMES;
+    private static final int[] INVERSES_OF_FOUR;
+
+    static {
+        BitSet composite = new BitSet(SIEVE_BOUND);
+        List<Integer> primes = new ArrayList<>();
+        for (int i = 3; i < SIEVE_BOUND; i += 2) {
+            if (!composite.get(i)) {
+                primes.add(i);
+                for (int j = i * i; j < SIEVE_BOUND; j += 2 * i) {
+                    composite.set(j);
+                }
+            }
+        }
+
+        SMALL_PRIMES = new int[primes.size()];
+        INVERSES_OF_FOUR = new int[primes.size()];
+        for (int i = 0; i < SMALL_PRIMES.length; i++) {
+            SMALL_PRIMES[i] = primes.get(i);
+            INVERSES_OF_FOUR[i] = FOUR.modInverse(BigInteger.valueOf(SMALL_PRIMES[i])).intValue();
+        }
+    }
+
+    private final int bitLength;
+    private final SecureRandom random;
+
+    private SafePrimeSearch(int bitLength, SecureRandom random) {
+        this.bitLength = bitLength;
+        this.random = random;
+    }
+
+    /**
+     * Starts a new search for a safe prime of the given bit length. The search can be stopped by cancelling the
+     * returned future.
+     *
+     * @param bitLength the bit length of the safe prime
+     * @param random    the source of randomness
+     * @param workers   the number of racing workers
+     * @return the future safe prime
+     */
+    static SafePrimeSearch start(int bitLength, SecureRandom random, int workers) {
+        SafePrimeSearch search = new SafePrimeSearch(bitLength, random);
+        for (int i = 0; i < workers; i++) {
+            WORKER_POOL.execute(search.new Worker());
+        }
+        return search;
+    }
+
+    private static Executor createWorkerPool() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SafePrimeSearch-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Sieves and tests the candidates of one random interval.
+     */
+    private void searchInterval(BitSet sieve) {
+        // q is congruent to 3 mod 4 and has the top bit set, so that p = 2q + 1 has exactly bitLength bits
+        BigInteger base = new BigInteger(bitLength - 1, random).setBit(bitLength - 2).setBit(1).setBit(0);
+        sieve(base, sieve);
+
+        for (int k = sieve.nextClearBit(0); k < SIEVE_LENGTH && !isDone(); k = sieve.nextClearBit(k + 1)) {
+            BigInteger q = base.add(BigInteger.valueOf(4L * k));
+            if (q.bitLength() != bitLength - 1) {
+                break;
+            }
+            BigInteger p = q.shiftLeft(1).setBit(0);
+            if (isSafePrime(q, p)) {
+                complete(p);
+            }
+        }
+    }
+
+    /**
+     * Marks every k in the sieve for which <code>q = base + 4k</code> or <code>p = 2q + 1</code> is divisible by a
+     * small prime s. These are exactly the k with <code>q = 0 mod s</code> or <code>q = (s - 1) / 2 mod s</code>.
+     */
+    private static void sieve(BigInteger base, BitSet sieve) {
+        sieve.clear();
+        for (int i = 0; i < SMALL_PRIMES.length; i++) {
+            int s = SMALL_PRIMES[i];
+            long remainder = base.mod(BigInteger.valueOf(s)).longValue();
+            mark(sieve, s, (s - remainder) * INVERSES_OF_FOUR[i] % s);
+            mark(sieve, s, ((s - 1) / 2 - remainder + s) * INVERSES_OF_FOUR[i] % s);
+        }
+    }
+
+    private static void mark(BitSet sieve, int step, long start) {
+        for (int k = (int) start; k < SIEVE_LENGTH; k += step) {
+            sieve.set(k);
+        }
+    }
+
+    private static boolean isSafePrime(BigInteger q, BigInteger p) {
+        // the Fermat tests are much cheaper than Miller-Rabin with high certainty and rule out almost all composites
+        return TWO.modPow(q.subtract(BigInteger.ONE), q).equals(BigInteger.ONE)
+                && TWO.modPow(p.subtract(BigInteger.ONE), p).equals(BigInteger.ONE)
+                && q.isProbablePrime(CERTAINTY)
+                && p.isProbablePrime(CERTAINTY);
+    }
+
+    /**
+     * A worker searches one interval per run and queues itself again until the search is done.
+     */
+    private final class Worker implements Runnable {
+        private final BitSet sieve = new BitSet(SIEVE_LENGTH);
+
+        @Override
+        public void run() {
+            if (isDone()) {
+                return;
+            }
+            try {
+                searchInterval(sieve);
+            } catch (Throwable t) {
+                completeExceptionally(t);
+                return;
+            }
+            if (!isDone()) {
+                WORKER_POOL.execute(this);
+            }
+        }
+    }
+}
@@ -33,22 +33,26 @@ import de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml.binding.Signature;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml.binding.SignatureInfo;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml.binding.SignatureValue;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import javax.xml.stream.XMLStreamReader;
+import java.io.OutputStream;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import static de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.XMLUtils.checkNode;
-import static de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.XMLUtils.getSignatureNode;
 
 /**
  * The <code>AbstractRedactableXMLSignature</code> helps implementors of a RedactableXMLSignature by reducing the
@@ -66,9 +70,11 @@ public abstract class AbstractRedactableXMLSignature<S extends SignatureValue, P
     private final Class<P> proofClass;
     private final Class<S> signatureValueClass;
     private Node root;
+    private DocumentIndex index;
     private final Map<ByteArray, Pointer> pointers = new HashMap<>();
     private final List<String> uris = new ArrayList<>();
     private final Set<String> redactUris = new HashSet<>();
+    private final List<Pointer> deferredPointers = new ArrayList<>();
 
     /**
      * Constructss a new AbstractRedactableXMLSignature with the given underlying redactable signature scheme and proof
@@ -106,13 +112,51 @@ public abstract class AbstractRedactableXMLSignature<S extends SignatureValue, P
 
     private void reset() {
         root = null;
+        index = null;
         pointers.clear();
         uris.clear();
         redactUris.clear();
+        deferredPointers.clear();
     }
 
     @Override
     public void engineAddSignSelector(String uri, boolean isRedactable) throws RedactableXMLSignatureException {
+        if (root == null) {
+            deferPointer(new Pointer(uri, isRedactable));
+            return;
+        }
+        addSignatureInfo();
+        List<Pointer> newPointers = expand(new Pointer(uri, isRedactable));
+        if (newPointers.size() > 1) {
+            Pointer.concatDereference(newPointers, index);
+        }
+        for (Pointer pointer : newPointers) {
+            addPointer(pointer);
+        }
+    }
+
+    @Override
+    public void engineAddSignSelectors(List<String> uris, boolean isRedactable)
+            throws RedactableXMLSignatureException {
+        if (root == null) {
+            for (String uri : uris) {
+                deferPointer(new Pointer(uri, isRedactable));
+            }
+            return;
+        }
+        addSignatureInfo();
+        List<Pointer> newPointers = new ArrayList<>(uris.size());
+        for (String uri : uris) {
+            newPointers.addAll(expand(new Pointer(uri, isRedactable)));
+        }
+
+        Pointer.concatDereference(newPointers, index);
+        for (Pointer pointer : newPointers) {
+            addPointer(pointer);
+        }
+    }
+
+    private void addSignatureInfo() throws RedactableXMLSignatureException {
         if (pointers.size() < 1) {
             SignatureInfo signatureInfo = new SignatureInfo(getCanonicalizationMethod(), getRedactableSignatureMethod());
 
@@ -126,18 +170,91 @@ public abstract class AbstractRedactableXMLSignature<S extends SignatureValue, P
                 throw new RedactableXMLSignatureException(e);
             }
         }
+    }
 
-        Pointer pointer = new Pointer(uri, isRedactable);
-        if (pointers.put(new ByteArray(pointer.concatDereference(root)), pointer) != null) {
+    private void addPointer(Pointer pointer) throws RedactableXMLSignatureException {
+        byte[] concatDereference = pointer.concatDereference(index);
+        if (pointers.put(new ByteArray(concatDereference), pointer) != null) {
             throw new RedactableXMLSignatureException("A URI cannot be added twice");
         }
         try {
-            rss.addPart(pointer.concatDereference(root), isRedactable);
+            rss.addPart(concatDereference, pointer.isRedactable());
         } catch (RedactableSignatureException e) {
             throw new RedactableXMLSignatureException(e);
         }
     }
 
+    /**
+     * Expands a pointer whose XPath expression selects multiple elements into one pointer per selected element, which
+     * references the element by its ID. Every selected element must have an ID, since a pointer to a position in the
+     * selected node set would select a different element as soon as a preceding element is redacted.
+     */
+    private List<Pointer> expand(Pointer pointer) throws RedactableXMLSignatureException {
+        if (Dereferencer.getXPathPointer(pointer.getUri()) == null) {
+            return Collections.singletonList(pointer);
+        }
+
+        List<Node> nodes = index.dereferenceAll(pointer.getUri());
+        if (nodes.isEmpty()) {
+            throw new RedactableXMLSignatureException("URI " + pointer.getUri() + " does not select any element");
+        } else if (nodes.size() == 1) {
+            return Collections.singletonList(pointer);
+        }
+
+        List<Pointer> expanded = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            String id = index.getId((Element) node);
+            if (id == null) {
+                throw new RedactableXMLSignatureException("URI " + pointer.getUri()
+                        + " selects multiple elements, but the element " + node.getNodeName() + " has no ID");
+            }
+            expanded.add(new Pointer(Dereferencer.createIdXPointer(id), pointer.isRedactable()));
+        }
+        return expanded;
+    }
+
+    /**
+     * Resolves redaction URIs with XPath expressions to the signed URIs of the selected elements.
+     */
+    private Set<String> resolveRedactUris() throws RedactableXMLSignatureException {
+        Map<Node, String> signedNodes = null;
+        Set<String> resolved = new HashSet<>();
+
+        for (String uri : redactUris) {
+            if (Dereferencer.getXPathPointer(uri) == null || uris.contains(uri)) {
+                resolved.add(uri);
+                continue;
+            }
+
+            if (signedNodes == null) {
+                signedNodes = new IdentityHashMap<>();
+                for (String signedUri : uris) {
+                    if (!Dereferencer.isSignatureInfoURI(signedUri)) {
+                        signedNodes.put(index.dereference(signedUri), signedUri);
+                    }
+                }
+            }
+            for (Node node : index.dereferenceAll(uri)) {
+                String signedUri = signedNodes.get(node);
+                if (signedUri == null) {
+                    throw new RedactableXMLSignatureException("URI " + uri + " selects an element that is not signed");
+                }
+                resolved.add(signedUri);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Keeps a pointer that is added before the document is known, i.e. for signing a streamed document.
+     */
+    private void deferPointer(Pointer pointer) throws RedactableXMLSignatureException {
+        if (deferredPointers.contains(pointer)) {
+            throw new RedactableXMLSignatureException("A URI cannot be added twice");
+        }
+        deferredPointers.add(pointer);
+    }
+
     @Override
     public void engineAddRedactSelector(String uri) throws RedactableXMLSignatureException {
         if (!redactUris.add(uri)) {
@@ -148,6 +265,7 @@ public abstract class AbstractRedactableXMLSignature<S extends SignatureValue, P
     @Override
     public void engineSetRootNode(Node root) {
         this.root = root;
+        this.index = root == null ? null : new DocumentIndex(root);
     }
 
     @Override
@@ -156,6 +274,19 @@ public abstract class AbstractRedactableXMLSignature<S extends SignatureValue, P
             throw new RedactableXMLSignatureException("root node not set");
         }
 
+        if (!deferredPointers.isEmpty()) {
+            addSignatureInfo();
+            List<Pointer> newPointers = new ArrayList<>(deferredPointers.size());
+            for (Pointer pointer : deferredPointers) {
+                newPointers.addAll(expand(pointer));
+            }
+            Pointer.concatDereference(newPointers, index);
+            for (Pointer pointer : newPointers) {
+                addPointer(pointer);
+            }
+            deferredPointers.clear();
+        }
+
         SignatureOutput output;
         try {
             output = rss.sign();
@@ -166,12 +297,57 @@ public abstract class AbstractRedactableXMLSignature<S extends SignatureValue, P
         return marshall(output);
     }
 
+    @Override
+    public void engineSign(XMLStreamReader reader, OutputStream out) throws RedactableXMLSignatureException {
+        if (root != null) {
+            throw new RedactableXMLSignatureException("root node must not be set for streaming");
+        }
+
+        try {
+            Set<String> ids = new HashSet<>();
+            boolean captureRoot = false;
+            for (Pointer pointer : deferredPointers) {
+                String id = Dereferencer.getId(pointer.getUri());
+                if (id != null) {
+                    ids.add(id);
+                } else if (Dereferencer.isRootNodeXPointer(pointer.getUri())) {
+                    captureRoot = true;
+                } else {
+                    throw new RedactableXMLSignatureException("unsupported URI for streaming: " + pointer.getUri());
+                }
+            }
+
+            StreamCanonicalizer canonicalizer = new StreamCanonicalizer(reader, out, ids, captureRoot, false);
+            canonicalizer.readRoot();
+            engineSetRootNode(canonicalizer.getRoot());
+            addSignatureInfo();
+            for (Pointer pointer : deferredPointers) {
+                pointer.concatCanonicalDereference(getStreamedElement(canonicalizer, pointer),
+                        XMLUtils.getOwnerDocument(root));
+                addPointer(pointer);
+            }
+
+            SignatureOutput output;
+            try {
+                output = rss.sign();
+            } catch (RedactableSignatureException e) {
+                throw new RedactableXMLSignatureException(e);
+            }
+
+            marshall(output);
+            canonicalizer.write(index.getSignatureNode());
+            canonicalizer.finish();
+        } finally {
+            reset();
+        }
+    }
+
     @Override
     public boolean engineVerify() throws RedactableXMLSignatureException {
         if (root == null) {
             throw new RedactableXMLSignatureException("root node not set");
         }
-        checkNode(getSignatureNode(root).getFirstChild(), "SignatureInfo");
+        checkNode(index.getSignatureNode().getFirstChild(), "SignatureInfo");
         try {
             return rss.verify(unmarshall());
         } catch (RedactableSignatureException e) {
@@ -179,6 +355,53 @@ public abstract class AbstractRedactableXMLSignature<S extends SignatureValue, P
         }
     }
 
+    @Override
+    public boolean engineVerify(XMLStreamReader reader) throws RedactableXMLSignatureException {
+        if (root != null) {
+            throw new RedactableXMLSignatureException("root node must not be set for streaming");
+        }
+
+        try {
+            StreamCanonicalizer canonicalizer = new StreamCanonicalizer(reader, null, null, false, true);
+            canonicalizer.readRoot();
+            canonicalizer.finish();
+            engineSetRootNode(canonicalizer.getRoot());
+            checkNode(index.getSignatureNode().getFirstChild(), "SignatureInfo");
+
+            Signature<S, P> signature = unmarshallXML();
+            for (Reference<P> reference : signature.getReferences()) {
+                Pointer pointer = reference.getPointer();
+                if (!Dereferencer.isSignatureInfoURI(pointer.getUri())) {
+                    pointer.concatCanonicalDereference(getStreamedElement(canonicalizer, pointer),
+                            XMLUtils.getOwnerDocument(root));
+                }
+            }
+            return rss.verify(convertSignature(signature));
+        } catch (RedactableSignatureException e) {
+            throw new RedactableXMLSignatureException(e);
+        } finally {
+            reset();
+        }
+    }
+
+    private static byte[] getStreamedElement(StreamCanonicalizer canonicalizer, Pointer pointer)
+            throws RedactableXMLSignatureException {
+        String uri = pointer.getUri();
+        if (Dereferencer.isRootNodeXPointer(uri) && canonicalizer.getRootElement() != null) {
+            return canonicalizer.getRootElement();
+        }
+
+        String id = Dereferencer.getId(uri);
+        if (id == null) {
+            throw new RedactableXMLSignatureException("unsupported URI for streaming: " + uri);
+        }
+        byte[] element = canonicalizer.getElement(id);
+        if (element == null) {
+            throw new RedactableXMLSignatureException("Cannot resolve element with ID " + id);
+        }
+        return element;
+    }
+
     @Override
     public Document engineRedact() throws RedactableXMLSignatureException {
         if (root == null) {
@@ -191,10 +414,17 @@ public abstract class AbstractRedactableXMLSignature<S extends SignatureValue, P
             throw new RedactableXMLSignatureException("Cannot perform redaction. Invalid redaction detected");
         }
 
-        for (String uri : redactUris) {
-            Pointer pointer = new Pointer(uri, true);
+        Set<String> selectedUris = resolveRedactUris();
+        List<Pointer> redactPointers = new ArrayList<>(selectedUris.size());
+        for (String uri : selectedUris) {
+            redactPointers.add(new Pointer(uri, true));
+        }
+        Pointer.concatDereference(redactPointers, index);
+
+        for (Pointer pointer : redactPointers) {
+            String uri = pointer.getUri();
             try {
-                rss.addIdentifier(createIdentifier(pointer.concatDereference(root), uris.indexOf(uri)));
+                rss.addIdentifier(createIdentifier(pointer.concatDereference(index), uris.indexOf(uri)));
             } catch (RedactableSignatureException e) {
                 throw new RedactableXMLSignatureException(e);
             }
@@ -206,8 +436,9 @@ public abstract class AbstractRedactableXMLSignature<S extends SignatureValue, P
             throw new RedactableXMLSignatureException(e);
         }
 
-        removeNodes(root, redactUris);
-        root.removeChild(getSignatureNode(root));
+        removeNodes(index, selectedUris);
+        root.removeChild(index.getSignatureNode());
+        index.setSignatureNode(null);
 
         return marshall(redacted);
     }
@@ -241,7 +472,7 @@ public abstract class AbstractRedactableXMLSignature<S extends SignatureValue, P
      * @throws RedactableXMLSignatureException if the pointer cannot be dereferenced or canonicalization fails
      */
     protected byte[] getMessagePartForPointer(Pointer pointer) throws RedactableXMLSignatureException {
-        return pointer.concatDereference(root);
+        return pointer.concatDereference(index);
     }
 
     private Document marshall(SignatureOutput output) throws RedactableXMLSignatureException {
@@ -257,6 +488,7 @@ public abstract class AbstractRedactableXMLSignature<S extends SignatureValue, P
         Document ownerDocument = XMLUtils.getOwnerDocument(root);
         Node signature = sigElement.marshall(ownerDocument);
         root.appendChild(signature);
+        index.setSignatureNode(signature);
         return ownerDocument;
     }
 
@@ -265,7 +497,7 @@ public abstract class AbstractRedactableXMLSignature<S extends SignatureValue, P
     }
 
     private Signature<S, P> unmarshallXML() throws RedactableXMLSignatureException {
-        Node signatureNode = getSignatureNode(root);
+        Node signatureNode = index.getSignatureNode();
         Signature<S, P> signature = new Signature<>(proofClass, signatureValueClass);
         return signature.unmarshall(signatureNode);
     }
@@ -274,9 +506,15 @@ public abstract class AbstractRedactableXMLSignature<S extends SignatureValue, P
         List<Reference<P>> references = signature.getReferences();
         prepareUnmarshallSignatureValue(references.size(), signature.getSignatureValue());
 
+        List<Pointer> referencePointers = new ArrayList<>(references.size());
+        for (Reference<P> reference : references) {
+            referencePointers.add(reference.getPointer());
+        }
+        Pointer.concatDereference(referencePointers, index);
+
         for (int i = 0; i < references.size(); i++) {
             Pointer pointer = references.get(i).getPointer();
-            pointers.put(new ByteArray(pointer.concatDereference(root)), pointer);
+            pointers.put(new ByteArray(pointer.concatDereference(index)), pointer);
             uris.add(pointer.getUri());
             P proof = references.get(i).getProof();
             prepareUnmarshallReference(references.size(), i, pointer, proof);
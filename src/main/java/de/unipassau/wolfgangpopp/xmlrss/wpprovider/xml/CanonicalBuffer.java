@@ -0,0 +1,218 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The <code>CanonicalBuffer</code> is a growable byte buffer that UTF-8 encodes and escapes character data as
+ * specified by Canonical XML.
+ *
+ * @author Wolfgang Popp
+ */
+final class CanonicalBuffer {
+
+    private byte[] buffer;
+    private int length;
+
+    /**
+     * Constructs a new, empty buffer with the given initial capacity.
+     *
+     * @param capacity the initial capacity in bytes
+     */
+    CanonicalBuffer(int capacity) {
+        buffer = new byte[capacity];
+    }
+
+    /**
+     * Returns the number of bytes in this buffer.
+     *
+     * @return the number of bytes in this buffer
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Discards all bytes starting at the given position.
+     *
+     * @param length the new length of this buffer
+     */
+    void truncate(int length) {
+        this.length = length;
+    }
+
+    /**
+     * Returns a copy of the given range of this buffer.
+     *
+     * @param from the start of the range (inclusive)
+     * @param to   the end of the range (exclusive)
+     * @return the bytes in the given range
+     */
+    byte[] toByteArray(int from, int to) {
+        return Arrays.copyOfRange(buffer, from, to);
+    }
+
+    /**
+     * Returns the concatenation of the given prefix and the given range of this buffer.
+     *
+     * @param prefix the bytes preceding the range
+     * @param from   the start of the range (inclusive)
+     * @param to     the end of the range (exclusive)
+     * @return the prefix followed by the bytes in the given range
+     */
+    byte[] toByteArray(byte[] prefix, int from, int to) {
+        byte[] result = Arrays.copyOf(prefix, prefix.length + to - from);
+        System.arraycopy(buffer, from, result, prefix.length, to - from);
+        return result;
+    }
+
+    /**
+     * Appends the content of the given buffer to this buffer.
+     *
+     * @param other the buffer to append
+     */
+    void append(CanonicalBuffer other) {
+        append(other, 0);
+    }
+
+    /**
+     * Appends the content of the given buffer starting at the given position to this buffer.
+     *
+     * @param other the buffer to append
+     * @param from  the position of the first byte to append
+     */
+    void append(CanonicalBuffer other, int from) {
+        ensureCapacity(other.length - from);
+        System.arraycopy(other.buffer, from, buffer, length, other.length - from);
+        length += other.length - from;
+    }
+
+    /**
+     * Writes the content of this buffer to the given output stream.
+     *
+     * @param out the output stream
+     * @throws IOException if an I/O error occurs
+     */
+    void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, length);
+    }
+
+    /**
+     * Escapes the given text or attribute value and writes it to this buffer.
+     *
+     * @param s           the text or attribute value
+     * @param isAttribute true if the given string is an attribute value
+     */
+    void writeEscaped(String s, boolean isAttribute) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '&':
+                    write("&amp;");
+                    break;
+                case '<':
+                    write("&lt;");
+                    break;
+                case '>':
+                    write(isAttribute ? ">" : "&gt;");
+                    break;
+                case '"':
+                    write(isAttribute ? "&quot;" : "\"");
+                    break;
+                case '\t':
+                    write(isAttribute ? "&#x9;" : "\t");
+                    break;
+                case '\n':
+                    write(isAttribute ? "&#xA;" : "\n");
+                    break;
+                case '\r':
+                    write("&#xD;");
+                    break;
+                default:
+                    i = writeChar(s, i);
+            }
+        }
+    }
+
+    /**
+     * Writes the data of a comment or processing instruction to this buffer.
+     *
+     * @param s the data
+     */
+    void writeData(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '\r') {
+                write("&#xD;");
+            } else {
+                i = writeChar(s, i);
+            }
+        }
+    }
+
+    /**
+     * Writes the given string to this buffer without escaping.
+     *
+     * @param s the string
+     */
+    void write(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            i = writeChar(s, i);
+        }
+    }
+
+    /**
+     * Writes the UTF-8 encoding of the character at the given index and returns the index of its last char.
+     */
+    private int writeChar(String s, int index) {
+        ensureCapacity(4);
+
+        int c = s.charAt(index);
+        if (Character.isHighSurrogate((char) c) && index + 1 < s.length()
+                && Character.isLowSurrogate(s.charAt(index + 1))) {
+            c = Character.toCodePoint((char) c, s.charAt(++index));
+        }
+
+        if (c < 0x80) {
+            buffer[length++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[length++] = (byte) (0xC0 | (c >> 6));
+            buffer[length++] = (byte) (0x80 | (c & 0x3F));
+        } else if (c < 0x10000) {
+            buffer[length++] = (byte) (0xE0 | (c >> 12));
+            buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[length++] = (byte) (0x80 | (c & 0x3F));
+        } else {
+            buffer[length++] = (byte) (0xF0 | (c >> 18));
+            buffer[length++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+            buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[length++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return index;
+    }
+
+    private void ensureCapacity(int additional) {
+        if (length + additional > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+        }
+    }
+}
@@ -25,6 +25,8 @@ import org.apache.xml.security.c14n.CanonicalizationException;
 import org.apache.xml.security.c14n.InvalidCanonicalizerException;
 import org.w3c.dom.Node;
 
+import java.util.List;
+
 /**
  * The <code>Canonicalizer</code> class transforms XML elements to a canonical representation.
  *
@@ -56,4 +58,18 @@ public class Canonicalizer {
         return canonicalizer.canonicalizeSubtree(node);
     }
 
+    /**
+     * Canonicalizes the subtrees starting at the given nodes, which belong to the same document.
+     * <p>
+     * The document is traversed only once, even if the given nodes are nested. The returned canonical representations
+     * are equal to the results of {@link #canonicalize(Node)}.
+     *
+     * @param nodes the nodes to canonicalize
+     * @return the canonical representations of the given nodes and all their children in the order of the given nodes
+     * @throws CanonicalizationException if one of the given nodes cannot be processed
+     */
+    public static List<byte[]> canonicalize(List<? extends Node> nodes) throws CanonicalizationException {
+        return SubtreeCanonicalizer.canonicalize(nodes);
+    }
+
 }
@@ -25,6 +25,10 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * The <code>Dereferencer</code> is used to dereference URIs within a given XML document.
  *
@@ -36,8 +40,35 @@ public class Dereferencer {
     private static final String XPOINTER_END = "))";
     private static final int XPOINTER_END_LEN = XPOINTER_END.length();
 
-    private static boolean isRootNodeXPointer(String xPointer) {
-        return xPointer.equals("#xpointer(/)");
+    /**
+     * Checks whether the given URI points to the root node.
+     *
+     * @param uri the URI
+     * @return true if the given URI is the XPointer of the root node
+     */
+    static boolean isRootNodeXPointer(String uri) {
+        return uri != null && uri.equals("#xpointer(/)");
+    }
+
+    /**
+     * Returns the ID referenced by the given XPointer-ID-reference.
+     *
+     * @param uri the URI
+     * @return the referenced ID or null if the given URI is not a XPointer-ID-reference
+     */
+    static String getId(String uri) {
+        return uri != null && isIdXPointer(uri) ? extractId(uri) : null;
+    }
+
+    /**
+     * Creates the XPointer-ID-reference of the given ID.
+     *
+     * @param id the ID
+     * @return the XPointer referencing the given ID
+     */
+    static String createIdXPointer(String id) {
+        String quote = id.indexOf('\'') < 0 ? "'" : "\"";
+        return XPOINTER_BEGIN + quote + id + quote + XPOINTER_END;
     }
 
     private static boolean isIdXPointer(String xPointer) {
@@ -45,7 +76,13 @@ public class Dereferencer {
                 || (xPointer.startsWith(XPOINTER_BEGIN + "\"") && xPointer.endsWith("\"" + XPOINTER_END));
     }
 
-    private static boolean isSignatureInfoURI(String uri) {
+    /**
+     * Checks whether the given URI is the special SignatureInfo-URI.
+     *
+     * @param uri the URI
+     * @return true if the given URI points to the <code>SignatureInfo</code> element
+     */
+    static boolean isSignatureInfoURI(String uri) {
         return "SignatureInfo".equals(uri);
     }
 
@@ -53,15 +90,15 @@ public class Dereferencer {
         return xPointer.substring(XPOINTER_BEGIN_LEN + 1, xPointer.length() - XPOINTER_END_LEN - 1);
     }
 
-    private static Node dereferenceSignatureInfo(Node root) throws RedactableXMLSignatureException {
-        Node signatureNode = XMLUtils.getSignatureNode(root);
+    private static Node dereferenceSignatureInfo(Node signatureNode) throws RedactableXMLSignatureException {
         return XMLUtils.checkNode(signatureNode.getFirstChild(), "SignatureInfo");
     }
 
     /**
      * Dereference the given uri within the document of the given root element.
      * <p>
-     * Currently this method only supports XPointer-ID-references and the special SignatureInfo-URI.
+     * Currently this method supports the root node XPointer, XPointer-ID-references, XPointers with an XPath
+     * expression that selects exactly one element and the special SignatureInfo-URI.
      *
      * @param uri  the uri to dereference
      * @param root the root node whose owner document is searched for dereferenciation
@@ -75,16 +112,88 @@ public class Dereferencer {
             return root;
         } else if (isIdXPointer(uri)) {
             Document doc = root.getOwnerDocument();
-            String id = extractId(uri);
-            Element element = doc.getElementById(id);
-            if (element == null) {
-                throw new RedactableXMLSignatureException("Cannot resolve element with ID " + id);
-            }
-            return element;
+            return checkElement(doc.getElementById(extractId(uri)), uri);
+        } else if (isSignatureInfoURI(uri)) {
+            return dereferenceSignatureInfo(XMLUtils.getSignatureNode(root));
+        }
+
+        return dereferenceXPath(uri, XMLUtils.getOwnerDocument(root));
+    }
+
+    /**
+     * Dereference the given uri, which may select multiple elements, within the document of the given root element.
+     * <p>
+     * XPointers with an XPath expression, e.g. <code>#xpointer(/Vehicle/MotorVehicles/Car)</code>, select all
+     * matching elements in document order. All other URIs select exactly one node as described by
+     * {@link #dereference(String, Node)}.
+     *
+     * @param uri  the uri to dereference
+     * @param root the root node whose owner document is searched for dereferenciation
+     * @return the dereferenced nodes
+     * @throws RedactableXMLSignatureException if the given URI cannot be resolved or is not supported
+     */
+    public static List<Node> dereferenceAll(String uri, Node root) throws RedactableXMLSignatureException {
+        XPathPointer xPointer = getXPathPointer(uri);
+        if (xPointer == null) {
+            return Collections.singletonList(dereference(uri, root));
+        }
+        return new ArrayList<Node>(xPointer.select(XMLUtils.getOwnerDocument(root)));
+    }
+
+    /**
+     * Dereference the given uri within the given indexed document.
+     * <p>
+     * In contrast to {@link #dereference(String, Node)}, the document is not searched, but the elements are looked up
+     * in the index. Use {@link DocumentIndex#dereference(String)} to cache the dereferenced nodes as well.
+     *
+     * @param uri   the uri to dereference
+     * @param index the index of the document
+     * @return the dereferenced node
+     * @throws RedactableXMLSignatureException if the given URI cannot be resolved or is not supported
+     */
+    public static Node dereference(String uri, DocumentIndex index) throws RedactableXMLSignatureException {
+        if (uri == null || uri.length() == 0) {
+            throw new RedactableXMLSignatureException("unsupported URI");
+        } else if (isRootNodeXPointer(uri)) {
+            return index.getRoot();
+        } else if (isIdXPointer(uri)) {
+            return checkElement(index.getElementById(extractId(uri)), uri);
         } else if (isSignatureInfoURI(uri)) {
-            return dereferenceSignatureInfo(root);
+            return dereferenceSignatureInfo(index.getSignatureNode());
         }
 
-        throw new RedactableXMLSignatureException("unsupported URI");
+        return dereferenceXPath(uri, XMLUtils.getOwnerDocument(index.getRoot()));
+    }
+
+    /**
+     * Returns the compiled XPointer of the given URI if it is an XPointer with an XPath expression other than the
+     * root node XPointer and XPointer-ID-references.
+     */
+    static XPathPointer getXPathPointer(String uri) throws RedactableXMLSignatureException {
+        if (uri == null || isRootNodeXPointer(uri) || isIdXPointer(uri)) {
+            return null;
+        }
+        return XPathPointer.get(uri);
+    }
+
+    private static Node dereferenceXPath(String uri, Document document) throws RedactableXMLSignatureException {
+        XPathPointer xPointer = XPathPointer.get(uri);
+        if (xPointer == null) {
+            throw new RedactableXMLSignatureException("unsupported URI");
+        }
+
+        List<Element> elements = xPointer.select(document);
+        if (elements.size() != 1) {
+            throw new RedactableXMLSignatureException("URI " + uri + " selects " + elements.size()
+                    + " elements instead of one");
+        }
+        return elements.get(0);
+    }
+
+    private static Element checkElement(Element element, String uri) throws RedactableXMLSignatureException {
+        if (element == null) {
+            throw new RedactableXMLSignatureException("Cannot resolve element with ID " + extractId(uri));
+        }
+        return element;
     }
 }
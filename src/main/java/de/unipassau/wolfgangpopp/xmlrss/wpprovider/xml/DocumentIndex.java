@@ -0,0 +1,196 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml;
+
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.XMLUtils;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>DocumentIndex</code> indexes a document for dereferencing URIs. It is built in a single traversal of the
+ * document and holds the elements with an ID, the <code>Signature</code> element and the nodes of all URIs that were
+ * dereferenced with this index.
+ * <p>
+ * The index is not updated if the document is modified, except for the <code>Signature</code> element, which is set
+ * via {@link #setSignatureNode(Node)}.
+ *
+ * @author Wolfgang Popp
+ */
+public final class DocumentIndex {
+
+    private final Node root;
+    private final Map<String, Element> ids = new HashMap<>();
+    private final Map<String, Node> dereferenced = new HashMap<>();
+    private Node signatureNode;
+
+    /**
+     * Builds the index of the document of the given root node.
+     *
+     * @param root the root node of the document
+     */
+    public DocumentIndex(Node root) {
+        this.root = root;
+        Document document = XMLUtils.getOwnerDocument(root);
+        if (document.getDocumentElement() != null) {
+            index(document.getDocumentElement());
+        }
+    }
+
+    private void index(Element rootElement) {
+        Node node = rootElement;
+        while (node != null) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                indexElement((Element) node);
+            }
+
+            Node next = node.getFirstChild();
+            while (next == null && node != rootElement) {
+                next = node.getNextSibling();
+                if (next == null) {
+                    node = node.getParentNode();
+                }
+            }
+            node = next;
+        }
+    }
+
+    private void indexElement(Element element) {
+        if (signatureNode == null && "Signature".equals(element.getLocalName())
+                && RedactableXMLSignature.XML_NAMESPACE.equals(element.getNamespaceURI())) {
+            signatureNode = element;
+        }
+
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            if (attribute.isId() && !ids.containsKey(attribute.getValue())) {
+                ids.put(attribute.getValue(), element);
+            }
+        }
+    }
+
+    /**
+     * Returns the root node of the indexed document.
+     *
+     * @return the root node
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns the element with the given ID.
+     * <p>
+     * IDs that were not known when this index was built are looked up in the document.
+     *
+     * @param id the ID
+     * @return the element with the given ID or null if there is no such element
+     */
+    public Element getElementById(String id) {
+        Element element = ids.get(id);
+        if (element == null) {
+            element = XMLUtils.getOwnerDocument(root).getElementById(id);
+        }
+        return element;
+    }
+
+    /**
+     * Returns the <code>Signature</code> element of the indexed document.
+     *
+     * @return the signature node
+     * @throws RedactableXMLSignatureException if the document does not have a <code>Signature</code> element
+     */
+    public Node getSignatureNode() throws RedactableXMLSignatureException {
+        return XMLUtils.checkNode(signatureNode, "Signature");
+    }
+
+    /**
+     * Sets the <code>Signature</code> element after it was added to or removed from the indexed document.
+     *
+     * @param signatureNode the new signature node or null if the document does not have a signature node anymore
+     */
+    public void setSignatureNode(Node signatureNode) {
+        this.signatureNode = signatureNode;
+    }
+
+    /**
+     * Dereferences the given URI within the indexed document.
+     * <p>
+     * The dereferenced nodes are cached, so every URI is only resolved once.
+     *
+     * @param uri the URI to dereference
+     * @return the dereferenced node
+     * @throws RedactableXMLSignatureException if the given URI cannot be resolved or is not supported
+     * @see Dereferencer#dereference(String, DocumentIndex)
+     */
+    public Node dereference(String uri) throws RedactableXMLSignatureException {
+        Node node = dereferenced.get(uri);
+        if (node == null) {
+            node = Dereferencer.dereference(uri, this);
+            if (!Dereferencer.isSignatureInfoURI(uri)) {
+                dereferenced.put(uri, node);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Dereferences the given URI, which may select multiple elements, within the indexed document.
+     *
+     * @param uri the URI to dereference
+     * @return the dereferenced nodes
+     * @throws RedactableXMLSignatureException if the given URI cannot be resolved or is not supported
+     * @see Dereferencer#dereferenceAll(String, Node)
+     */
+    public List<Node> dereferenceAll(String uri) throws RedactableXMLSignatureException {
+        XPathPointer xPointer = Dereferencer.getXPathPointer(uri);
+        if (xPointer == null) {
+            return Collections.singletonList(dereference(uri));
+        }
+        return new ArrayList<Node>(xPointer.select(XMLUtils.getOwnerDocument(root)));
+    }
+
+    /**
+     * Returns the ID of the given element.
+     *
+     * @param element the element
+     * @return the value of the ID attribute of the given element or null if the element does not have an ID
+     */
+    public String getId(Element element) {
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            if (attribute.isId() && getElementById(attribute.getValue()) == element) {
+                return attribute.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml;
+
+import org.w3c.dom.Document;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A <code>ParsingProfile</code> describes how documents are loaded for signing, verification and redaction, i.e.
+ * whether they are validated against their DTD or against a schema.
+ * <p>
+ * Creating and configuring a <code>DocumentBuilder</code> is expensive compared to parsing a small document. Therefore,
+ * the document builders are pooled: every thread keeps one builder per DTD-validating, schema-validating (per schema)
+ * and non-validating configuration and resets it before it is reused. Schemas loaded via {@link #schema(URL)} are
+ * compiled only once. External DTD subsets are read only once per system ID and then served from memory; use
+ * {@link #clearCache()} if a DTD changes while the application is running.
+ * <p>
+ * Profiles are immutable and can be shared between threads.
+ *
+ * @author Wolfgang Popp
+ */
+public final class ParsingProfile {
+
+    private static final ParsingProfile DTD = new ParsingProfile(null, null);
+
+    /**
+     * The key of the pooled document builders that validate against the DTD of the document.
+     */
+    private static final Object DTD_KEY = new Object();
+
+    /**
+     * The key of the pooled document builders that do not validate.
+     */
+    private static final Object PLAIN_KEY = new Object();
+
+    private static final ConcurrentMap<String, Schema> schemas = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, byte[]> dtds = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<Map<Object, DocumentBuilder>> builders =
+            new ThreadLocal<Map<Object, DocumentBuilder>>() {
+                @Override
+                protected Map<Object, DocumentBuilder> initialValue() {
+                    return new WeakHashMap<>();
+                }
+            };
+
+    private static final EntityResolver DTD_CACHE = new EntityResolver() {
+        @Override
+        public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
+            if (systemId == null) {
+                return null;
+            }
+
+            byte[] dtd = dtds.get(systemId);
+            if (dtd == null) {
+                dtd = read(new URL(systemId).openStream());
+                dtds.putIfAbsent(systemId, dtd);
+            }
+
+            InputSource inputSource = new InputSource(new ByteArrayInputStream(dtd));
+            inputSource.setPublicId(publicId);
+            inputSource.setSystemId(systemId);
+            return inputSource;
+        }
+    };
+
+    private final Schema schema;
+    private final ErrorHandler errorHandler;
+
+    private ParsingProfile(Schema schema, ErrorHandler errorHandler) {
+        this.schema = schema;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Returns the profile that validates documents against the DTD they reference.
+     * <p>
+     * This is the profile used by {@link RedactableXMLSignature#setDocument(InputStream)}.
+     *
+     * @return the DTD-validating profile
+     */
+    public static ParsingProfile dtd() {
+        return DTD;
+    }
+
+    /**
+     * Returns a profile that validates documents against the given schema and uses the default error handler (as
+     * specified in {@link DocumentBuilder#setErrorHandler(ErrorHandler)}).
+     *
+     * @param schema the schema of the loaded documents
+     * @return the schema-validating profile
+     */
+    public static ParsingProfile schema(Schema schema) {
+        return schema(schema, null);
+    }
+
+    /**
+     * Returns a profile that validates documents against the given schema and uses the given error handler.
+     *
+     * @param schema       the schema of the loaded documents
+     * @param errorHandler the error handler or null if the default error handler is used
+     * @return the schema-validating profile
+     */
+    public static ParsingProfile schema(Schema schema, ErrorHandler errorHandler) {
+        if (schema == null) {
+            throw new NullPointerException("schema must not be null");
+        }
+        return new ParsingProfile(schema, errorHandler);
+    }
+
+    /**
+     * Returns a profile that validates documents against the W3C XML schema at the given location.
+     * <p>
+     * The schema is compiled on the first request and cached for all subsequent requests of the same location.
+     *
+     * @param schemaLocation the location of the schema
+     * @return the schema-validating profile
+     * @throws RedactableXMLSignatureException if the schema cannot be loaded
+     */
+    public static ParsingProfile schema(URL schemaLocation) throws RedactableXMLSignatureException {
+        String key = schemaLocation.toExternalForm();
+        Schema schema = schemas.get(key);
+        if (schema == null) {
+            try {
+                schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(schemaLocation);
+            } catch (SAXException e) {
+                throw new RedactableXMLSignatureException(e);
+            }
+            Schema cached = schemas.putIfAbsent(key, schema);
+            if (cached != null) {
+                schema = cached;
+            }
+        }
+        return schema(schema);
+    }
+
+    /**
+     * Discards all cached schemas and DTDs.
+     */
+    public static void clearCache() {
+        schemas.clear();
+        dtds.clear();
+    }
+
+    /**
+     * Loads a document from the given input stream as described by this profile.
+     *
+     * @param inputStream the input stream
+     * @return the loaded document
+     * @throws RedactableXMLSignatureException if the document cannot be loaded
+     */
+    public Document parse(InputStream inputStream) throws RedactableXMLSignatureException {
+        try {
+            DocumentBuilder documentBuilder = getDocumentBuilder(schema == null ? DTD_KEY : schema);
+            documentBuilder.setErrorHandler(errorHandler);
+            if (schema == null) {
+                documentBuilder.setEntityResolver(DTD_CACHE);
+            }
+            return documentBuilder.parse(inputStream);
+        } catch (SAXException | IOException e) {
+            throw new RedactableXMLSignatureException(e);
+        }
+    }
+
+    /**
+     * Creates a new, empty and namespace aware document.
+     *
+     * @return the new document
+     * @throws RedactableXMLSignatureException if the document cannot be created
+     */
+    static Document newDocument() throws RedactableXMLSignatureException {
+        return getDocumentBuilder(PLAIN_KEY).newDocument();
+    }
+
+    /**
+     * Returns the reset document builder of the current thread for the given key, which is either the schema used for
+     * validation or one of the keys {@link #DTD_KEY} and {@link #PLAIN_KEY}.
+     */
+    private static DocumentBuilder getDocumentBuilder(Object key) throws RedactableXMLSignatureException {
+        Map<Object, DocumentBuilder> threadBuilders = builders.get();
+        DocumentBuilder documentBuilder = threadBuilders.get(key);
+        if (documentBuilder != null) {
+            documentBuilder.reset();
+            return documentBuilder;
+        }
+
+        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+        if (key != PLAIN_KEY) {
+            documentBuilderFactory.setIgnoringElementContentWhitespace(true);
+        }
+        if (key == DTD_KEY) {
+            documentBuilderFactory.setValidating(true);
+        } else if (key instanceof Schema) {
+            documentBuilderFactory.setSchema((Schema) key);
+        }
+
+        try {
+            documentBuilder = documentBuilderFactory.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new RedactableXMLSignatureException(e);
+        }
+        threadBuilders.put(key, documentBuilder);
+        return documentBuilder;
+    }
+
+    private static byte[] read(InputStream inputStream) throws IOException {
+        try (InputStream in = inputStream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
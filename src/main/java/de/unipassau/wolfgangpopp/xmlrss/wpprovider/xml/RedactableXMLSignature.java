@@ -23,15 +23,13 @@ package de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.xml.sax.ErrorHandler;
-import org.xml.sax.SAXException;
 import sun.security.jca.GetInstance;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.validation.Schema;
-import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
@@ -302,17 +300,7 @@ public abstract class RedactableXMLSignature {
      * @throws RedactableXMLSignatureException if this RedactableXMLSignature object is not properly initialized
      */
     public final void setDocument(InputStream inputStream) throws RedactableXMLSignatureException {
-        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-        documentBuilderFactory.setNamespaceAware(true);
-        documentBuilderFactory.setValidating(true);
-        documentBuilderFactory.setIgnoringElementContentWhitespace(true);
-
-        try {
-            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            setDocument(documentBuilder.parse(inputStream));
-        } catch (ParserConfigurationException | SAXException | IOException e) {
-            throw new RedactableXMLSignatureException(e);
-        }
+        setDocument(inputStream, ParsingProfile.dtd());
     }
 
     /**
@@ -341,19 +329,24 @@ public abstract class RedactableXMLSignature {
      */
     public final void setDocument(InputStream inputStream, Schema schema, ErrorHandler handler)
             throws RedactableXMLSignatureException {
+        setDocument(inputStream, ParsingProfile.schema(schema, handler));
+    }
 
-        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-        documentBuilderFactory.setSchema(schema);
-        documentBuilderFactory.setNamespaceAware(true);
-        documentBuilderFactory.setIgnoringElementContentWhitespace(true);
-
-        try {
-            DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-            documentBuilder.setErrorHandler(handler);
-            setDocument(documentBuilder.parse(inputStream));
-        } catch (ParserConfigurationException | SAXException | IOException e) {
-            throw new RedactableXMLSignatureException(e);
-        }
+    /**
+     * Loads the document used for signing/verification/redaction from the given input stream as described by the
+     * given parsing profile.
+     * <p>
+     * Parsing profiles reuse their document builders and cached grammars, so this method should be preferred when
+     * many documents are loaded.
+     *
+     * @param inputStream the input stream
+     * @param profile     the parsing profile
+     * @throws RedactableXMLSignatureException if this RedactableXMLSignature object is not properly initialized or the
+     *                                         document cannot be loaded
+     */
+    public final void setDocument(InputStream inputStream, ParsingProfile profile)
+            throws RedactableXMLSignatureException {
+        setDocument(profile.parse(inputStream));
     }
 
     /**
@@ -372,6 +365,27 @@ public abstract class RedactableXMLSignature {
         }
     }
 
+    /**
+     * Selects the given uris from the document for signing.
+     * <p>
+     * This is equivalent to calling {@link #addSignSelector(String, boolean)} for every URI in the given order, but
+     * the selected elements are canonicalized in a single traversal of the document. This is considerably faster if
+     * many of the selected elements are nested.
+     *
+     * @param uris         the URIs of the selected elements
+     * @param isRedactable indicates whether the selected elements are redactable
+     * @throws RedactableXMLSignatureException if this RedactableXMLSignature is not initialized for signing or if one
+     *                                         of the given URIs cannot be added
+     */
+    public final void addSignSelectors(List<String> uris, boolean isRedactable)
+            throws RedactableXMLSignatureException {
+        if (state == STATE.SIGN) {
+            engine.engineAddSignSelectors(uris, isRedactable);
+        } else {
+            throw new RedactableXMLSignatureException("not for signing");
+        }
+    }
+
     /**
      * Selects the given uri from the document for redaction.
      * <p>
@@ -411,6 +425,33 @@ public abstract class RedactableXMLSignature {
         }
     }
 
+    /**
+     * Signs the selected elements of the document that is read from the given reader and writes the signed document to
+     * the given output stream.
+     * <p>
+     * In contrast to {@link #sign()}, no document is loaded before. The elements are selected via
+     * {@link #addSignSelector(String, boolean)} before calling this method and are canonicalized while the document
+     * is read, without building a DOM of the whole document. Currently only XPointer-ID-references and the root node
+     * can be selected. The written document contains the redactable signature XML element as the last child of the
+     * root node. The output stream is not closed.
+     * <p>
+     * A call of this method resets this object to the initial state, which is the state it was in after a call of
+     * {@link #initSign(KeyPair)}.
+     *
+     * @param reader the reader of the document to sign
+     * @param out    the output stream the signed document is written to
+     * @throws RedactableXMLSignatureException if this RedactableXMLSignature is not initialized for signing, does not
+     *                                         support streaming or the underlying algorithms cannot process the
+     *                                         requested elements
+     */
+    public final void sign(XMLStreamReader reader, OutputStream out) throws RedactableXMLSignatureException {
+        if (state == STATE.SIGN) {
+            engine.engineSign(reader, out);
+        } else {
+            throw new RedactableXMLSignatureException("not initialized for signing");
+        }
+    }
+
     /**
      * Verifies the signature of the previously loaded XML document.
      * <p>
@@ -431,6 +472,28 @@ public abstract class RedactableXMLSignature {
         throw new RedactableXMLSignatureException("not initialized for verification");
     }
 
+    /**
+     * Verifies the signature of the XML document that is read from the given reader.
+     * <p>
+     * In contrast to {@link #verify()}, no document is loaded before. The referenced elements are canonicalized while
+     * the document is read, without building a DOM of the whole document.
+     * <p>
+     * A call of this method resets this object to the initial state, which is the state it was in after a call of
+     * {@link #initVerify(PublicKey)}.
+     *
+     * @param reader the reader of the document to verify
+     * @return true, if the signature verified, false otherwise
+     * @throws RedactableXMLSignatureException if this RedactableXMLSignature is not initialized for verification, does
+     *                                         not support streaming or the document does not have a
+     *                                         <code>Signature</code> element
+     */
+    public final boolean verify(XMLStreamReader reader) throws RedactableXMLSignatureException {
+        if (state == STATE.VERIFY) {
+            return engine.engineVerify(reader);
+        }
+        throw new RedactableXMLSignatureException("not initialized for verification");
+    }
+
     /**
      * Redacts the selected elements that were added via a {@link #addRedactSelector(String)} method.
      * <p>
@@ -25,14 +25,16 @@ import de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml.binding.Signature;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml.binding.SignatureValue;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
+import javax.xml.stream.XMLStreamReader;
+import java.io.OutputStream;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 
@@ -64,17 +66,12 @@ public abstract class RedactableXMLSignatureSpi {
      * <code>child.equals(ancestor)</code>, false otherwise
      */
     protected boolean isDescendant(Node ancestor, Node child) {
-        if (ancestor.equals(child)) {
-            return true;
-        }
-
-        NodeList childNodes = ancestor.getChildNodes();
-        boolean isChild = false;
-
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            isChild = isChild || isDescendant(childNodes.item(i), child);
+        for (Node node = child; node != null; node = node.getParentNode()) {
+            if (ancestor.equals(node)) {
+                return true;
+            }
         }
-        return isChild;
+        return false;
     }
 
     /**
@@ -90,20 +87,52 @@ public abstract class RedactableXMLSignatureSpi {
         for (String uri : uris) {
             selectedNodes.add(Dereferencer.dereference(uri, root));
         }
+        removeNodes(selectedNodes);
+    }
+
+    /**
+     * Removes the nodes identified by the given uris from the indexed document.
+     *
+     * @param index the index of the document
+     * @param uris  the URIs of elements to remove
+     * @throws RedactableXMLSignatureException if the URIs cannot be dereferenced and removed
+     */
+    protected void removeNodes(DocumentIndex index, Set<String> uris) throws RedactableXMLSignatureException {
+        List<Node> selectedNodes = new ArrayList<>(uris.size());
 
-        selectedNodes.sort(new Comparator<Node>() {
-            @Override
-            public int compare(Node node1, Node node2) {
-                if (isDescendant(node1, node2)) {
-                    return 1;
-                }
-                return -1;
+        for (String uri : uris) {
+            selectedNodes.add(index.dereference(uri));
+        }
+        removeNodes(selectedNodes);
+    }
+
+    /**
+     * Removes the given nodes. Nodes that are descendants of other given nodes are removed along with their ancestor,
+     * so only the topmost selected nodes are detached from their parents.
+     */
+    private void removeNodes(List<Node> selectedNodes) {
+        Set<Node> selected = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        selected.addAll(selectedNodes);
+
+        List<Node> redactionRoots = new ArrayList<>(selected.size());
+        for (Node node : selected) {
+            if (!hasSelectedAncestor(node, selected)) {
+                redactionRoots.add(node);
             }
-        });
+        }
 
-        for (Node selectedNode : selectedNodes) {
-            selectedNode.getParentNode().removeChild(selectedNode);
+        for (Node node : redactionRoots) {
+            node.getParentNode().removeChild(node);
+        }
+    }
+
+    private static boolean hasSelectedAncestor(Node node, Set<Node> selected) {
+        for (Node ancestor = node.getParentNode(); ancestor != null; ancestor = ancestor.getParentNode()) {
+            if (selected.contains(ancestor)) {
+                return true;
+            }
         }
+        return false;
     }
 
     /**
@@ -154,6 +183,23 @@ public abstract class RedactableXMLSignatureSpi {
      */
     public abstract void engineAddSignSelector(String uri, boolean isRedactable) throws RedactableXMLSignatureException;
 
+    /**
+     * Adds multiple URIs for signing.
+     * <p>
+     * The URIs are added in the given order as if {@link #engineAddSignSelector(String, boolean)} was called for each
+     * of them. Implementations may override this method to dereference and canonicalize all URIs at once.
+     *
+     * @param uris         the URIs to add (and dereference)
+     * @param isRedactable indicates whether the added URIs are redactable
+     * @throws RedactableXMLSignatureException if one of the URIs is not well formed or cannot be dereferenced
+     */
+    public void engineAddSignSelectors(List<String> uris, boolean isRedactable)
+            throws RedactableXMLSignatureException {
+        for (String uri : uris) {
+            engineAddSignSelector(uri, isRedactable);
+        }
+    }
+
     /**
      * Adds an URI for redaction.
      *
@@ -181,6 +227,25 @@ public abstract class RedactableXMLSignatureSpi {
      */
     public abstract Document engineSign() throws RedactableXMLSignatureException;
 
+    /**
+     * Signs the selected elements of the document that is read from the given reader.
+     * <p>
+     * The document is written to the given output stream while it is read. The <code>Signature</code> element is
+     * written as the last child of the root element. The selected elements are canonicalized on the fly, so no DOM of
+     * the document is built.
+     * <p>
+     * This default implementation does not support streaming and always throws an exception.
+     *
+     * @param reader the reader of the document that is signed
+     * @param out    the output stream the signed document is written to
+     * @throws RedactableXMLSignatureException if streaming is not supported, the underlying redactable signature
+     *                                         scheme cannot process the given elements or if URIs cannot be
+     *                                         dereferenced
+     */
+    public void engineSign(XMLStreamReader reader, OutputStream out) throws RedactableXMLSignatureException {
+        throw new RedactableXMLSignatureException("streaming is not supported");
+    }
+
     /**
      * Verifies the previously added document.
      * <p>
@@ -194,6 +259,23 @@ public abstract class RedactableXMLSignatureSpi {
      */
     public abstract boolean engineVerify() throws RedactableXMLSignatureException;
 
+    /**
+     * Verifies the document that is read from the given reader.
+     * <p>
+     * The referenced elements are canonicalized on the fly, so no DOM of the document is built.
+     * <p>
+     * This default implementation does not support streaming and always throws an exception.
+     *
+     * @param reader the reader of the document that is verified
+     * @return true if the <code>Signature</code> element within the document is a valid signature for the document
+     * @throws RedactableXMLSignatureException if streaming is not supported, the document does not have a
+     *                                         <code>Signature</code> element or is missing some elements or if the
+     *                                         underlying scheme throws an exception
+     */
+    public boolean engineVerify(XMLStreamReader reader) throws RedactableXMLSignatureException {
+        throw new RedactableXMLSignatureException("streaming is not supported");
+    }
+
     /**
      * Redacts the selected elements from the previously added document root.
      * <p>
@@ -0,0 +1,612 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The <code>StreamCanonicalizer</code> reads an XML document from a {@link XMLStreamReader} and canonicalizes the
+ * selected elements on the fly, without building a DOM of the document.
+ * <p>
+ * Optionally, the document is written to an output stream as it is read. The written document is the canonical form
+ * of the read document, preceded by its document type declaration. Whitespace that is reported as ignorable by the
+ * reader is dropped. The canonical representations of the selected elements are identical to the results of
+ * {@link Canonicalizer#canonicalize(Node)} for the elements of the written document or, if the document is not
+ * written, for the elements of the read document. Both only differ in superfluous namespace declarations, which the
+ * canonical form of the whole document omits.
+ * <p>
+ * All selected elements that are open share the canonical form of their content, unless a namespace declaration is
+ * rendered differently in the canonical form of one of them, because they do not see the declarations of their
+ * ancestors. Such an element continues to capture its content in a buffer of its own.
+ * <p>
+ * Elements are selected by their ID. An attribute is an ID if the reader reports its type as <code>ID</code> (i.e. it
+ * is declared as ID in the DTD) or if it is a <code>xml:id</code> attribute. Namespace URIs must be absolute.
+ *
+ * @author Wolfgang Popp
+ */
+final class StreamCanonicalizer {
+
+    private static final String DEFAULT_PREFIX = "";
+    private static final int FLUSH_THRESHOLD = 8192;
+
+    private static final Comparator<Attribute> ATTRIBUTE_ORDER = new Comparator<Attribute>() {
+        @Override
+        public int compare(Attribute a1, Attribute a2) {
+            int result = a1.namespace.compareTo(a2.namespace);
+            return result != 0 ? result : a1.localName.compareTo(a2.localName);
+        }
+    };
+
+    private final XMLStreamReader reader;
+    private final OutputStream out;
+    private final Set<String> ids;
+    private final boolean captureRoot;
+    private final boolean readSignature;
+
+    private final CanonicalBuffer event = new CanonicalBuffer(256);
+    private final CanonicalBuffer output = new CanonicalBuffer(FLUSH_THRESHOLD * 2);
+    private final CanonicalBuffer captured = new CanonicalBuffer(1024);
+    private final List<Frame> frames = new ArrayList<>();
+    private final List<Frame> captures = new ArrayList<>();
+    private final Map<String, byte[]> elements = new HashMap<>();
+    private byte[] rootElement;
+    private Element root;
+    private boolean afterRoot;
+
+    /**
+     * Constructs a new StreamCanonicalizer.
+     *
+     * @param reader        the reader of the document
+     * @param out           the output stream the document is written to or null if the document is not written
+     * @param ids           the IDs of the selected elements or null if all elements with an ID are selected
+     * @param captureRoot   true if the root element is selected
+     * @param readSignature true if the <code>Signature</code> element is read into the DOM returned by
+     *                      {@link #getRoot()} instead of being canonicalized
+     */
+    StreamCanonicalizer(XMLStreamReader reader, OutputStream out, Set<String> ids, boolean captureRoot,
+                        boolean readSignature) {
+        this.reader = reader;
+        this.out = out;
+        this.ids = ids;
+        this.captureRoot = captureRoot;
+        this.readSignature = readSignature;
+    }
+
+    /**
+     * Reads the document up to the end tag of the root element. The end tag is not written until {@link #finish()} is
+     * called.
+     *
+     * @throws RedactableXMLSignatureException if the document cannot be read or contains unsupported constructs
+     */
+    void readRoot() throws RedactableXMLSignatureException {
+        try {
+            for (int type = reader.getEventType(); ; type = reader.next()) {
+                switch (type) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (readSignature && frames.size() == 1 && isSignature()) {
+                            readSignature();
+                        } else {
+                            startElement();
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (frames.size() == 1) {
+                            endElement(false);
+                            return;
+                        }
+                        endElement(true);
+                        break;
+                    case XMLStreamConstants.END_DOCUMENT:
+                        throw new RedactableXMLSignatureException("Cannot find the root element");
+                    default:
+                        readNode(type);
+                }
+            }
+        } catch (XMLStreamException | IOException e) {
+            throw new RedactableXMLSignatureException(e);
+        }
+    }
+
+    /**
+     * Writes the end tag of the root element and reads the remaining document.
+     *
+     * @throws RedactableXMLSignatureException if the document cannot be read or written
+     */
+    void finish() throws RedactableXMLSignatureException {
+        try {
+            event.write("</");
+            event.write(qualifiedName(reader.getPrefix(), reader.getLocalName()));
+            event.write(">");
+            emit();
+            afterRoot = true;
+
+            for (int type = reader.next(); type != XMLStreamConstants.END_DOCUMENT; type = reader.next()) {
+                readNode(type);
+            }
+            flush();
+        } catch (XMLStreamException | IOException e) {
+            throw new RedactableXMLSignatureException(e);
+        }
+    }
+
+    /**
+     * Writes the given node to the output stream at the current position.
+     *
+     * @param node the node to write
+     * @throws RedactableXMLSignatureException if the node cannot be written
+     */
+    void write(Node node) throws RedactableXMLSignatureException {
+        try {
+            flush();
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            transformer.transform(new DOMSource(node), new StreamResult(out));
+        } catch (IOException | TransformerException e) {
+            throw new RedactableXMLSignatureException(e);
+        }
+    }
+
+    /**
+     * Returns the canonical representation of the selected element with the given ID.
+     *
+     * @param id the ID of the element
+     * @return the canonical representation of the element or null if no such element was selected
+     */
+    byte[] getElement(String id) {
+        return elements.get(id);
+    }
+
+    /**
+     * Returns the canonical representation of the root element.
+     *
+     * @return the canonical representation of the root element or null if the root element was not selected
+     */
+    byte[] getRootElement() {
+        return rootElement;
+    }
+
+    /**
+     * Returns a copy of the root element without children in a new document. If the <code>Signature</code> element is
+     * read, it is the only child of the returned root element.
+     *
+     * @return the copy of the root element
+     */
+    Element getRoot() {
+        return root;
+    }
+
+    private void readNode(int type) throws XMLStreamException, IOException, RedactableXMLSignatureException {
+        switch (type) {
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+                if (!frames.isEmpty()) {
+                    event.writeEscaped(reader.getText(), false);
+                    emit();
+                }
+                break;
+            case XMLStreamConstants.COMMENT:
+                writeOutsideRoot(frames.isEmpty());
+                event.write("<!--");
+                event.writeData(reader.getText());
+                event.write("-->");
+                writeOutsideRoot(frames.isEmpty());
+                emit();
+                break;
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                writeOutsideRoot(frames.isEmpty());
+                event.write("<?");
+                event.writeData(reader.getPITarget());
+                if (reader.getPIData() != null && !reader.getPIData().isEmpty()) {
+                    event.write(" ");
+                    event.writeData(reader.getPIData());
+                }
+                event.write("?>");
+                writeOutsideRoot(frames.isEmpty());
+                emit();
+                break;
+            case XMLStreamConstants.DTD:
+                event.write(reader.getText());
+                event.write("\n");
+                emit();
+                break;
+            case XMLStreamConstants.ENTITY_REFERENCE:
+                throw new RedactableXMLSignatureException("Unresolved entity reference " + reader.getLocalName());
+            default:
+                // ignorable whitespace and events of the document itself are not part of the canonical form
+        }
+    }
+
+    /**
+     * Comments and processing instructions outside the root element are separated by a line break from the root
+     * element.
+     */
+    private void writeOutsideRoot(boolean isOutsideRoot) {
+        if (isOutsideRoot && (afterRoot == (event.length() == 0))) {
+            event.write("\n");
+        }
+    }
+
+    private void startElement() throws RedactableXMLSignatureException, IOException {
+        Frame parent = frames.isEmpty() ? null : frames.get(frames.size() - 1);
+        Map<String, String> inScope = parent == null ? Collections.<String, String>emptyMap() : parent.namespaces;
+        Map<String, Integer> declaredAt = parent == null ? Collections.<String, Integer>emptyMap() : parent.depths;
+        int depth = frames.size();
+
+        Map<String, String> namespaces = inScope;
+        SortedMap<String, String> rendered = new TreeMap<>();
+        SortedMap<String, String> declared = new TreeMap<>();
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = nonNull(reader.getNamespacePrefix(i));
+            String uri = nonNull(reader.getNamespaceURI(i));
+            if (prefix.equals(XMLConstants.XML_NS_PREFIX)) {
+                continue;
+            }
+            checkNamespaceURI(uri);
+            if (isRendered(prefix, uri, inScope.get(prefix))) {
+                rendered.put(prefix, uri);
+            }
+            declared.put(prefix, uri);
+            if (namespaces == inScope) {
+                namespaces = new HashMap<>(inScope);
+            }
+            namespaces.put(prefix, uri);
+        }
+
+        // the written document only contains the rendered namespace declarations
+        if (out != null) {
+            declared = rendered;
+        }
+        Map<String, Integer> depths = declaredAt;
+        if (!declared.isEmpty()) {
+            depths = new HashMap<>(declaredAt);
+            for (String prefix : declared.keySet()) {
+                depths.put(prefix, depth);
+            }
+        }
+
+        String id = null;
+        List<Attribute> attributes = new ArrayList<>(reader.getAttributeCount());
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            Attribute attribute = new Attribute(nonNull(reader.getAttributeNamespace(i)),
+                    nonNull(reader.getAttributePrefix(i)), reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+            boolean isXmlAttribute = attribute.namespace.equals(XMLConstants.XML_NS_URI);
+            if ("ID".equals(reader.getAttributeType(i)) || (isXmlAttribute && attribute.localName.equals("id"))) {
+                id = attribute.value;
+            }
+            attributes.add(attribute);
+        }
+        Collections.sort(attributes, ATTRIBUTE_ORDER);
+
+        String name = qualifiedName(reader.getPrefix(), reader.getLocalName());
+        writeStartTag(event, name, rendered, attributes);
+        for (Frame capture : captures) {
+            SortedMap<String, String> renderedInCapture = renderedNamespaces(declared, inScope, declaredAt,
+                    capture.depth);
+            if (capture.content == null && !renderedInCapture.equals(rendered)) {
+                capture.content = new CanonicalBuffer(Math.max(256, captured.length() - capture.contentStart));
+                capture.content.append(captured, capture.contentStart);
+            }
+            if (capture.content != null) {
+                writeStartTag(capture.content, name, renderedInCapture, attributes);
+            }
+        }
+        emit(false);
+
+        Frame frame = new Frame(name, namespaces, depths, depth);
+        boolean isSelected = id != null && (ids == null || ids.contains(id));
+        if (isSelected || (parent == null && captureRoot)) {
+            writeStartTag(event, name, renderedNamespaces(declared, inScope, declaredAt, depth), attributes);
+            frame.startTag = event.toByteArray(0, event.length());
+            event.truncate(0);
+
+            frame.id = isSelected ? id : null;
+            frame.isCaptured = true;
+            frame.contentStart = captured.length();
+            captures.add(frame);
+        }
+
+        if (parent == null) {
+            root = createRoot(attributes);
+        }
+        frames.add(frame);
+    }
+
+    /**
+     * Returns the given namespace declarations of an element that are rendered within the canonical form of its
+     * ancestor at the given depth, which only sees the declarations of itself and its descendants.
+     */
+    private static SortedMap<String, String> renderedNamespaces(SortedMap<String, String> declared,
+                                                                Map<String, String> inScope,
+                                                                Map<String, Integer> declaredAt, int depth) {
+        SortedMap<String, String> rendered = new TreeMap<>();
+        for (Map.Entry<String, String> namespace : declared.entrySet()) {
+            String prefix = namespace.getKey();
+            Integer declaredDepth = declaredAt.get(prefix);
+            String visible = declaredDepth != null && declaredDepth >= depth ? inScope.get(prefix) : null;
+            if (isRendered(prefix, namespace.getValue(), visible)) {
+                rendered.put(prefix, namespace.getValue());
+            }
+        }
+        return rendered;
+    }
+
+    private void endElement(boolean write) throws IOException {
+        Frame frame = frames.remove(frames.size() - 1);
+        event.write("</");
+        event.write(frame.name);
+        event.write(">");
+        if (write) {
+            emit();
+        } else {
+            capture();
+            event.truncate(0);
+        }
+
+        if (frame.isCaptured) {
+            byte[] element = frame.content == null
+                    ? captured.toByteArray(frame.startTag, frame.contentStart, captured.length())
+                    : frame.content.toByteArray(frame.startTag, 0, frame.content.length());
+            if (frame.id != null && !elements.containsKey(frame.id)) {
+                elements.put(frame.id, element);
+            }
+            if (frames.isEmpty() && captureRoot) {
+                rootElement = element;
+            }
+            captures.remove(captures.size() - 1);
+            if (captures.isEmpty()) {
+                captured.truncate(0);
+            }
+        }
+    }
+
+    private static void writeStartTag(CanonicalBuffer buffer, String name, SortedMap<String, String> namespaces,
+                                      List<Attribute> attributes) {
+        buffer.write("<");
+        buffer.write(name);
+        for (Map.Entry<String, String> namespace : namespaces.entrySet()) {
+            buffer.write(namespace.getKey().equals(DEFAULT_PREFIX) ? " xmlns" : " xmlns:" + namespace.getKey());
+            buffer.write("=\"");
+            buffer.writeEscaped(namespace.getValue(), true);
+            buffer.write("\"");
+        }
+        for (Attribute attribute : attributes) {
+            buffer.write(" ");
+            buffer.write(qualifiedName(attribute.prefix, attribute.localName));
+            buffer.write("=\"");
+            buffer.writeEscaped(attribute.value, true);
+            buffer.write("\"");
+        }
+        buffer.write(">");
+    }
+
+    /**
+     * Writes the current event to the output and to the open captures.
+     */
+    private void emit() throws IOException {
+        emit(true);
+    }
+
+    /**
+     * Writes the current event to the output and to the shared buffer of the open captures. Captures with a buffer of
+     * their own only get the event if the given flag is set.
+     */
+    private void emit(boolean toOwnBuffers) throws IOException {
+        if (out != null) {
+            output.append(event);
+            if (output.length() > FLUSH_THRESHOLD) {
+                flush();
+            }
+        }
+        if (toOwnBuffers) {
+            capture();
+        } else if (!captures.isEmpty()) {
+            captured.append(event);
+        }
+        event.truncate(0);
+    }
+
+    private void capture() {
+        if (captures.isEmpty()) {
+            return;
+        }
+        captured.append(event);
+        for (Frame capture : captures) {
+            if (capture.content != null) {
+                capture.content.append(event);
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        if (out != null) {
+            output.writeTo(out);
+            out.flush();
+        }
+        output.truncate(0);
+    }
+
+    private boolean isSignature() {
+        return RedactableXMLSignature.XML_NAMESPACE.equals(reader.getNamespaceURI())
+                && "Signature".equals(reader.getLocalName());
+    }
+
+    /**
+     * Reads the <code>Signature</code> element into the DOM of the root element.
+     */
+    private void readSignature() throws XMLStreamException {
+        Document document = root.getOwnerDocument();
+        Node parent = root;
+        int depth = 0;
+
+        for (int type = reader.getEventType(); ; type = reader.next()) {
+            switch (type) {
+                case XMLStreamConstants.START_ELEMENT:
+                    Element element = document.createElementNS(emptyToNull(reader.getNamespaceURI()),
+                            qualifiedName(reader.getPrefix(), reader.getLocalName()));
+                    declareNamespaces(element);
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        element.setAttributeNS(emptyToNull(reader.getAttributeNamespace(i)),
+                                qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                                reader.getAttributeValue(i));
+                    }
+                    parent = parent.appendChild(element);
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    parent = parent.getParentNode();
+                    if (--depth == 0) {
+                        return;
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    parent.appendChild(document.createTextNode(reader.getText()));
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    parent.appendChild(document.createComment(reader.getText()));
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    parent.appendChild(document.createProcessingInstruction(reader.getPITarget(),
+                            reader.getPIData()));
+                    break;
+                default:
+                    // ignorable whitespace
+            }
+        }
+    }
+
+    private Element createRoot(List<Attribute> attributes) throws RedactableXMLSignatureException {
+        Document document = ParsingProfile.newDocument();
+        Element element = document.createElementNS(emptyToNull(reader.getNamespaceURI()),
+                qualifiedName(reader.getPrefix(), reader.getLocalName()));
+        declareNamespaces(element);
+        for (Attribute attribute : attributes) {
+            element.setAttributeNS(emptyToNull(attribute.namespace),
+                    qualifiedName(attribute.prefix, attribute.localName), attribute.value);
+        }
+        document.appendChild(element);
+        return element;
+    }
+
+    private void declareNamespaces(Element element) {
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = nonNull(reader.getNamespacePrefix(i));
+            element.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI,
+                    prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix,
+                    nonNull(reader.getNamespaceURI(i)));
+        }
+    }
+
+    private static boolean isRendered(String prefix, String uri, String inScope) {
+        if (inScope == null) {
+            return !(prefix.equals(DEFAULT_PREFIX) && uri.isEmpty());
+        }
+        return !uri.equals(inScope);
+    }
+
+    private static void checkNamespaceURI(String uri) throws RedactableXMLSignatureException {
+        if (uri.isEmpty()) {
+            return;
+        }
+        try {
+            if (new URI(uri).isAbsolute()) {
+                return;
+            }
+        } catch (URISyntaxException e) {
+            throw new RedactableXMLSignatureException("Invalid namespace URI " + uri, e);
+        }
+        throw new RedactableXMLSignatureException("Relative namespace URI " + uri + " is not supported");
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    private static String nonNull(String s) {
+        return s == null ? "" : s;
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+
+    private static final class Attribute {
+        private final String namespace;
+        private final String prefix;
+        private final String localName;
+        private final String value;
+
+        private Attribute(String namespace, String prefix, String localName, String value) {
+            this.namespace = namespace;
+            this.prefix = prefix;
+            this.localName = localName;
+            this.value = value;
+        }
+    }
+
+    /**
+     * An open element and the state of its capture, if it is selected.
+     */
+    private static final class Frame {
+        private final String name;
+        private final Map<String, String> namespaces;
+        private final Map<String, Integer> depths;
+        private final int depth;
+        private boolean isCaptured;
+        private String id;
+        private byte[] startTag;
+        private int contentStart;
+        private CanonicalBuffer content;
+
+        private Frame(String name, Map<String, String> namespaces, Map<String, Integer> depths, int depth) {
+            this.name = name;
+            this.namespaces = namespaces;
+            this.depths = depths;
+            this.depth = depth;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml;
+
+import org.apache.xml.security.c14n.CanonicalizationException;
+import org.w3c.dom.Attr;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The <code>SubtreeCanonicalizer</code> canonicalizes many subtrees of the same document at once. The results are
+ * identical to the results of {@link Canonicalizer#canonicalize(Node)}.
+ * <p>
+ * The canonical form of a subtree does not depend on the ancestors of its apex element, i.e. neither their namespace
+ * declarations nor their attributes from the xml namespace are taken into account. Hence, the canonical form of a
+ * nested subtree usually only differs from its serialization within the canonical form of an enclosing subtree in the
+ * start tag of its apex element. Therefore, every outermost selected subtree is serialized exactly once into a shared
+ * buffer and the canonical form of every nested subtree is assembled from its own start tag and the shared bytes of
+ * its content and end tag.
+ * <p>
+ * Nested subtrees whose content is rendered differently on its own (because a descendant redeclares a namespace that
+ * is declared between the enclosing apex and the nested apex) and subtrees that cannot be serialized at all (e.g.
+ * because they contain entity references or relative namespace URIs) are canonicalized with
+ * {@link Canonicalizer#canonicalize(Node)} instead.
+ *
+ * @author Wolfgang Popp
+ */
+final class SubtreeCanonicalizer {
+
+    private static final String XMLNS_NS = "http://www.w3.org/2000/xmlns/";
+    private static final String XML_PREFIX = "xml";
+    private static final String DEFAULT_PREFIX = "";
+
+    private static final Comparator<Attr> ATTRIBUTE_ORDER = new Comparator<Attr>() {
+        @Override
+        public int compare(Attr a1, Attr a2) {
+            int result = namespaceOf(a1).compareTo(namespaceOf(a2));
+            return result != 0 ? result : a1.getLocalName().compareTo(a2.getLocalName());
+        }
+
+        private String namespaceOf(Attr attr) {
+            return attr.getNamespaceURI() == null ? "" : attr.getNamespaceURI();
+        }
+    };
+
+    private final Map<Node, Integer> selected = new IdentityHashMap<>();
+    private final byte[][] startTags;
+    private final int[] depths;
+    private final int[] contentStart;
+    private final int[] contentEnd;
+    private final CanonicalBuffer buffer = new CanonicalBuffer(1024);
+
+    private SubtreeCanonicalizer(int size) {
+        startTags = new byte[size][];
+        depths = new int[size];
+        contentStart = new int[size];
+        contentEnd = new int[size];
+    }
+
+    /**
+     * Canonicalizes the subtrees starting at the given nodes.
+     *
+     * @param nodes the nodes to canonicalize
+     * @return the canonical representations of the given nodes and all their children in the order of the given nodes
+     * @throws CanonicalizationException if one of the given nodes cannot be processed
+     */
+    static List<byte[]> canonicalize(List<? extends Node> nodes) throws CanonicalizationException {
+        SubtreeCanonicalizer canonicalizer = new SubtreeCanonicalizer(nodes.size());
+        for (Node node : nodes) {
+            if (node instanceof Element && !canonicalizer.selected.containsKey(node)) {
+                canonicalizer.selected.put(node, canonicalizer.selected.size());
+            }
+        }
+
+        List<Element> outermost = new ArrayList<>();
+        for (Node node : canonicalizer.selected.keySet()) {
+            if (!canonicalizer.hasSelectedAncestor(node)) {
+                outermost.add((Element) node);
+            }
+        }
+        for (Element apex : outermost) {
+            canonicalizer.serialize(apex);
+        }
+
+        List<byte[]> canonicalized = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            Integer index = canonicalizer.selected.get(node);
+            if (index == null || canonicalizer.startTags[index] == null) {
+                canonicalized.add(Canonicalizer.canonicalize(node));
+            } else {
+                canonicalized.add(canonicalizer.assemble(index));
+            }
+        }
+        return canonicalized;
+    }
+
+    private boolean hasSelectedAncestor(Node node) {
+        for (Node parent = node.getParentNode(); parent != null; parent = parent.getParentNode()) {
+            if (selected.containsKey(parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] assemble(int index) {
+        return buffer.toByteArray(startTags[index], contentStart[index], contentEnd[index]);
+    }
+
+    /**
+     * Serializes the subtree of the given outermost selected element. If the subtree cannot be serialized, all selected
+     * elements within the subtree are canonicalized separately.
+     */
+    private void serialize(Element apex) {
+        int mark = buffer.length();
+        List<Integer> visited = new ArrayList<>();
+        try {
+            serialize(apex, visited);
+        } catch (UnsupportedNodeException e) {
+            buffer.truncate(mark);
+            for (int index : visited) {
+                startTags[index] = null;
+            }
+        }
+    }
+
+    private void serialize(Element apex, List<Integer> visited) throws UnsupportedNodeException {
+        List<Scope> scopes = new ArrayList<>();
+        scopes.add(Scope.EMPTY);
+        List<Integer> open = new ArrayList<>();
+        Node node = apex;
+
+        while (node != null) {
+            boolean descend = false;
+
+            switch (node.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    Element element = (Element) node;
+                    int depth = scopes.size() - 1;
+                    Scope parent = scopes.get(depth);
+                    checkRedeclarations(element, parent, open);
+                    Integer index = selected.get(element);
+                    if (index != null) {
+                        visited.add(index);
+                        open.add(index);
+                        startTags[index] = startTag(element);
+                        depths[index] = depth;
+                    }
+                    writeStartTag(element, renderedNamespaces(element, parent.namespaces));
+                    if (index != null) {
+                        contentStart[index] = buffer.length();
+                    }
+                    if (element.hasChildNodes()) {
+                        scopes.add(parent.declare(element, depth));
+                        descend = true;
+                    } else {
+                        writeEndTag(element, open);
+                    }
+                    break;
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE:
+                    buffer.writeEscaped(((CharacterData) node).getData(), false);
+                    break;
+                case Node.COMMENT_NODE:
+                    buffer.write("<!--");
+                    buffer.writeData(((CharacterData) node).getData());
+                    buffer.write("-->");
+                    break;
+                case Node.PROCESSING_INSTRUCTION_NODE:
+                    ProcessingInstruction pi = (ProcessingInstruction) node;
+                    buffer.write("<?");
+                    buffer.writeData(pi.getTarget());
+                    if (pi.getData() != null && !pi.getData().isEmpty()) {
+                        buffer.write(" ");
+                        buffer.writeData(pi.getData());
+                    }
+                    buffer.write("?>");
+                    break;
+                default:
+                    throw new UnsupportedNodeException();
+            }
+
+            if (descend) {
+                node = node.getFirstChild();
+                continue;
+            }
+
+            while (node != apex && node.getNextSibling() == null) {
+                node = node.getParentNode();
+                scopes.remove(scopes.size() - 1);
+                writeEndTag((Element) node, open);
+            }
+            node = node == apex ? null : node.getNextSibling();
+        }
+    }
+
+    /**
+     * Checks for every open selected element whether the namespace declarations of the given descendant are rendered
+     * the same way within the canonical form of the selected element, where only the namespace declarations of the
+     * selected element and its descendants are in scope. If not, the selected element is canonicalized separately.
+     */
+    private void checkRedeclarations(Element element, Scope parent, List<Integer> open) {
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attr = (Attr) attributes.item(i);
+            if (!isNamespaceDeclaration(attr)) {
+                continue;
+            }
+
+            String prefix = prefixOf(attr);
+            Integer declaredAt = parent.depths.get(prefix);
+            boolean rendered = isRendered(prefix, attr.getValue(), parent.namespaces);
+            boolean renderedOnItsOwn = isRendered(prefix, attr.getValue(), Collections.<String, String>emptyMap());
+            if (declaredAt == null || rendered == renderedOnItsOwn) {
+                continue;
+            }
+            for (int index : open) {
+                if (declaredAt < depths[index]) {
+                    startTags[index] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the namespace declarations of the given element that differ from the declarations in scope of its
+     * parent, sorted by prefix.
+     */
+    private static SortedMap<String, String> renderedNamespaces(Element element, Map<String, String> namespaces) {
+        SortedMap<String, String> rendered = new TreeMap<>();
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attr = (Attr) attributes.item(i);
+            if (isNamespaceDeclaration(attr) && isRendered(prefixOf(attr), attr.getValue(), namespaces)) {
+                rendered.put(prefixOf(attr), attr.getValue());
+            }
+        }
+        return rendered;
+    }
+
+    private static boolean isRendered(String prefix, String uri, Map<String, String> namespaces) {
+        String inScope = namespaces.get(prefix);
+        if (inScope == null) {
+            return !(prefix.equals(DEFAULT_PREFIX) && uri.isEmpty());
+        }
+        return !uri.equals(inScope);
+    }
+
+    private static boolean isNamespaceDeclaration(Attr attr) {
+        return XMLNS_NS.equals(attr.getNamespaceURI()) && !prefixOf(attr).equals(XML_PREFIX);
+    }
+
+    private static String prefixOf(Attr namespaceDeclaration) {
+        return "xmlns".equals(namespaceDeclaration.getNodeName()) ? DEFAULT_PREFIX : namespaceDeclaration.getLocalName();
+    }
+
+    /**
+     * Returns the start tag of the given element as it is rendered as apex of its own canonical form.
+     */
+    private byte[] startTag(Element element) throws UnsupportedNodeException {
+        int mark = buffer.length();
+        writeStartTag(element, renderedNamespaces(element, Collections.<String, String>emptyMap()));
+        byte[] startTag = buffer.toByteArray(mark, buffer.length());
+        buffer.truncate(mark);
+        return startTag;
+    }
+
+    /**
+     * Writes the start tag of the given element with the given namespace declarations.
+     */
+    private void writeStartTag(Element element, SortedMap<String, String> namespaces) throws UnsupportedNodeException {
+        NamedNodeMap attributes = element.getAttributes();
+        List<Attr> sorted = new ArrayList<>(attributes.getLength());
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attr = (Attr) attributes.item(i);
+            if (attr.getLocalName() == null) {
+                throw new UnsupportedNodeException();
+            } else if (!XMLNS_NS.equals(attr.getNamespaceURI())) {
+                sorted.add(attr);
+            }
+        }
+        Collections.sort(sorted, ATTRIBUTE_ORDER);
+
+        buffer.write("<");
+        buffer.write(element.getTagName());
+        for (Map.Entry<String, String> namespace : namespaces.entrySet()) {
+            checkNamespaceURI(namespace.getValue());
+            buffer.write(namespace.getKey().equals(DEFAULT_PREFIX) ? " xmlns" : " xmlns:" + namespace.getKey());
+            buffer.write("=\"");
+            buffer.writeEscaped(namespace.getValue(), true);
+            buffer.write("\"");
+        }
+        for (Attr attr : sorted) {
+            buffer.write(" ");
+            buffer.write(attr.getName());
+            buffer.write("=\"");
+            buffer.writeEscaped(attr.getValue(), true);
+            buffer.write("\"");
+        }
+        buffer.write(">");
+    }
+
+    private static void checkNamespaceURI(String uri) throws UnsupportedNodeException {
+        if (uri.isEmpty()) {
+            return;
+        }
+        try {
+            if (!new URI(uri).isAbsolute()) {
+                throw new UnsupportedNodeException();
+            }
+        } catch (URISyntaxException e) {
+            throw new UnsupportedNodeException();
+        }
+    }
+
+    private void writeEndTag(Element element, List<Integer> open) {
+        buffer.write("</");
+        buffer.write(element.getTagName());
+        buffer.write(">");
+        Integer index = selected.get(element);
+        if (index != null) {
+            contentEnd[index] = buffer.length();
+            open.remove(open.size() - 1);
+        }
+    }
+
+    /**
+     * The namespace declarations in scope of an element together with the depth (relative to the outermost selected
+     * element) of the element that declares them.
+     */
+    private static final class Scope {
+        private static final Scope EMPTY = new Scope(Collections.<String, String>emptyMap(),
+                Collections.<String, Integer>emptyMap());
+
+        private final Map<String, String> namespaces;
+        private final Map<String, Integer> depths;
+
+        private Scope(Map<String, String> namespaces, Map<String, Integer> depths) {
+            this.namespaces = namespaces;
+            this.depths = depths;
+        }
+
+        /**
+         * Returns the scope of the children of the given element, which is located at the given depth.
+         */
+        private Scope declare(Element element, int depth) {
+            Map<String, String> declared = null;
+            Map<String, Integer> declaredAt = null;
+            NamedNodeMap attributes = element.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Attr attr = (Attr) attributes.item(i);
+                if (isNamespaceDeclaration(attr)) {
+                    if (declared == null) {
+                        declared = new HashMap<>(namespaces);
+                        declaredAt = new HashMap<>(depths);
+                    }
+                    declared.put(prefixOf(attr), attr.getValue());
+                    declaredAt.put(prefixOf(attr), depth);
+                }
+            }
+            return declared == null ? this : new Scope(declared, declaredAt);
+        }
+    }
+
+    private static final class UnsupportedNodeException extends Exception {
+        private UnsupportedNodeException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The <code>XPathPointer</code> is a compiled XPointer whose <code>xpointer()</code> scheme contains an XPath
+ * expression, e.g. <code>#xpointer(/Vehicle/MotorVehicles/Car[2])</code>. Namespace prefixes used in the expression
+ * are declared with preceding <code>xmlns()</code> parts, e.g. <code>#xmlns(p=http://example.org)xpointer(/p:a)</code>.
+ * Parentheses and circumflexes in the scheme data are escaped with a circumflex as specified by the XPointer
+ * framework.
+ * <p>
+ * Compiled expressions are not thread-safe, so every thread caches the most recently used XPointers by their URI.
+ *
+ * @author Wolfgang Popp
+ */
+final class XPathPointer {
+
+    private static final int CACHE_SIZE = 256;
+    private static final String XPOINTER_SCHEME = "xpointer";
+    private static final String XMLNS_SCHEME = "xmlns";
+
+    private static final ThreadLocal<Map<String, XPathPointer>> cache = new ThreadLocal<Map<String, XPathPointer>>() {
+        @Override
+        protected Map<String, XPathPointer> initialValue() {
+            return new LinkedHashMap<String, XPathPointer>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, XPathPointer> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+        }
+    };
+
+    private final String uri;
+    private final XPathExpression expression;
+
+    private XPathPointer(String uri, XPathExpression expression) {
+        this.uri = uri;
+        this.expression = expression;
+    }
+
+    /**
+     * Returns the compiled XPointer of the given URI.
+     *
+     * @param uri the URI
+     * @return the compiled XPointer or null if the given URI is not an XPointer with an XPath expression
+     * @throws RedactableXMLSignatureException if the XPath expression of the given URI cannot be compiled
+     */
+    static XPathPointer get(String uri) throws RedactableXMLSignatureException {
+        if (uri == null || !uri.startsWith("#")) {
+            return null;
+        }
+
+        Map<String, XPathPointer> pointers = cache.get();
+        XPathPointer pointer = pointers.get(uri);
+        if (pointer == null) {
+            pointer = compile(uri);
+            if (pointer != null) {
+                pointers.put(uri, pointer);
+            }
+        }
+        return pointer;
+    }
+
+    private static XPathPointer compile(String uri) throws RedactableXMLSignatureException {
+        final Map<String, String> namespaces = new HashMap<>();
+        int position = 1;
+
+        while (position < uri.length()) {
+            int open = uri.indexOf('(', position);
+            if (open < 0) {
+                return null;
+            }
+            String scheme = uri.substring(position, open).trim();
+
+            StringBuilder data = new StringBuilder();
+            int close = readSchemeData(uri, open + 1, data);
+            if (close < 0) {
+                return null;
+            }
+
+            if (scheme.equals(XMLNS_SCHEME)) {
+                int separator = data.indexOf("=");
+                if (separator < 0) {
+                    return null;
+                }
+                namespaces.put(data.substring(0, separator).trim(), data.substring(separator + 1).trim());
+            } else if (scheme.equals(XPOINTER_SCHEME) && close == uri.length() - 1) {
+                XPath xPath = XPathFactory.newInstance().newXPath();
+                xPath.setNamespaceContext(new NamespaceContext() {
+                    @Override
+                    public String getNamespaceURI(String prefix) {
+                        String namespace = namespaces.get(prefix);
+                        if (namespace != null) {
+                            return namespace;
+                        }
+                        return prefix.equals(XMLConstants.XML_NS_PREFIX) ? XMLConstants.XML_NS_URI
+                                : XMLConstants.NULL_NS_URI;
+                    }
+
+                    @Override
+                    public String getPrefix(String namespaceURI) {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public Iterator<String> getPrefixes(String namespaceURI) {
+                        throw new UnsupportedOperationException();
+                    }
+                });
+
+                try {
+                    return new XPathPointer(uri, xPath.compile(data.toString()));
+                } catch (XPathExpressionException e) {
+                    throw new RedactableXMLSignatureException("Invalid XPath expression in URI " + uri, e);
+                }
+            } else {
+                return null;
+            }
+            position = close + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the unescaped scheme data starting at the given position and returns the position of the closing
+     * parenthesis or -1 if the parentheses are unbalanced.
+     */
+    private static int readSchemeData(String uri, int position, StringBuilder data) {
+        int depth = 0;
+        for (int i = position; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (c == '^') {
+                if (++i < uri.length()) {
+                    data.append(uri.charAt(i));
+                }
+                continue;
+            }
+            if (c == ')' && depth-- == 0) {
+                return i;
+            }
+            if (c == '(') {
+                depth++;
+            }
+            data.append(c);
+        }
+        return -1;
+    }
+
+    /**
+     * Selects the elements of the given document.
+     *
+     * @param document the document
+     * @return the selected elements in document order
+     * @throws RedactableXMLSignatureException if the expression cannot be evaluated or selects other nodes than
+     *                                         elements
+     */
+    List<Element> select(Document document) throws RedactableXMLSignatureException {
+        NodeList nodes;
+        try {
+            nodes = (NodeList) expression.evaluate(document, XPathConstants.NODESET);
+        } catch (XPathExpressionException e) {
+            throw new RedactableXMLSignatureException("Cannot evaluate URI " + uri, e);
+        }
+
+        if (nodes.getLength() == 0) {
+            return Collections.emptyList();
+        }
+        List<Element> elements = new ArrayList<>(nodes.getLength());
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node.getNodeType() != Node.ELEMENT_NODE) {
+                throw new RedactableXMLSignatureException("URI " + uri + " selects nodes other than elements");
+            }
+            elements.add((Element) node);
+        }
+        return elements;
+    }
+}
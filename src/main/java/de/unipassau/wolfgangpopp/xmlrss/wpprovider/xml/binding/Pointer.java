@@ -23,6 +23,7 @@ package de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml.binding;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ByteArray;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml.Canonicalizer;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml.Dereferencer;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml.DocumentIndex;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml.RedactableXMLSignatureException;
 import org.apache.xml.security.c14n.CanonicalizationException;
 import org.w3c.dom.Document;
@@ -30,6 +31,9 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.XMLUtils.getOwnerDocument;
 
 /**
@@ -96,16 +100,6 @@ public final class Pointer extends BindingElement<Pointer> {
         this.id = id;
     }
 
-    private Pointer initConcatDereference(Node root) throws RedactableXMLSignatureException {
-        if (concatDereference != null) {
-            return this;
-        }
-
-        Node dereference = Dereferencer.dereference(uri, root);
-        this.concatDereference = concatNode(dereference);
-        return this;
-    }
-
     /**
      * Concatenates this pointer with the given node.
      * <p>
@@ -122,15 +116,94 @@ public final class Pointer extends BindingElement<Pointer> {
         } catch (CanonicalizationException e) {
             throw new RedactableXMLSignatureException(e);
         }
+        return concatCanonicalNode(c14nNode, getOwnerDocument(node));
+    }
 
+    private byte[] concatCanonicalNode(byte[] c14nNode, Document document) throws RedactableXMLSignatureException {
         try {
-            byte[] c14nPointer = Canonicalizer.canonicalize(marshall(getOwnerDocument(node)));
+            byte[] c14nPointer = Canonicalizer.canonicalize(marshall(document));
             return new ByteArray(c14nNode).concat(c14nPointer).getArray();
         } catch (CanonicalizationException e) {
             throw new RedactableXMLSignatureException(e);
         }
     }
 
+    /**
+     * Concatenates each of the given pointers with the content it points to.
+     * <p>
+     * In contrast to calling {@link #concatDereference(Node)} for every pointer, the dereferenced contents are
+     * canonicalized in a single traversal of the document, which avoids canonicalizing nested contents repeatedly. The
+     * results are cached by the pointers and returned by subsequent calls of {@link #concatDereference(Node)}.
+     *
+     * @param pointers the pointers to concatenate with their dereferenced contents
+     * @param root     the root node used for dereferencing the pointers
+     * @throws RedactableXMLSignatureException if dereferenciation or canonicalization failed
+     */
+    public static void concatDereference(List<Pointer> pointers, Node root) throws RedactableXMLSignatureException {
+        List<Pointer> pending = new ArrayList<>(pointers.size());
+        List<Node> dereferenced = new ArrayList<>(pointers.size());
+        for (Pointer pointer : pointers) {
+            if (pointer.concatDereference == null) {
+                pending.add(pointer);
+                dereferenced.add(Dereferencer.dereference(pointer.uri, root));
+            }
+        }
+        concatDereferenced(pending, dereferenced);
+    }
+
+    /**
+     * Concatenates each of the given pointers with the content it points to, which is looked up in the given index.
+     *
+     * @param pointers the pointers to concatenate with their dereferenced contents
+     * @param index    the index of the document used for dereferencing the pointers
+     * @throws RedactableXMLSignatureException if dereferenciation or canonicalization failed
+     * @see #concatDereference(List, Node)
+     */
+    public static void concatDereference(List<Pointer> pointers, DocumentIndex index)
+            throws RedactableXMLSignatureException {
+        List<Pointer> pending = new ArrayList<>(pointers.size());
+        List<Node> dereferenced = new ArrayList<>(pointers.size());
+        for (Pointer pointer : pointers) {
+            if (pointer.concatDereference == null) {
+                pending.add(pointer);
+                dereferenced.add(index.dereference(pointer.uri));
+            }
+        }
+        concatDereferenced(pending, dereferenced);
+    }
+
+    private static void concatDereferenced(List<Pointer> pending, List<Node> dereferenced)
+            throws RedactableXMLSignatureException {
+        List<byte[]> c14nNodes;
+        try {
+            c14nNodes = Canonicalizer.canonicalize(dereferenced);
+        } catch (CanonicalizationException e) {
+            throw new RedactableXMLSignatureException(e);
+        }
+
+        for (int i = 0; i < pending.size(); i++) {
+            Pointer pointer = pending.get(i);
+            pointer.concatCanonicalDereference(c14nNodes.get(i), getOwnerDocument(dereferenced.get(i)));
+        }
+    }
+
+    /**
+     * Concatenates this pointer with the given canonical representation of the content it points to.
+     * <p>
+     * This is used if the content was canonicalized without a DOM, e.g. while streaming the document. The result is
+     * cached by this pointer and returned by subsequent calls of {@link #concatDereference(Node)}.
+     *
+     * @param c14nDereference the canonical representation of the content this pointer points to
+     * @param document        the document used to create the canonical representation of this pointer
+     * @return the concatenation of this pointer and the given content
+     * @throws RedactableXMLSignatureException if canonicalization failed
+     */
+    public byte[] concatCanonicalDereference(byte[] c14nDereference, Document document)
+            throws RedactableXMLSignatureException {
+        concatDereference = concatCanonicalNode(c14nDereference, document);
+        return concatDereference;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -154,7 +227,24 @@ public final class Pointer extends BindingElement<Pointer> {
      * @throws RedactableXMLSignatureException if dereferenciation or canonicalization failed
      */
     public byte[] concatDereference(Node root) throws RedactableXMLSignatureException {
-        return initConcatDereference(root).concatDereference;
+        if (concatDereference == null) {
+            concatDereference = concatNode(Dereferencer.dereference(uri, root));
+        }
+        return concatDereference;
+    }
+
+    /**
+     * Concatenates this pointer with the content it points to, which is looked up in the given index.
+     *
+     * @param index the index of the document used for dereferencing this pointer
+     * @return the concatenation of this pointer and its dereferenced content
+     * @throws RedactableXMLSignatureException if dereferenciation or canonicalization failed
+     */
+    public byte[] concatDereference(DocumentIndex index) throws RedactableXMLSignatureException {
+        if (concatDereference == null) {
+            concatDereference = concatNode(index.dereference(uri));
+        }
+        return concatDereference;
     }
 
     /**
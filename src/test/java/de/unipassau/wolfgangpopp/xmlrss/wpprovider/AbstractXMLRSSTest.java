@@ -20,6 +20,7 @@
 
 package de.unipassau.wolfgangpopp.xmlrss.wpprovider;
 
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml.ParsingProfile;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml.RedactableXMLSignature;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml.RedactableXMLSignatureException;
 import org.junit.Test;
@@ -29,6 +30,7 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
@@ -41,6 +43,8 @@ import javax.xml.validation.Validator;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -49,9 +53,11 @@ import java.security.KeyPairGenerator;
 import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
 import java.security.Security;
+import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -210,6 +216,44 @@ public abstract class AbstractXMLRSSTest {
         assertNull(xPath.evaluate("//*[@URI=\"#xpointer(id('a3'))\"]", document, XPathConstants.NODE));
     }
 
+    @Test
+    public void testXPathSelectors() throws Exception {
+        RedactableXMLSignature sig = RedactableXMLSignature.getInstance(algorithm);
+
+        sig.initSign(keyPair);
+        sig.setDocument(new FileInputStream("testdata/vehicles.xml"));
+        sig.addSignSelector("#xpointer(/Vehicle/*)", true);
+        sig.addSignSelector("#xpointer(/Vehicle/MotorVehicles/Car[2])", true);
+        Document document = sig.sign();
+
+        XPath xPath = XPathFactory.newInstance().newXPath();
+        assertNotNull(xPath.evaluate("//*[@URI=\"#xpointer(id('a1'))\"]", document, XPathConstants.NODE));
+        assertNotNull(xPath.evaluate("//*[@URI=\"#xpointer(id('a2'))\"]", document, XPathConstants.NODE));
+        assertNotNull(xPath.evaluate("//*[@URI=\"#xpointer(id('a3'))\"]", document, XPathConstants.NODE));
+
+        sig.initRedact(keyPair.getPublic());
+        sig.setDocument(document);
+        sig.addRedactSelector("#xpointer((/Vehicle/*)[1])");
+        sig.redact();
+
+        sig.initVerify(keyPair.getPublic());
+        sig.setDocument(document);
+        assertTrue(sig.verify());
+
+        assertNull(xPath.evaluate("//*[@id='a1']", document, XPathConstants.NODE));
+        assertNull(xPath.evaluate("//*[@URI=\"#xpointer(id('a1'))\"]", document, XPathConstants.NODE));
+        assertNotNull(xPath.evaluate("//*[@id='a2']", document, XPathConstants.NODE));
+    }
+
+    @Test(expected = RedactableXMLSignatureException.class)
+    public void testXPathSelectorOfElementsWithoutId() throws Exception {
+        RedactableXMLSignature sig = RedactableXMLSignature.getInstance(algorithm);
+
+        sig.initSign(keyPair);
+        sig.setDocument(new FileInputStream("testdata/vehicles.xml"));
+        sig.addSignSelector("#xpointer(/Vehicle/MotorVehicles/Car)", true);
+    }
+
     @Test
     public void testRedactOverlapDTD() throws Exception {
         RedactableXMLSignature sig = RedactableXMLSignature.getInstance(algorithm);
@@ -271,6 +315,102 @@ public abstract class AbstractXMLRSSTest {
         //TODO improve checks on result
     }
 
+    @Test
+    public void testAddSignSelectorsOverlapSchema() throws Exception {
+        Schema schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new File("testdata/test1.xsd"));
+        RedactableXMLSignature sig = RedactableXMLSignature.getInstance(algorithm);
+
+        sig.initSign(keyPair);
+        sig.setDocument(new FileInputStream("testdata/test1.xml"), schema);
+        sig.addSignSelectors(Arrays.asList("#xpointer(id('i1'))", "#xpointer(id('l1'))", "#xpointer(id('e1'))",
+                "#xpointer(id('e2'))", "#xpointer(id('e3'))", "#xpointer(id('i3'))", "#xpointer(id('i2'))",
+                "#xpointer(id('s1'))"), true);
+        Document document = sig.sign();
+
+        printDocument(document);
+
+        sig.initRedact(keyPair.getPublic());
+        sig.setDocument(document);
+        sig.addRedactSelector("#xpointer(id('i2'))");
+        sig.addRedactSelector("#xpointer(id('s1'))");
+        sig.addRedactSelector("#xpointer(id('i3'))");
+        sig.redact();
+
+        printDocument(document);
+        sig.initVerify(keyPair.getPublic());
+        sig.setDocument(document);
+        assertTrue(sig.verify());
+    }
+
+    @Test
+    public void testSignSerializeParseAndThenVerify() throws Exception {
+        Schema schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new File("testdata/test1.xsd"));
+        RedactableXMLSignature sig = RedactableXMLSignature.getInstance(algorithm);
+
+        sig.initSign(keyPair);
+        sig.setDocument(new FileInputStream("testdata/test1.xml"), schema);
+        sig.addSignSelectors(Arrays.asList("#xpointer(id('i1'))", "#xpointer(id('l1'))", "#xpointer(id('e1'))",
+                "#xpointer(id('i2'))", "#xpointer(id('s1'))"), true);
+        Document document = sig.sign();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(out));
+
+        sig.initVerify(keyPair.getPublic());
+        sig.setDocument(new ByteArrayInputStream(out.toByteArray()), schema);
+        assertTrue(sig.verify());
+    }
+
+    @Test(expected = RedactableXMLSignatureException.class)
+    public void testAddSignSelectorsDuplicate() throws Exception {
+        RedactableXMLSignature sig = RedactableXMLSignature.getInstance(algorithm);
+
+        sig.initSign(keyPair);
+        sig.setDocument(new FileInputStream("testdata/vehicles.xml"));
+        sig.addSignSelectors(Arrays.asList("#xpointer(id('a1'))", "#xpointer(id('a1'))"), true);
+    }
+
+    @Test
+    public void testSetDocumentWithParsingProfile() throws Exception {
+        ParsingProfile profile = ParsingProfile.schema(new File("testdata/test1.xsd").toURI().toURL());
+        RedactableXMLSignature sig = RedactableXMLSignature.getInstance(algorithm);
+
+        for (int i = 0; i < 2; i++) {
+            sig.initSign(keyPair);
+            sig.setDocument(new FileInputStream("testdata/test1.xml"), profile);
+            sig.addSignSelector("#xpointer(id('i1'))", true);
+            sig.addSignSelector("#xpointer(id('s1'))", true);
+            validateXSD(sig.sign());
+        }
+
+        for (int i = 0; i < 2; i++) {
+            sig.initSign(keyPair);
+            sig.setDocument(new FileInputStream("testdata/vehicles.xml"), ParsingProfile.dtd());
+            sig.addSignSelector("#xpointer(id('a1'))", true);
+            validateXSD(sig.sign());
+        }
+    }
+
+    @Test
+    public void testStreamingSignAndThenVerify() throws Exception {
+        RedactableXMLSignature sig = RedactableXMLSignature.getInstance(algorithm);
+        sig.initSign(keyPair);
+        sig.addSignSelector("#xpointer(id('a1'))", true);
+        sig.addSignSelector("#xpointer(id('a2'))", true);
+        sig.addSignSelector("#xpointer(id('a3'))", true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        sig.sign(XMLInputFactory.newInstance().createXMLStreamReader(new FileInputStream("testdata/vehicles.xml")),
+                out);
+
+        sig.initVerify(keyPair.getPublic());
+        assertTrue(sig.verify(XMLInputFactory.newInstance().createXMLStreamReader(
+                new ByteArrayInputStream(out.toByteArray()))));
+
+        sig.initVerify(keyPair.getPublic());
+        sig.setDocument(new ByteArrayInputStream(out.toByteArray()));
+        assertTrue(sig.verify());
+    }
+
     @Test(expected = RedactableXMLSignatureException.class)
     public void testAddPartSelectorDuplicate() throws Exception {
         RedactableXMLSignature sig = RedactableXMLSignature.getInstance(algorithm);
@@ -21,14 +21,21 @@
 package de.unipassau.wolfgangpopp.xmlrss.wpprovider.grss;
 
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Accumulator;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorContext;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.ArithmeticParameterSpec;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.WPProvider;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.security.AlgorithmParameters;
 import java.security.KeyPair;
 import java.security.Security;
+import java.util.Arrays;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -75,4 +82,151 @@ public class BPAccumulatorTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testCreateWitnesses() throws Exception {
+        byte[][] message = new byte[40][];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = ("test" + i).getBytes();
+        }
+
+        Accumulator accumulator = Accumulator.getInstance("BPA");
+        accumulator.initWitness(keyPair);
+        accumulator.digest(message);
+        byte[][] witnesses = accumulator.createWitnesses(message);
+
+        assertEquals(message.length, witnesses.length);
+        for (int i = 0; i < message.length; i++) {
+            assertArrayEquals(accumulator.createWitness(message[i]), witnesses[i]);
+        }
+
+        accumulator.initVerify(keyPair.getPublic());
+        accumulator.restoreVerify(accumulator.getAccumulatorValue());
+        for (int i = 0; i < message.length; i++) {
+            assertTrue(accumulator.verify(witnesses[i], message[i]));
+        }
+    }
+
+    @Test
+    public void testCreateWitnessesForSubsetWithContext() throws Exception {
+        byte[][] message = new byte[40][];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = ("test" + i).getBytes();
+        }
+
+        Accumulator accumulator = Accumulator.getInstance("BPA");
+        accumulator.initWitness(keyPair);
+        accumulator.digest(message);
+        AccumulatorContext context = accumulator.getContext();
+        byte[][] subset = Arrays.copyOfRange(message, 8, 24);
+        byte[][] witnesses = context.createWitnesses(subset);
+
+        assertEquals(subset.length, witnesses.length);
+        for (int i = 0; i < subset.length; i++) {
+            assertArrayEquals(accumulator.createWitness(subset[i]), witnesses[i]);
+            assertTrue(context.verify(witnesses[i], subset[i]));
+        }
+    }
+
+    @Test
+    public void testBatchVerify() throws Exception {
+        byte[][] message = new byte[40][];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = ("test" + i).getBytes();
+        }
+
+        Accumulator accumulator = Accumulator.getInstance("BPA");
+        accumulator.initWitness(keyPair);
+        accumulator.digest(message);
+        byte[][] witnesses = accumulator.createWitnesses(message);
+        BigInteger modulus = ((BPPublicKey) keyPair.getPublic()).getKey();
+
+        accumulator.initVerify(keyPair.getPublic());
+        accumulator.restoreVerify(accumulator.getAccumulatorValue());
+        AccumulatorContext context = accumulator.getContext();
+        assertTrue(context.batchVerify(witnesses, message));
+
+        // a single witness is only accepted if it matches exactly, not up to a factor of order two
+        byte[] negated = modulus.subtract(new BigInteger(witnesses[3])).toByteArray();
+        assertFalse(context.verify(negated, message[3]));
+
+        witnesses[5] = new BigInteger(witnesses[5]).shiftLeft(1).mod(modulus).toByteArray();
+        assertFalse(context.verify(witnesses[5], message[5]));
+        assertFalse(context.batchVerify(witnesses, message));
+    }
+
+    @Test
+    public void testCreateWitnessAfterAdd() throws Exception {
+        byte[][] message = {
+                "test1".getBytes(),
+                "test2".getBytes(),
+                "test3".getBytes(),
+        };
+
+        Accumulator accumulator = Accumulator.getInstance("BPA");
+        accumulator.initWitness(keyPair);
+        accumulator.digest(message[0], message[1]);
+        byte[] witness = accumulator.createWitness(message[0]);
+
+        accumulator.add(message[2]);
+        byte[] updatedWitness = accumulator.updateWitness(witness, message[0]);
+        byte[] createdWitness = accumulator.createWitness(message[0]);
+
+        assertArrayEquals(updatedWitness, createdWitness);
+        assertTrue(accumulator.getContext().verify(createdWitness, message[0]));
+    }
+
+    @Test
+    public void testAddAndUpdateWitness() throws Exception {
+        byte[][] message = {
+                "test1".getBytes(),
+                "test2".getBytes(),
+                "test3".getBytes(),
+        };
+
+        Accumulator accumulator = Accumulator.getInstance("BPA");
+        accumulator.initWitness(keyPair);
+        accumulator.digest(message[0]);
+        byte[][] witnesses = new byte[message.length][];
+        witnesses[0] = accumulator.createWitness(message[0]);
+
+        for (int i = 1; i < message.length; i++) {
+            accumulator.add(message[i]);
+            for (int j = 0; j < i; j++) {
+                witnesses[j] = accumulator.updateWitness(witnesses[j], message[j]);
+            }
+            witnesses[i] = accumulator.createWitness(message[i]);
+        }
+
+        byte[] accumulatorValue = accumulator.getAccumulatorValue();
+        accumulator.initVerify(keyPair.getPublic());
+        accumulator.restoreVerify(accumulatorValue);
+        for (int i = 0; i < message.length; i++) {
+            assertTrue(accumulator.verify(witnesses[i], message[i]));
+        }
+    }
+
+    @Test
+    public void testMontgomeryArithmetic() throws Exception {
+        byte[][] message = new byte[40][];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = ("test" + i).getBytes();
+        }
+        AlgorithmParameters parameters = AlgorithmParameters.getInstance("Arithmetic");
+        parameters.init(ArithmeticParameterSpec.MONTGOMERY);
+
+        Accumulator accumulator = Accumulator.getInstance("BPA");
+        accumulator.initWitness(keyPair);
+        accumulator.digest(message);
+        byte[][] witnesses = accumulator.createWitnesses(message);
+
+        accumulator.setParameters(parameters);
+        assertEquals(parameters, accumulator.getParameters());
+        assertArrayEquals(witnesses, accumulator.createWitnesses(message));
+
+        accumulator.initVerify(keyPair.getPublic());
+        accumulator.restoreVerify(accumulator.getAccumulatorValue());
+        for (int i = 0; i < message.length; i++) {
+            assertTrue(accumulator.verify(witnesses[i], message[i]));
+        }
+    }
+}
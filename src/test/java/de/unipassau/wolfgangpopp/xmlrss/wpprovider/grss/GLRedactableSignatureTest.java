@@ -22,17 +22,27 @@ package de.unipassau.wolfgangpopp.xmlrss.wpprovider.grss;
 
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AbstractRSSTest;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Identifier;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.ParallelismParameterSpec;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignature;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignatureException;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SignatureOutput;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.WPProvider;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.BinaryDecoder;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.BinaryEncoder;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ByteArray;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.AlgorithmParameters;
 import java.security.NoSuchAlgorithmException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -135,4 +145,140 @@ public class GLRedactableSignatureTest extends AbstractRSSTest {
         rss.initVerify(keyPair.getPublic());
         assertFalse(rss.verify(output));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBinaryEncoding() throws Exception {
+        RedactableSignature rss = RedactableSignature.getInstance(algorithm);
+        rss.initSign(keyPair);
+        rss.addPart(TEST_MESSAGE[0]);
+        rss.addPart(TEST_MESSAGE[1], false);
+        rss.addPart(TEST_MESSAGE[0]);
+        GLRSSSignatureOutput output = (GLRSSSignatureOutput) rss.sign();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryEncoder encoder = new BinaryEncoder(Channels.newChannel(out));
+        output.writeTo(encoder);
+        encoder.flush();
+        BinaryDecoder decoder = new BinaryDecoder(Channels.newChannel(new ByteArrayInputStream(out.toByteArray())));
+        GLRSSSignatureOutput decoded = GLRSSSignatureOutput.readFrom(decoder);
+
+        assertEquals(output.getParts(), decoded.getParts());
+        rss.initVerify(keyPair.getPublic());
+        assertTrue(rss.verify(decoded));
+    }
+
+    @Test
+    public void testByteBufferViews() throws Exception {
+        RedactableSignature rss = RedactableSignature.getInstance(algorithm);
+        rss.initSign(keyPair);
+        rss.addPart(TEST_MESSAGE[0]);
+        rss.addPart(TEST_MESSAGE[1]);
+        Identifier identifier = rss.addPart(TEST_MESSAGE[2]);
+        GLRSSSignatureOutput output = (GLRSSSignatureOutput) rss.sign();
+
+        rss.initRedact(keyPair.getPublic());
+        rss.addIdentifier(identifier);
+        GLRSSSignatureOutput redacted = (GLRSSSignatureOutput) rss.redact(output);
+
+        for (int i = 0; i < redacted.size(); i++) {
+            GLRSSSignatureOutput.GLRSSSignedPart part = redacted.getParts().get(i);
+            ByteBuffer messagePart = part.getMessagePartBuffer();
+            assertTrue(messagePart.isReadOnly());
+            assertEquals(ByteBuffer.wrap(TEST_MESSAGE[i]), messagePart);
+            assertEquals(output.getParts().get(i).getRandomValueBuffer(), part.getRandomValueBuffer());
+            assertEquals(output.getParts().get(i).getAccumulatorValueBuffer(), part.getAccumulatorValueBuffer());
+        }
+
+        rss.initVerify(keyPair.getPublic());
+        assertTrue(rss.verify(redacted));
+    }
+
+    @Test
+    public void testRedactSeveralPositions() throws Exception {
+        RedactableSignature rss = RedactableSignature.getInstance(algorithm);
+        rss.initSign(keyPair);
+        List<Identifier> identifiers = new LinkedList<>();
+        for (int i = 0; i < 5; i++) {
+            identifiers.add(rss.addPart(("part" + i).getBytes()));
+        }
+        GLRSSSignatureOutput output = (GLRSSSignatureOutput) rss.sign();
+
+        rss.initRedact(keyPair.getPublic());
+        rss.addIdentifier(identifiers.get(3));
+        rss.addIdentifier(identifiers.get(1));
+        GLRSSSignatureOutput redacted = (GLRSSSignatureOutput) rss.redact(output);
+
+        assertEquals(3, redacted.size());
+        int[] kept = {0, 2, 4};
+        for (int i = 0; i < kept.length; i++) {
+            GLRSSSignatureOutput.GLRSSSignedPart part = redacted.getParts().get(i);
+            List<ByteArray> witnesses = output.getParts().get(kept[i]).getWitnesses();
+            assertEquals(new ByteArray(("part" + kept[i]).getBytes()), new ByteArray(part.getMessagePart()));
+            assertEquals(i + 1, part.getWitnesses().size());
+            for (int j = 0; j <= i; j++) {
+                assertEquals(witnesses.get(kept[j]), part.getWitnesses().get(j));
+            }
+        }
+
+        rss.initVerify(keyPair.getPublic());
+        assertTrue(rss.verify(redacted));
+    }
+
+    @Test(expected = RedactableSignatureException.class)
+    public void testRedactUnknownIdentifier() throws Exception {
+        RedactableSignature rss = RedactableSignature.getInstance(algorithm);
+        rss.initSign(keyPair);
+        rss.addPart(TEST_MESSAGE[0]);
+        rss.addPart(TEST_MESSAGE[1]);
+        SignatureOutput output = rss.sign();
+
+        rss.initRedact(keyPair.getPublic());
+        rss.addIdentifier(new Identifier(TEST_MESSAGE[0], 1));
+        rss.redact(output);
+    }
+
+    @Test
+    public void testVerifyWithParallelismParameters() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            for (boolean batchVerification : new boolean[]{false, true}) {
+                AlgorithmParameters parameters = AlgorithmParameters.getInstance("Parallelism");
+                parameters.init(new ParallelismParameterSpec(executor, 1, batchVerification));
+
+                RedactableSignature rss = RedactableSignature.getInstance(algorithm);
+                rss.setParameters(parameters);
+                rss.initSign(keyPair);
+                for (int i = 0; i < 12; i++) {
+                    rss.addPart(("part" + i).getBytes());
+                }
+                GLRSSSignatureOutput output = (GLRSSSignatureOutput) rss.sign();
+
+                rss.initVerify(keyPair.getPublic());
+                assertTrue(rss.verify(output));
+
+                GLRSSSignatureOutput.Builder builder = new GLRSSSignatureOutput.Builder(output.size())
+                        .setGSAccumulator(output.getGsAccumulator())
+                        .setGSDsigValue(output.getGsDsigValue());
+                for (int i = 0; i < output.size(); i++) {
+                    GLRSSSignatureOutput.GLRSSSignedPart part = output.getParts().get(i);
+                    List<ByteArray> witnesses = new LinkedList<>(part.getWitnesses());
+                    if (i == 9) {
+                        witnesses.set(4, witnesses.get(3));
+                    }
+                    builder.setMessagePart(i, part.getMessagePart())
+                            .setRandomValue(i, part.getRandomValue())
+                            .setAccValue(i, part.getAccumulatorValue())
+                            .setRedactable(i, part.isRedactable())
+                            .setGSProof(i, part.getGsProof())
+                            .setWitnesses(i, witnesses);
+                }
+
+                rss.initVerify(keyPair.getPublic());
+                assertFalse(rss.verify(builder.build()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
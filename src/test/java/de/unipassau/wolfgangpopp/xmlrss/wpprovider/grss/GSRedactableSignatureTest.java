@@ -22,16 +22,26 @@ package de.unipassau.wolfgangpopp.xmlrss.wpprovider.grss;
 
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AbstractRSSTest;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Identifier;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.ParallelismParameterSpec;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignature;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignatureException;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SignatureOutput;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.WPProvider;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.BinaryDecoder;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.BinaryEncoder;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.ByteArray;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.security.AlgorithmParameters;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -94,4 +104,59 @@ public class GSRedactableSignatureTest extends AbstractRSSTest {
         sig.addIdentifier(identifier);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testBatchVerificationWithParallelismParameters() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        AlgorithmParameters batch = AlgorithmParameters.getInstance("Parallelism");
+        batch.init(new ParallelismParameterSpec(executor, 1, true));
+
+        try {
+            RedactableSignature sig = RedactableSignature.getInstance(algorithm);
+            sig.setParameters(batch);
+            sig.initSign(keyPair);
+            for (int i = 0; i < 80; i++) {
+                sig.addPart(("part" + i).getBytes(), true);
+            }
+            GSRSSSignatureOutput output = (GSRSSSignatureOutput) sig.sign();
+
+            sig.initVerify(keyPair.getPublic());
+            assertTrue(sig.verify(output));
+
+            Map<ByteArray, byte[]> parts = output.getParts();
+            byte[] otherWitness = parts.get(new ByteArray("part1".getBytes()));
+            GSRSSSignatureOutput.Builder builder = new GSRSSSignatureOutput.Builder()
+                    .setDSigValue(output.getDSigValue())
+                    .setAccumulatorValue(output.getAccumulatorValue());
+            for (Map.Entry<ByteArray, byte[]> part : parts.entrySet()) {
+                boolean tamper = part.getKey().equals(new ByteArray("part0".getBytes()));
+                builder.addSignedPart(part.getKey(), tamper ? otherWitness : part.getValue(), true);
+            }
+
+            sig.initVerify(keyPair.getPublic());
+            assertFalse(sig.verify(builder.build()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBinaryEncoding() throws Exception {
+        RedactableSignature sig = RedactableSignature.getInstance(algorithm);
+        sig.initSign(keyPair);
+        sig.addPart(TEST_MESSAGE[0], true);
+        sig.addPart(TEST_MESSAGE[1], false);
+        sig.addPart(TEST_MESSAGE[2], true);
+        GSRSSSignatureOutput output = (GSRSSSignatureOutput) sig.sign();
+
+        ByteBuffer buffer = ByteBuffer.allocate(output.getEncoded().length);
+        output.writeTo(new BinaryEncoder(buffer));
+        buffer.flip();
+        GSRSSSignatureOutput decoded = GSRSSSignatureOutput.readFrom(new BinaryDecoder(buffer));
+
+        assertFalse(buffer.hasRemaining());
+        assertEquals(output.size(), decoded.size());
+        assertTrue(Arrays.equals(output.getDSigValue(), decoded.getDSigValue()));
+        sig.initVerify(keyPair.getPublic());
+        assertTrue(sig.verify(decoded));
+    }
+}
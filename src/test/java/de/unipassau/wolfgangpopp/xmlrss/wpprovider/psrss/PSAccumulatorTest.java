@@ -21,14 +21,22 @@
 package de.unipassau.wolfgangpopp.xmlrss.wpprovider.psrss;
 
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Accumulator;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorContext;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorException;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AccumulatorState;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.ArithmeticParameterSpec;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.WPProvider;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.security.AlgorithmParameters;
 import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.security.Security;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -100,4 +108,111 @@ public class PSAccumulatorTest {
         assertTrue(psa.verify(witness2, message[2]));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testContext() throws Exception {
+        byte[][] message = {
+                "test1".getBytes(),
+                "test2".getBytes(),
+                "test3".getBytes(),
+        };
+        Accumulator psa = Accumulator.getInstance("PSA");
+        psa.initWitness(keyPair);
+        psa.digest(message);
+        AccumulatorContext witnessContext = psa.getContext();
+
+        // later changes of the accumulator must not affect the context
+        psa.digest(message);
+
+        psa.initVerify(keyPair.getPublic());
+        psa.restoreVerify(witnessContext.getAccumulatorValue());
+        AccumulatorContext verifyContext = psa.getContext();
+
+        for (byte[] element : message) {
+            byte[] witness = witnessContext.createWitness(element);
+            assertTrue(verifyContext.verify(witness, element));
+            assertTrue(psa.verify(witness, element));
+        }
+    }
+
+    @Test
+    public void testBatchVerify() throws Exception {
+        byte[][] message = new byte[40][];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = ("test" + i).getBytes();
+        }
+
+        Accumulator psa = Accumulator.getInstance("PSA");
+        psa.initWitness(keyPair);
+        psa.digest(message);
+        byte[][] witnesses = psa.getContext().createWitnesses(message);
+        BigInteger modulus = ((PSRSSPublicKey) keyPair.getPublic()).getKey();
+
+        psa.initVerify(keyPair.getPublic());
+        psa.restoreVerify(psa.getAccumulatorValue());
+        AccumulatorContext context = psa.getContext();
+        assertTrue(context.batchVerify(witnesses, message));
+
+        // a single witness is only accepted if it matches exactly, not up to a factor of order two
+        byte[] negated = modulus.subtract(new BigInteger(witnesses[3])).toByteArray();
+        assertFalse(context.verify(negated, message[3]));
+
+        witnesses[5] = new BigInteger(witnesses[5]).shiftLeft(1).mod(modulus).toByteArray();
+        assertFalse(context.verify(witnesses[5], message[5]));
+        assertFalse(context.batchVerify(witnesses, message));
+    }
+
+    @Test(expected = AccumulatorException.class)
+    public void testCreateWitnessWithVerifyContext() throws Exception {
+        Accumulator psa = Accumulator.getInstance("PSA");
+        psa.initWitness(keyPair);
+        psa.digest("test1".getBytes());
+
+        psa.initVerify(keyPair.getPublic());
+        psa.restoreVerify(psa.getAccumulatorValue());
+        psa.getContext().createWitness("test1".getBytes());
+    }
+
+    @Test
+    public void testCreateWitnessCRT() throws Exception {
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("PSRSS");
+        keyGen.initialize(512);
+        KeyPair crtKeyPair = keyGen.generateKeyPair();
+        PSRSSPrivateKey crtKey = (PSRSSPrivateKey) crtKeyPair.getPrivate();
+        KeyPair phiKeyPair = new KeyPair(crtKeyPair.getPublic(), new PSRSSPrivateKey(crtKey.getKey()));
+        assertTrue(crtKey.hasCRTParameters());
+
+        Accumulator psa = Accumulator.getInstance("PSA");
+        psa.initWitness(crtKeyPair);
+        psa.digest("test1".getBytes());
+        byte[] accumulatorValue = psa.getAccumulatorValue();
+        byte[] crtWitness = psa.createWitness("test1".getBytes());
+
+        psa.initWitness(phiKeyPair);
+        psa.restoreWitness(accumulatorValue, null);
+        assertArrayEquals(psa.createWitness("test1".getBytes()), crtWitness);
+
+        psa.initVerify(crtKeyPair.getPublic());
+        psa.restoreVerify(accumulatorValue);
+        assertTrue(psa.verify(crtWitness, "test1".getBytes()));
+    }
+
+    @Test
+    public void testMontgomeryArithmetic() throws Exception {
+        AlgorithmParameters parameters = AlgorithmParameters.getInstance("Arithmetic");
+        parameters.init(ArithmeticParameterSpec.MONTGOMERY);
+
+        Accumulator psa = Accumulator.getInstance("PSA");
+        psa.initWitness(keyPair);
+        psa.digest("test1".getBytes(), "test2".getBytes());
+        byte[] witness = psa.createWitness("test1".getBytes());
+
+        psa.setParameters(parameters);
+        assertEquals(parameters, psa.getParameters());
+        assertArrayEquals(witness, psa.createWitness("test1".getBytes()));
+
+        psa.initVerify(keyPair.getPublic());
+        psa.restoreVerify(psa.getAccumulatorValue());
+        assertTrue(psa.verify(witness, "test1".getBytes()));
+        assertFalse(psa.verify(witness, "test2".getBytes()));
+    }
+}
@@ -20,13 +20,22 @@
 
 package de.unipassau.wolfgangpopp.xmlrss.wpprovider.psrss;
 
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SafePrimePoolParameterSpec;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.WPProvider;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.SafePrimePool;
 import org.junit.Test;
 
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.file.Files;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
+import java.security.ProviderException;
+import java.security.SecureRandom;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Wolfgang Popp
@@ -47,4 +56,68 @@ public class PSRSSKeyPairGeneratorTest {
         assertEquals(513, ((PSRSSPublicKey) keyPair.getPublic()).getKey().bitLength());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testGenerateKeyPairFromSafePrimes() throws Exception {
+        KeyPairGenerator psrssKeyGen = KeyPairGenerator.getInstance("PSRSS", new WPProvider());
+        psrssKeyGen.initialize(512);
+        KeyPair keyPair = psrssKeyGen.generateKeyPair();
+        PSRSSPrivateKey privateKey = (PSRSSPrivateKey) keyPair.getPrivate();
+
+        for (BigInteger prime : new BigInteger[]{privateKey.getPrimeP(), privateKey.getPrimeQ()}) {
+            assertEquals(256, prime.bitLength());
+            assertTrue(prime.isProbablePrime(100));
+            assertTrue(prime.shiftRight(1).isProbablePrime(100));
+        }
+        assertEquals(((PSRSSPublicKey) keyPair.getPublic()).getKey(),
+                privateKey.getPrimeP().multiply(privateKey.getPrimeQ()));
+    }
+
+    @Test
+    public void testGenerateKeyPairFromSafePrimePool() throws Exception {
+        File file = File.createTempFile("xmlrss", ".pool");
+        assertTrue(file.delete());
+        SafePrimePool pool = new SafePrimePool(256, 2, new SecureRandom(), file);
+
+        try {
+            KeyPairGenerator psrssKeyGen = KeyPairGenerator.getInstance("PSRSS", new WPProvider());
+            psrssKeyGen.initialize(new SafePrimePoolParameterSpec(512, pool));
+            KeyPair keyPair = psrssKeyGen.generateKeyPair();
+            assertEquals(256, ((PSRSSPrivateKey) keyPair.getPrivate()).getPrimeP().bitLength());
+            assertEquals(256, ((PSRSSPrivateKey) keyPair.getPrivate()).getPrimeQ().bitLength());
+        } finally {
+            pool.close();
+        }
+
+        SafePrimePool reloaded = new SafePrimePool(256, 2, new SecureRandom(), file);
+        reloaded.close();
+        assertEquals(pool.size(), reloaded.size());
+        assertTrue(file.delete());
+    }
+
+    @Test
+    public void testSafePrimePoolKeepsPrimesIfPersistingFails() throws Exception {
+        File directory = Files.createTempDirectory("xmlrss").toFile();
+        SafePrimePool pool = new SafePrimePool(256, 2, new SecureRandom(), new File(directory, "primes.pool"));
+        while (pool.size() < 2) {
+            Thread.sleep(10);
+        }
+        // closing waits until the pool is written and stops the refill, but the primes can still be taken
+        pool.close();
+
+        assertTrue(new File(directory, "primes.pool").delete());
+        assertTrue(directory.delete());
+        try {
+            pool.take();
+            fail("Taking a prime must fail if the pool cannot be persisted");
+        } catch (ProviderException e) {
+            assertEquals(2, pool.size());
+        }
+
+        try {
+            pool.close();
+            fail("Closing the pool must fail if the pool cannot be persisted");
+        } catch (ProviderException e) {
+            assertEquals(2, pool.size());
+        }
+    }
+}
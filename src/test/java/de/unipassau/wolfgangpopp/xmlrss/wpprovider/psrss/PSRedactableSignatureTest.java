@@ -22,17 +22,31 @@ package de.unipassau.wolfgangpopp.xmlrss.wpprovider.psrss;
 
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.AbstractRSSTest;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.Identifier;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.ParallelismParameterSpec;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignature;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.RedactableSignatureException;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.SignatureOutput;
 import de.unipassau.wolfgangpopp.xmlrss.wpprovider.WPProvider;
+import de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils.BinaryDecoder;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StreamCorruptedException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.AlgorithmParameters;
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -136,4 +150,132 @@ public class PSRedactableSignatureTest extends AbstractRSSTest {
                 "test5".getBytes()
         ));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSignAndVerifyWithParallelismParameters() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        AlgorithmParameters parallel = AlgorithmParameters.getInstance("Parallelism");
+        parallel.init(new ParallelismParameterSpec(executor, 1));
+        AlgorithmParameters sequential = AlgorithmParameters.getInstance("Parallelism");
+        sequential.init(ParallelismParameterSpec.SEQUENTIAL);
+
+        try {
+            RedactableSignature rss = RedactableSignature.getInstance("RSSwithPSA");
+            rss.setParameters(parallel);
+            rss.initSign(keyPair);
+            for (byte[] part : TEST_MESSAGE) {
+                rss.addPart(part);
+            }
+            SignatureOutput output = rss.sign();
+
+            rss.setParameters(sequential);
+            rss.initVerify(keyPair.getPublic());
+            assertTrue(rss.verify(output));
+            assertEquals(sequential, rss.getParameters());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testVerifyWithBatchVerification() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        AlgorithmParameters parameters = AlgorithmParameters.getInstance("Parallelism");
+        parameters.init(new ParallelismParameterSpec(executor, 1, true));
+
+        try {
+            RedactableSignature rss = RedactableSignature.getInstance(algorithm);
+            rss.setParameters(parameters);
+            rss.initSign(keyPair);
+            for (int i = 0; i < 150; i++) {
+                rss.addPart(("part" + i).getBytes());
+            }
+            PSSignatureOutput output = (PSSignatureOutput) rss.sign();
+
+            rss.initVerify(keyPair.getPublic());
+            assertTrue(rss.verify(output));
+
+            PSSignatureOutput.Builder builder = new PSSignatureOutput.Builder(output.getTag(),
+                    output.getProofOfTag(), output.getAccumulator());
+            byte[] otherProof = output.getProof(new Identifier("part1".getBytes()));
+            for (PSSignatureOutput.SignedPart part : output) {
+                boolean tampered = Arrays.equals(part.getElement().getArray(), "part142".getBytes());
+                builder.add(part.getElement(), tampered ? otherProof : part.getProof());
+            }
+
+            rss.initVerify(keyPair.getPublic());
+            assertFalse(rss.verify(builder.build()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBinaryEncoding() throws Exception {
+        RedactableSignature rssWithPSA = RedactableSignature.getInstance(algorithm);
+        rssWithPSA.initSign(keyPair);
+        rssWithPSA.addPart("test1".getBytes());
+        rssWithPSA.addPart("test2".getBytes());
+        PSSignatureOutput output = (PSSignatureOutput) rssWithPSA.sign();
+
+        byte[] encoded = output.getEncoded();
+        PSSignatureOutput decoded = PSSignatureOutput.readFrom(new BinaryDecoder(ByteBuffer.wrap(encoded)));
+
+        assertEquals(output.size(), decoded.size());
+        assertArrayEquals(output.getTag(), decoded.getTag());
+        rssWithPSA.initVerify(keyPair.getPublic());
+        assertTrue(rssWithPSA.verify(decoded));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void testBinaryEncodingWrongType() throws Exception {
+        RedactableSignature rssWithPSA = RedactableSignature.getInstance(algorithm);
+        rssWithPSA.initSign(keyPair);
+        rssWithPSA.addPart("test1".getBytes());
+        byte[] encoded = ((PSSignatureOutput) rssWithPSA.sign()).getEncoded();
+        encoded[5] = 2;
+
+        PSSignatureOutput.readFrom(new BinaryDecoder(ByteBuffer.wrap(encoded)));
+    }
+
+    @Test
+    public void testStreamingSignAndVerify() throws Exception {
+        final int size = 2500;
+        Iterator<byte[]> parts = new Iterator<byte[]>() {
+            private int next = 1;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public byte[] next() {
+                return ("part" + next++).getBytes();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        RedactableSignature rssWithPSA = RedactableSignature.getInstance(algorithm);
+        rssWithPSA.initSign(keyPair);
+        rssWithPSA.addPart("part0".getBytes());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        rssWithPSA.sign(parts, Channels.newChannel(out));
+        byte[] encoded = out.toByteArray();
+
+        PSSignatureOutput output = PSSignatureOutput.readFrom(new BinaryDecoder(ByteBuffer.wrap(encoded)));
+        assertEquals(size, output.size());
+        assertTrue(output.containsAll("part0".getBytes(), ("part" + (size - 1)).getBytes()));
+
+        rssWithPSA.initVerify(keyPair.getPublic());
+        assertTrue(rssWithPSA.verify(output));
+        assertTrue(rssWithPSA.verify(Channels.newChannel(new ByteArrayInputStream(encoded))));
+
+        encoded[encoded.length - 2] ^= 1;
+        assertFalse(rssWithPSA.verify(Channels.newChannel(new ByteArrayInputStream(encoded))));
+    }
+}
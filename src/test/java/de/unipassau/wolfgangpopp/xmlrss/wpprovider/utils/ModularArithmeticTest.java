@@ -0,0 +1,95 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.utils;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Wolfgang Popp
+ */
+public class ModularArithmeticTest {
+
+    private static final BigInteger MODULUS = new BigInteger(
+            "102768923406090766454606384684807101116565843764230817427007685819792870349103").multiply(
+            new BigInteger("100643593853045610103209412747828587291631422759640930666057909066465827451823"));
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testMontgomeryMatchesReference() throws Exception {
+        BigInteger[] moduli = {MODULUS, BigInteger.valueOf(3), BigInteger.ONE.shiftLeft(64).add(BigInteger.ONE)};
+        for (BigInteger modulus : moduli) {
+            ModularArithmetic montgomery = ModularArithmetic.getMontgomery(modulus);
+            ModularArithmetic reference = ModularArithmetic.getReference(modulus);
+
+            for (int i = 0; i < 100; i++) {
+                BigInteger a = new BigInteger(modulus.bitLength() + 8, random).subtract(modulus);
+                BigInteger b = new BigInteger(modulus.bitLength(), random);
+                BigInteger exponent = new BigInteger(random.nextInt(2048), random);
+
+                assertEquals(reference.modPow(a, exponent), montgomery.modPow(a, exponent));
+                assertEquals(reference.modMul(a, b), montgomery.modMul(a, b));
+                if (a.gcd(modulus).equals(BigInteger.ONE)) {
+                    assertEquals(reference.modInverse(a), montgomery.modInverse(a));
+                    assertEquals(reference.modPow(a, exponent.negate()), montgomery.modPow(a, exponent.negate()));
+                }
+            }
+        }
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testMontgomeryInverseOfNonUnit() throws Exception {
+        ModularArithmetic.getMontgomery(MODULUS).modInverse(MODULUS.add(MODULUS));
+    }
+
+    @Test
+    public void testMultiModPow() throws Exception {
+        BigInteger[] bases = new BigInteger[40];
+        BigInteger[] exponents = new BigInteger[bases.length];
+        BigInteger expected = BigInteger.ONE;
+        for (int i = 0; i < bases.length; i++) {
+            bases[i] = new BigInteger(MODULUS.bitLength(), random);
+            exponents[i] = new BigInteger(300, random);
+            expected = expected.multiply(bases[i].modPow(exponents[i], MODULUS)).mod(MODULUS);
+        }
+
+        assertEquals(expected, CryptoUtils.multiModPow(bases, exponents, MODULUS));
+    }
+
+    @Test
+    public void testFixedBaseExponentiation() throws Exception {
+        BigInteger base = new BigInteger(MODULUS.bitLength(), random);
+        for (ModularArithmetic arithmetic : new ModularArithmetic[]{ModularArithmetic.getReference(MODULUS),
+                ModularArithmetic.getMontgomery(MODULUS)}) {
+            FixedBaseExponentiation powers = new FixedBaseExponentiation(base, arithmetic, 5000);
+
+            for (int bits : new int[]{0, 1, 100, 4999, 5000, 6000, 4999}) {
+                BigInteger exponent = new BigInteger(bits, random);
+                assertEquals(base.modPow(exponent, MODULUS), powers.modPow(exponent));
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Wolfgang Popp
+ */
+public class CanonicalizerTest {
+
+    @Test
+    public void testCanonicalizeAllElementsOfTestData() throws Exception {
+        assertBatchEqualsSingle(new FileInputStream("testdata/test1.xml"));
+        assertBatchEqualsSingle(new FileInputStream("testdata/vehicles.xml"));
+    }
+
+    @Test
+    public void testCanonicalizeNamespaceRedeclarations() throws Exception {
+        assertBatchEqualsSingle("<r xmlns=\"urn:d\"><c xmlns=\"urn:d\"><e xmlns=\"urn:d\"/></c></r>");
+        assertBatchEqualsSingle("<r xmlns=\"urn:d\"><c><e xmlns=\"\"/></c><c xmlns=\"\"><e/></c></r>");
+        assertBatchEqualsSingle("<r xmlns:p=\"urn:p\"><c><p:e xmlns:p=\"urn:p\"><p:f xmlns:p=\"urn:q\"/></p:e></c></r>");
+        assertBatchEqualsSingle("<r xmlns=\"urn:d\"><c xmlns=\"urn:e\"><e xmlns=\"urn:d\"/></c></r>");
+    }
+
+    @Test
+    public void testCanonicalizeAttributesAndCharacterData() throws Exception {
+        assertBatchEqualsSingle("<r xml:lang=\"en\" xmlns:p=\"urn:p\"><c p:a=\"1\" xml:space=\"preserve\">"
+                + "<e b=\"&quot;2&#9;\" a=\"1\" xmlns:z=\"urn:z\" z:c=\"x\">a&amp;&lt;b&gt;&#13;<![CDATA[<>]]>"
+                + "<!--comment--><?target data?></e></c></r>");
+    }
+
+    private static void assertBatchEqualsSingle(String document) throws Exception {
+        assertBatchEqualsSingle(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void assertBatchEqualsSingle(InputStream in) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document document = factory.newDocumentBuilder().parse(in);
+
+        NodeList elements = document.getElementsByTagName("*");
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < elements.getLength(); i++) {
+            nodes.add(elements.item(i));
+        }
+
+        List<byte[]> canonicalized = Canonicalizer.canonicalize(nodes);
+        assertEquals(nodes.size(), canonicalized.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            assertArrayEquals(Canonicalizer.canonicalize(nodes.get(i)), canonicalized.get(i));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * XMLRSS - A Java Crypto Provider for Redactable Signatures and their
+ * XML Signature encoding.
+ *
+ * Copyright (c) 2017 Wolfgang Popp
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.unipassau.wolfgangpopp.xmlrss.wpprovider.xml;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * @author Wolfgang Popp
+ */
+public class StreamCanonicalizerTest {
+
+    private static final String[] DOCUMENTS = {
+            "<r xmlns=\"urn:d\"><c xml:id=\"c\"><e xml:id=\"e\"/></c></r>",
+            "<r xmlns=\"urn:d\"><c xml:id=\"c\" xmlns=\"urn:d\"><e xml:id=\"e\" xmlns=\"urn:d\"/></c></r>",
+            "<r xmlns=\"urn:d\"><c xml:id=\"c\"><e xml:id=\"e\" xmlns=\"\"><f xml:id=\"f\" xmlns=\"urn:d\"/></e></c>"
+                    + "<c xml:id=\"c2\" xmlns=\"\"><e xml:id=\"e2\"/></c></r>",
+            "<r xmlns:p=\"urn:p\"><c xml:id=\"c\"><p:e xml:id=\"e\" xmlns:p=\"urn:p\"><p:f xml:id=\"f\" "
+                    + "xmlns:p=\"urn:q\"/>t</p:e>u</c></r>",
+            "<r xml:lang=\"en\" xmlns:p=\"urn:p\"><c xml:id=\"c\" p:a=\"1\" xml:space=\"preserve\"><e xml:id=\"e\" "
+                    + "b=\"&quot;2&#9;\" a=\"1\" xmlns:z=\"urn:z\" z:c=\"x\">a&amp;&lt;b&gt;<![CDATA[<>]]><!--c-->"
+                    + "<?t d?></e></c></r>"
+    };
+
+    @Test
+    public void testCanonicalizeReadDocument() throws Exception {
+        for (String document : DOCUMENTS) {
+            byte[] bytes = document.getBytes(StandardCharsets.UTF_8);
+            StreamCanonicalizer canonicalizer = new StreamCanonicalizer(XMLInputFactory.newInstance()
+                    .createXMLStreamReader(new ByteArrayInputStream(bytes)), null, null, true, false);
+            canonicalizer.readRoot();
+            canonicalizer.finish();
+            assertEqualsDOM(canonicalizer, bytes);
+        }
+    }
+
+    @Test
+    public void testCanonicalizeWrittenDocument() throws Exception {
+        for (String document : DOCUMENTS) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            StreamCanonicalizer canonicalizer = new StreamCanonicalizer(XMLInputFactory.newInstance()
+                    .createXMLStreamReader(new ByteArrayInputStream(document.getBytes(StandardCharsets.UTF_8))),
+                    out, null, true, false);
+            canonicalizer.readRoot();
+            canonicalizer.finish();
+            assertEqualsDOM(canonicalizer, out.toByteArray());
+        }
+    }
+
+    private static void assertEqualsDOM(StreamCanonicalizer canonicalizer, byte[] document) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document dom = factory.newDocumentBuilder().parse(new ByteArrayInputStream(document));
+        assertArrayEquals(Canonicalizer.canonicalize(dom.getDocumentElement()), canonicalizer.getRootElement());
+
+        NodeList elements = dom.getElementsByTagName("*");
+        for (int i = 1; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            String id = element.getAttributeNS(XMLConstants.XML_NS_URI, "id");
+            assertNotNull(canonicalizer.getElement(id));
+            assertArrayEquals(Canonicalizer.canonicalize(element), canonicalizer.getElement(id));
+        }
+    }
+}